@@ -54,7 +54,7 @@ public class Animator {
         this.instance = instance;
         this.keyframes = keyframes;
         // Detect which keyframe channels are in use, set up accordingly
-        byte usedChannels = PartTransform.MATRIX_DIRTY; // Matrix is always dirty, no matter which channels are in use
+        byte usedChannels = PartTransform.MATRIX_DIRTY | PartTransform.WORLD_DIRTY; // Matrix (and so the world transform) is always dirty, no matter which channels are in use
         if (keyframes.origin() != null && !keyframes.origin().isEmpty()) { this.origin = new Vector3f(); usedChannels |= PartTransform.ORIGIN_DIRTY; } else this.origin = null;
         if (keyframes.rotation() != null && !keyframes.rotation().isEmpty()) { this.rotation = new Vector3f(); usedChannels |= PartTransform.ROTATION_DIRTY; } else this.rotation = null;
         if (keyframes.scale() != null && !keyframes.scale().isEmpty()) { this.scale = new Vector3f(); usedChannels |= PartTransform.SCALE_DIRTY; } else this.scale = null;
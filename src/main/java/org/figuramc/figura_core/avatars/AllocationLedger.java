@@ -0,0 +1,170 @@
+package org.figuramc.figura_core.avatars;
+
+import org.figuramc.figura_core.avatars.errors.AvatarOutOfMemoryError;
+import org.figuramc.memory_tracker.AllocationTracker;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Breaks an avatar's tracked memory down by the subsystem which allocated it.
+ *
+ * Each Source gets its own view of the avatar's AllocationTracker (see Avatar.allocationTracker(Source)), which
+ * tracks as usual and also adds the size to this ledger, along with any later size changes. The AllocationTracker
+ * doesn't report frees, so for most sources these are cumulative: the bytes tracked over the avatar's lifetime.
+ * That's close to what's live for data kept as long as the avatar (vertices, textures, keyframes...), and more like
+ * an allocation rate for churny sources like the Lua heap. Sources whose memory is handed back explicitly are live
+ * instead (see Source.live), and reports label each figure accordingly.
+ *
+ * Objects tracked without a size (track(T)) are estimated here for arrays and strings, and counted as a bare object otherwise.
+ */
+public final class AllocationLedger {
+
+    public enum Source {
+        LUA_HEAP("Lua heap", false),
+        VECTORS("Vector userdata", false),
+        VERTEX_DATA("Vertex data", false),
+        RENDER_BUFFERS("Render buffers", true), // Pooled buffers, whose leases are taken back off when released
+        TEXTURES("Textures", false),
+        KEYFRAMES("Keyframes", false),
+        EVENT_QUEUE("Queued events", true); // Added to and removed from directly
+
+        public final String label;
+        public final boolean live; // Whether the bytes are what's currently held, rather than cumulative
+        Source(String label, boolean live) { this.label = label; this.live = live; }
+
+        private static final Source[] VALUES = values();
+    }
+
+    private final AtomicLongArray bytes = new AtomicLongArray(Source.VALUES.length);
+    private final @Nullable AllocationTracker<AvatarOutOfMemoryError>[] trackers;
+
+    @SuppressWarnings("unchecked")
+    public AllocationLedger(@Nullable AllocationTracker<AvatarOutOfMemoryError> tracker) {
+        this.trackers = new AllocationTracker[Source.VALUES.length];
+        if (tracker != null)
+            for (Source source : Source.VALUES)
+                trackers[source.ordinal()] = new Tagged(source, tracker);
+    }
+
+    // The avatar's tracker, tagged with the given source. Null if the avatar isn't tracked.
+    public @Nullable AllocationTracker<AvatarOutOfMemoryError> tracker(Source source) {
+        return trackers[source.ordinal()];
+    }
+
+    public void add(Source source, long delta) {
+        bytes.addAndGet(source.ordinal(), delta);
+    }
+
+    public long get(Source source) {
+        return bytes.get(source.ordinal());
+    }
+
+    public Report report(String avatar) {
+        long[] snapshot = new long[Source.VALUES.length];
+        for (int i = 0; i < snapshot.length; i++) snapshot[i] = bytes.get(i);
+        return new Report(avatar, snapshot);
+    }
+
+    /**
+     * A snapshot of one avatar's ledger. Most sources are cumulative, see Source.live.
+     */
+    public record Report(String avatar, long[] bytes) {
+        public long get(Source source) {
+            return bytes[source.ordinal()];
+        }
+
+        // Sum over all sources, mixing cumulative and live ones; an upper bound on what the avatar holds
+        public long total() {
+            long total = 0;
+            for (long b : bytes) total += b;
+            return total;
+        }
+
+        // One line per avatar: "<avatar>: <total> (Lua heap 1.2 MiB cumulative, Queued events 2.0 KiB live, ...)",
+        // skipping empty sources
+        public String format() {
+            StringBuilder builder = new StringBuilder(avatar).append(": ").append(formatBytes(total())).append(" (");
+            boolean first = true;
+            for (Source source : Source.VALUES) {
+                if (bytes[source.ordinal()] == 0) continue;
+                if (!first) builder.append(", ");
+                builder.append(source.label).append(' ').append(formatBytes(bytes[source.ordinal()])).append(source.live ? " live" : " cumulative");
+                first = false;
+            }
+            return builder.append(')').toString();
+        }
+    }
+
+    // Format several reports, one per line
+    public static String format(List<Report> reports) {
+        StringBuilder builder = new StringBuilder();
+        for (Report report : reports) builder.append(report.format()).append('\n');
+        return builder.toString();
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024) return bytes + " B";
+        if (bytes < 1024 * 1024) return String.format("%.1f KiB", bytes / 1024.0);
+        return String.format("%.1f MiB", bytes / (1024.0 * 1024.0));
+    }
+
+    private static int estimateSize(Object value) {
+        return switch (value) {
+            case byte[] a -> AllocationTracker.OBJECT_SIZE + a.length * AllocationTracker.BYTE_SIZE;
+            case short[] a -> AllocationTracker.OBJECT_SIZE + a.length * AllocationTracker.SHORT_SIZE;
+            case char[] a -> AllocationTracker.OBJECT_SIZE + a.length * AllocationTracker.CHAR_SIZE;
+            case int[] a -> AllocationTracker.OBJECT_SIZE + a.length * AllocationTracker.INT_SIZE;
+            case float[] a -> AllocationTracker.OBJECT_SIZE + a.length * AllocationTracker.FLOAT_SIZE;
+            case long[] a -> AllocationTracker.OBJECT_SIZE + a.length * AllocationTracker.LONG_SIZE;
+            case double[] a -> AllocationTracker.OBJECT_SIZE + a.length * AllocationTracker.DOUBLE_SIZE;
+            case Object[] a -> AllocationTracker.OBJECT_SIZE + a.length * AllocationTracker.REFERENCE_SIZE;
+            case String s -> AllocationTracker.OBJECT_SIZE * 2 + s.length() * AllocationTracker.BYTE_SIZE;
+            default -> AllocationTracker.OBJECT_SIZE;
+        };
+    }
+
+    // Tracks through the avatar's tracker, and records sizes in the ledger under the source
+    private final class Tagged implements AllocationTracker<AvatarOutOfMemoryError> {
+        private final Source source;
+        private final AllocationTracker<AvatarOutOfMemoryError> delegate;
+
+        private Tagged(Source source, AllocationTracker<AvatarOutOfMemoryError> delegate) {
+            this.source = source;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public <T> State<AvatarOutOfMemoryError> track(T value, int size) throws AvatarOutOfMemoryError {
+            State<AvatarOutOfMemoryError> state = delegate.track(value, size);
+            add(source, size);
+            return new TaggedState(source, state);
+        }
+
+        @Override
+        public <T> State<AvatarOutOfMemoryError> track(T value) throws AvatarOutOfMemoryError {
+            State<AvatarOutOfMemoryError> state = delegate.track(value);
+            int size = estimateSize(value);
+            add(source, size);
+            return new TaggedState(source, state);
+        }
+    }
+
+    private final class TaggedState implements AllocationTracker.State<AvatarOutOfMemoryError> {
+        private final Source source;
+        private final AllocationTracker.State<AvatarOutOfMemoryError> delegate;
+
+        private TaggedState(Source source, AllocationTracker.State<AvatarOutOfMemoryError> delegate) {
+            this.source = source;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void changeSize(int delta) throws AvatarOutOfMemoryError {
+            delegate.changeSize(delta);
+            add(source, delta);
+        }
+    }
+
+}
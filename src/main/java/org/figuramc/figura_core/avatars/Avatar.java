@@ -1,19 +1,26 @@
 package org.figuramc.figura_core.avatars;
 
+import org.figuramc.figura_core.avatars.components.AvatarEvents;
+import org.figuramc.figura_core.avatars.components.AvatarProfiling;
 import org.figuramc.figura_core.avatars.components.ExternalText;
+import org.figuramc.figura_core.avatars.components.ScriptRuntimeComponent;
 import org.figuramc.figura_core.avatars.errors.AvatarError;
 import org.figuramc.figura_core.avatars.errors.AvatarInitError;
 import org.figuramc.figura_core.avatars.errors.AvatarOutOfMemoryError;
+import org.figuramc.figura_core.manage.AvatarLoadScheduler;
 import org.figuramc.figura_core.manage.AvatarManager;
 import org.figuramc.figura_core.minecraft_interop.FiguraConnectionPoint;
 import org.figuramc.figura_core.minecraft_interop.vanilla_parts.VanillaModel;
+import org.figuramc.figura_core.script_hooks.flags.QueuedSetters;
+import org.figuramc.figura_core.script_hooks.replay.SessionRecorder;
 import org.figuramc.figura_core.script_hooks.timing.AvatarTimeTracker;
+import org.figuramc.figura_core.script_hooks.timing.InstructionMeter;
 import org.figuramc.figura_core.script_hooks.timing.ProfilingCategory;
-import org.figuramc.figura_core.script_hooks.timing.ScriptKillerDaemon;
 import org.figuramc.figura_core.text.FormattedText;
 import org.figuramc.figura_core.util.ListUtils;
 import org.figuramc.figura_core.util.enumlike.IdMap;
 import org.figuramc.figura_core.util.exception.FiguraException;
+import org.figuramc.figura_core.util.jfr.FiguraEvents;
 import org.figuramc.figura_core.util.functional.ThrowingRunnable;
 import org.figuramc.figura_translations.Translatable;
 import org.figuramc.figura_translations.TranslatableItems;
@@ -22,27 +29,65 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 public final class Avatar<K> {
 
     public final AvatarManager<K> manager;
     public final K key; // The key which accesses this Avatar in its corresponding AvatarSubManager<K>
     public final @Nullable AllocationTracker<AvatarOutOfMemoryError> allocationTracker; // Tracks allocation
+    public final AllocationLedger allocationLedger; // Breaks tracked allocations down by source
     public final List<AvatarModules.RuntimeModule> modules; // Runtime modules.
+    public final @Nullable AvatarPrototype prototype; // Shared data this avatar was built from, if any
 
     // Thread safety
     // An avatar's "thread safety" is a self-selected boolean.
     // An avatar can be considered thread-safe if it upholds our expected conditions about thread safety.
     // The reason this is optional is because upholding thread safety requirements can be difficult,
     // and impose a significant burden on avatar creators. This will be false by default for that reason.
-    public final boolean isThreadSafe = false;
+    // Opting in is one-way, see markThreadSafe().
+    private volatile boolean threadSafe;
 
     // Components. Keep an IdMap to fetch nullable components, and an array to iterate only present components.
     private final IdMap<AvatarComponent.Type, AvatarComponent<?>> components; // Components, where ID -> component if present, null if not. Requires some unchecked sillies because of generics.
     private final @NotNull AvatarComponent<?>[] presentComponents; // Only the non-null components, used for iteration
+    // Only the components which take part in each phase, in dependency order. See AvatarComponent.Phase.
+    // Components shared through a prototype never receive onError() or destroy() from this avatar.
+    private final @NotNull AvatarComponent<?>[] tickers, errorHandlers, destroyers;
+    private final @NotNull ProfilingCategory[] tickerCategories; // Profiling category of each ticker
+    private final CompletableFuture<Void> ready; // Completes once every component is ready
+
+    // Activation. An avatar is loaded in stages:
+    // - BUILDING: The constructor is building components.
+    // - GEOMETRY: Components are built, so the models can render once they're ready. The init script is still
+    //   running on a loading thread, so script-driven components (see hiddenUntilActive) act like they don't exist
+    //   to every other thread.
+    //   What the init script may do in this stage:
+    //   - Setters relevant to rendering (part transforms, render types, addChild()/removeChild()...) on anything the
+    //     main thread may already be reading go through QueuedSetters. They're applied on the main thread once it
+    //     flushes the queue, so reading a value back in the init script still gives the old one.
+    //   - Parts the init script creates itself aren't published to the main thread yet, so their setters apply right
+    //     away and read back as set. Attaching one to a published part, or rebuilding it, publishes it
+    //     (see FiguraModelPart.isPublished()), and its setters are queued from then on.
+    //   - rebuild() is queued behind them (see FiguraModelPart.queueRenderingDataUpdate()), so it sees the tree the
+    //     queued setters produce, and never touches RenderData the main thread may be drawing.
+    //   - Anything else that mutates state read by rendering is not safe to call until ACTIVE.
+    // - ACTIVE: The init script finished (or errored), and all components are available.
+    public enum Stage { BUILDING, GEOMETRY, ACTIVE }
+    private volatile Stage stage = Stage.BUILDING;
+    private volatile @Nullable Thread initThread; // The thread running the init script, while it runs
+    private final boolean[] hiddenUntilActive; // Indexed by component type ID
+    private final CompletableFuture<Void> active = new CompletableFuture<>(); // Completes once the avatar becomes ACTIVE
+
+    // Counts script instructions, if enabled for this avatar. Used by AvatarTimeTracker.
+    public final InstructionMeter instructionMeter = new InstructionMeter(InstructionMeter.meterNewAvatars);
+    // Records the events this avatar receives, while attached. See SessionRecorder.
+    public volatile @Nullable SessionRecorder sessionRecorder;
 
     // Any error that's occurred in this avatar
     private @Nullable Throwable error;
+    private boolean destroyed;
+    private boolean initializing = true; // If destroyed while initializing, the init task destroys the avatar once it's done
 
     // Extra items which are helpful for initializing some types.
     // All of these items are optional.
@@ -63,6 +108,17 @@ public final class Avatar<K> {
             Collection<AvatarComponent.Type<?>> componentTypes,
             // Various other info which may be used by some component types... not sure of a better way to handle this yet :(
             @Nullable VanillaModel vanillaModel
+    ) throws AvatarInitError {
+        this(manager, key, loadTimeModules, allocationTracker, componentTypes, vanillaModel, null);
+    }
+
+    // The prototype must already be acquired by the caller; it's released when this avatar is destroyed.
+    public Avatar(
+            AvatarManager<K> manager, K key,
+            AvatarModules loadTimeModules, @Nullable AllocationTracker<AvatarOutOfMemoryError> allocationTracker,
+            Collection<AvatarComponent.Type<?>> componentTypes,
+            @Nullable VanillaModel vanillaModel,
+            @Nullable AvatarPrototype prototype
     ) throws AvatarInitError {
         // Code here may throw AvatarInitError, which will prevent construction of the avatar at all
         try {
@@ -70,33 +126,134 @@ public final class Avatar<K> {
             this.manager = manager;
             this.key = key;
             this.allocationTracker = allocationTracker;
+            this.allocationLedger = new AllocationLedger(allocationTracker);
+            this.prototype = prototype;
             // Add script runtimes to the set of components
             componentTypes = new HashSet<>(componentTypes);
             componentTypes.addAll(loadTimeModules.scriptRuntimeTypes());
             // Set the extra helper fields
             this.vanillaModel = vanillaModel;
-            // Construct all the provided component types
+            // Construct all the provided component types, building independent ones concurrently
             this.components = new IdMap<>(AvatarComponent.Type.class);
-            for (var ty : componentTypes) components.put(ty, ty.factory.apply(this, loadTimeModules));
+            FiguraEvents.AvatarConstruction constructionEvent = new FiguraEvents.AvatarConstruction();
+            constructionEvent.begin();
+            new ComponentGraph(this, loadTimeModules, componentTypes, components).build();
             // Create presentComponents array by removing null elements for faster iteration.
             this.presentComponents = this.components.values().stream().filter(Objects::nonNull).toArray(AvatarComponent[]::new);
+            if (constructionEvent.shouldCommit()) {
+                constructionEvent.avatar = String.valueOf(key);
+                constructionEvent.components = presentComponents.length;
+                constructionEvent.commit();
+            }
+            // Sort the components into their phases
+            List<AvatarComponent<?>> tickers = new ArrayList<>(), errorHandlers = new ArrayList<>(), destroyers = new ArrayList<>();
+            List<ProfilingCategory> tickerCategories = new ArrayList<>();
+            for (AvatarComponent.Type<?> type : componentTypes.stream().sorted(Comparator.comparingInt(t -> t.id)).toList()) {
+                AvatarComponent<?> component = this.components.get(type);
+                if (component == null) continue;
+                Set<AvatarComponent.Phase> phases = component.phases();
+                if (phases.contains(AvatarComponent.Phase.TICK)) {
+                    tickers.add(component);
+                    tickerCategories.add(type.tickCategory);
+                }
+                if (prototype != null && prototype.isShared(component)) continue;
+                if (phases.contains(AvatarComponent.Phase.ERROR)) errorHandlers.add(component);
+                if (phases.contains(AvatarComponent.Phase.DESTROY)) destroyers.add(component);
+            }
+            this.tickers = tickers.toArray(AvatarComponent[]::new);
+            this.tickerCategories = tickerCategories.toArray(ProfilingCategory[]::new);
+            this.errorHandlers = errorHandlers.toArray(AvatarComponent[]::new);
+            this.destroyers = destroyers.toArray(AvatarComponent[]::new);
+            // Combine the components' readiness
+            this.ready = CompletableFuture.allOf(Arrays.stream(presentComponents).map(AvatarComponent::whenReady).toArray(CompletableFuture[]::new));
+            FiguraEvents.AvatarReadiness readinessEvent = new FiguraEvents.AvatarReadiness();
+            if (readinessEvent.isEnabled()) {
+                readinessEvent.begin();
+                ready.whenComplete((v, err) -> {
+                    if (!readinessEvent.shouldCommit()) return;
+                    readinessEvent.avatar = String.valueOf(key);
+                    readinessEvent.succeeded = err == null;
+                    readinessEvent.commit();
+                });
+            }
+            // Script-driven components stay hidden until the init script is done
+            List<AvatarComponent.Type<?>> scriptDriven = new ArrayList<>(loadTimeModules.scriptRuntimeTypes());
+            scriptDriven.add(AvatarEvents.TYPE);
+            this.hiddenUntilActive = new boolean[scriptDriven.stream().mapToInt(t -> t.id).max().orElse(-1) + 1];
+            for (AvatarComponent.Type<?> type : scriptDriven) hiddenUntilActive[type.id] = true;
             // Create runtime modules
             this.modules = ListUtils.map(loadTimeModules.loadTimeModules(), loadTime -> new AvatarModules.RuntimeModule(this, loadTime, allocationTracker));
         } catch (AvatarOutOfMemoryError oom) {
             // Out of memory
             throw new AvatarInitError(FiguraException.INTERNAL_ERROR, new TranslatableItems.Items1<>("TODO OOM Errors"));
         }
-        // Run startup code in the modules. Preliminary timeout of 5 seconds for the init script, TODO configurable
-        AvatarTimeTracker.getInstance().runTimed(this, ProfilingCategory.INITIALIZATION, 5_000_000_000L, () -> {
-            // This should be okay to run on an off-thread here, since it can't access world state
-            this.modules.getLast().initialize(this.modules);
+        // Run startup code in the modules as a separate loading task, so the geometry doesn't have to wait for it
+        stage = Stage.GEOMETRY;
+        AvatarLoadScheduler.INSTANCE.submit(AvatarLoadScheduler.currentPriority(), () -> {
+            initialize();
+            return null;
         });
     }
 
+    // Runs the init script on a loading thread, then activates the avatar.
+    // While this runs, the avatar may already be rendering on the main thread. Setters relevant to rendering on published
+    // parts are queued through QueuedSetters, and script-driven components are hidden, so the main thread never enters the script.
+    private void initialize() {
+        boolean skip;
+        synchronized (this) { skip = destroyed; }
+        initThread = Thread.currentThread();
+        try {
+            // Preliminary timeout of 5 seconds for the init script, TODO configurable
+            // Avatars built without modules (e.g. headless ones in tests) have no init script, and go straight to ACTIVE
+            if (!skip && !this.modules.isEmpty()) QueuedSetters.FLAG.use(() -> AvatarTimeTracker.getInstance().runTimed(this, ProfilingCategory.INITIALIZATION, 5_000_000_000L, () -> {
+                // This should be okay to run on an off-thread here, since it can't access world state
+                this.modules.getLast().initialize(this.modules);
+            }));
+        } catch (Throwable unexpected) {
+            unexpectedError(unexpected);
+        } finally {
+            initThread = null;
+        }
+        boolean destroyNow;
+        synchronized (this) {
+            initializing = false;
+            destroyNow = destroyed;
+            if (!destroyNow) stage = Stage.ACTIVE;
+        }
+        if (destroyNow) destroyComponents();
+        else active.complete(null);
+    }
+
+    public Stage getStage() {
+        return stage;
+    }
+
+    // Whether this avatar opted in to thread safety. Thread-safe avatars tick in parallel with each other
+    // (see AvatarTickScheduler), and AvatarView doesn't lock them.
+    public boolean isThreadSafe() {
+        return threadSafe;
+    }
+
+    // Opt this avatar in to thread safety, from any thread and at any point in its life.
+    // Takes effect from the next tick. Synchronized so that anyone already inside AvatarView.use() under the avatar's
+    // lock finishes before callers stop taking it. There's no way back, since a caller who saw the avatar as
+    // thread-safe may still be using it without the lock.
+    public synchronized void markThreadSafe() {
+        threadSafe = true;
+    }
+
+    // Completes once the init script is done and all components are available. Never completes if the avatar is destroyed first.
+    public CompletableFuture<Void> whenActive() {
+        return active;
+    }
+
     public boolean isReady() {
-        for (AvatarComponent<?> component : presentComponents)
-            if (!component.isReady()) return false;
-        return true;
+        return ready.isDone();
+    }
+
+    // Completes once every component is ready. May complete exceptionally if some component's async work failed.
+    public CompletableFuture<Void> whenReady() {
+        return ready;
     }
 
     private static final Translatable<TranslatableItems.Items0> UNLOADED = Translatable.create("figura_core.avatar.unloaded");
@@ -106,6 +263,11 @@ public final class Avatar<K> {
         this.manager.unload(this.key);
     }
 
+    // The allocation tracker, tagging allocations with the given source in the allocation ledger. Null if untracked.
+    public @Nullable AllocationTracker<AvatarOutOfMemoryError> allocationTracker(AllocationLedger.Source source) {
+        return allocationLedger.tracker(source);
+    }
+
     // Access this using the static field <subclass of AvatarComponent>.TYPE.
     // This field should exist if they followed the implementation instructions in AvatarComponent correctly.
     @SuppressWarnings("unchecked")
@@ -114,6 +276,8 @@ public final class Avatar<K> {
         // All mixins and such will look for a component on a given avatar and try to use it;
         // but they will be unable to get this component if the avatar is errored.
         if (isErrored()) return null;
+        // Script-driven components don't exist until the init script is done
+        if (stage == Stage.GEOMETRY && type.id < hiddenUntilActive.length && hiddenUntilActive[type.id] && Thread.currentThread() != initThread) return null;
         return (T) components.get(type);
     }
 
@@ -153,8 +317,8 @@ public final class Avatar<K> {
         }
         // Set the error
         this.error = reason;
-        // Call onError for every component
-        for (AvatarComponent<?> component : presentComponents)
+        // Call onError for every component that wants it
+        for (AvatarComponent<?> component : errorHandlers)
             component.onError();
         return true;
     }
@@ -176,26 +340,58 @@ public final class Avatar<K> {
     }
 
     // Run on cleanup. Should be used to prevent memory leaks.
+    // Components shared through a prototype are left alone; the prototype destroys them once it's unused.
+    // If the init script is still running, destruction is deferred until it's done.
     public void destroy() {
-        for (AvatarComponent<?> component : presentComponents)
+        synchronized (this) {
+            if (destroyed) return;
+            destroyed = true;
+            if (initializing) return;
+        }
+        destroyComponents();
+    }
+
+    private void destroyComponents() {
+        for (AvatarComponent<?> component : destroyers)
             component.destroy();
+        if (prototype != null) prototype.release();
+    }
+
+    // Rough size in bytes of the native resources which destroy() will release
+    public long nativeBytes() {
+        long bytes = 0;
+        for (AvatarComponent<?> component : destroyers)
+            bytes += component.nativeBytes();
+        return bytes;
     }
 
     // Run at the end of each client tick.
-    // It just ticks each component in the order they were added to the Avatar.
-    // Should run on the main thread!
+    // It ticks each component that has a tick() in dependency order, recording the time each one takes.
+    // Should run on the main thread, unless the avatar is thread-safe; see AvatarTickScheduler.
     public void tick() {
         if (isErrored()) return; // Don't tick if errored
-        for (AvatarComponent<?> component : presentComponents) {
+        FiguraEvents.AvatarTick event = new FiguraEvents.AvatarTick();
+        event.begin();
+        AvatarProfiling profiling = getComponent(AvatarProfiling.TYPE);
+        boolean active = stage == Stage.ACTIVE;
+        for (int i = 0; i < tickers.length; i++) {
+            // Script runtimes may be busy with the init script on another thread
+            if (!active && tickers[i] instanceof ScriptRuntimeComponent<?>) continue;
+            long start = System.nanoTime();
             try {
-                component.tick();
+                tickers[i].tick();
             } catch (AvatarError err) {
                 error(err);
             } catch (Throwable unexpected) {
                 unexpectedError(unexpected);
             }
+            if (profiling != null) profiling.recordTime(tickerCategories[i], System.nanoTime() - start);
             if (isErrored()) break;
         }
+        if (event.shouldCommit()) {
+            event.avatar = String.valueOf(key);
+            event.commit();
+        }
     }
 
     // Helper methods
@@ -3,11 +3,16 @@ package org.figuramc.figura_core.avatars;
 import org.figuramc.figura_core.avatars.errors.AvatarError;
 import org.figuramc.figura_core.avatars.errors.AvatarInitError;
 import org.figuramc.figura_core.avatars.errors.AvatarOutOfMemoryError;
+import org.figuramc.figura_core.script_hooks.timing.ProfilingCategory;
 import org.figuramc.figura_core.util.enumlike.EnumLike;
 import org.figuramc.figura_core.util.functional.BiThrowingBiFunction;
 import org.figuramc.figura_core.util.functional.ThrowingBiFunction;
 
 import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * A single component in an Avatar, good for keeping code organized.
@@ -25,6 +30,10 @@ public interface AvatarComponent<Self extends AvatarComponent<Self>> {
     // The generic makes the Avatar.getComponent() method more convenient.
     final class Type<X extends AvatarComponent<X>> extends EnumLike {
         public final BiThrowingBiFunction<Avatar<?>, AvatarModules, X, AvatarInitError, AvatarOutOfMemoryError> factory;
+        // The types which must be constructed before this one, if the avatar has them.
+        public final List<Type<?>> dependencies;
+        // Profiling category for time spent ticking components of this type
+        public final ProfilingCategory tickCategory;
         // By passing the possible dependencies as arguments, we ensure they're initialized first, and therefore have smaller IDs.
         public Type(String name, BiThrowingBiFunction<Avatar<?>, AvatarModules, X, AvatarInitError, AvatarOutOfMemoryError> factory, Type<?>... possibleDependencies) {
             super(name);
@@ -32,21 +41,46 @@ public interface AvatarComponent<Self extends AvatarComponent<Self>> {
             // If a value here is null, then you have a dependency cycle.
             if (!Arrays.stream(possibleDependencies).allMatch(dep -> dep != null && dep.id < this.id))
                 throw new IllegalStateException();
+            this.dependencies = List.of(possibleDependencies);
+            this.tickCategory = new ProfilingCategory(name.toLowerCase(Locale.ROOT), ProfilingCategory.TICKING_COMPONENTS);
         }
     }
 
+    // The lifecycle phases a component can take part in. A component takes part in a phase by listing it in phases(),
+    // and overriding the phase's method. Avatars only dispatch each phase to the components which take part in it,
+    // so the empty defaults cost nothing.
+    enum Phase {
+        TICK, // tick()
+        ERROR, // onError()
+        DESTROY // destroy()
+    }
+
+    // The phases this component takes part in. Read once, when the avatar is built.
+    default Set<Phase> phases() { return Set.of(); }
+
     // Return true when this is completely ready to be initialized on the main thread.
     // Textures, for example, perform uploading asynchronously,
     // so they should only return true once all textures have been uploaded properly.
-    default boolean isReady() { return true; }
+    default boolean isReady() { return whenReady().isDone(); }
 
-    // Run when the avatar errors
+    // A future which completes once isReady() would return true. Lets the AvatarManager wait for
+    // readiness without polling every component each frame.
+    // Components which finish some work asynchronously should override this.
+    default CompletableFuture<?> whenReady() { return ALREADY_READY; }
+
+    // Shared, already-completed future for components with no async work.
+    CompletableFuture<Void> ALREADY_READY = CompletableFuture.completedFuture(null);
+
+    // Run when the avatar errors. Only called if phases() contains Phase.ERROR.
     default void onError() { }
 
-    // Run on Avatar cleanup. Should eventually destroy any native resources that won't be GC'ed and prevent a memory leak.
+    // Run on Avatar cleanup. Only called if phases() contains Phase.DESTROY. Should eventually destroy any native resources that won't be GC'ed and prevent a memory leak.
     default void destroy() { }
 
-    // Runs when the Avatar is ticked.
+    // Rough size in bytes of the native resources that destroy() will release. Only used for reporting and budgeting.
+    default long nativeBytes() { return 0; }
+
+    // Runs when the Avatar is ticked. Only called if phases() contains Phase.TICK.
     // Dependencies will always run before this, as declared in createId().
     default void tick() throws AvatarError { }
 
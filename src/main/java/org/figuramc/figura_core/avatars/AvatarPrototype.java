@@ -0,0 +1,165 @@
+package org.figuramc.figura_core.avatars;
+
+import org.figuramc.figura_core.avatars.components.Materials;
+import org.figuramc.figura_core.avatars.components.Textures;
+import org.figuramc.figura_core.data.materials.ModuleMaterials;
+import org.figuramc.figura_core.model.rendering.RenderData;
+import org.figuramc.figura_core.data.importer.ModuleImportingException;
+import org.figuramc.figura_core.util.functional.BiThrowingSupplier;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Immutable data shared between many avatars built from the same materials, like CEM entities of one type.
+ * The first avatar to need some piece of data builds it, and every later avatar reuses it:
+ * - The loaded modules
+ * - The Textures (and their atlas upload) and Materials components
+ * - Baked vertex data of each model part
+ * - The built RenderData (vertex buffers) of the entity root
+ * Each avatar still owns its own transforms, animation state and script state.
+ *
+ * Shared data must never be mutated. Rebuilding a part's rendering data (as scripts do after changing
+ * the part hierarchy or materials) always creates a new RenderData owned by that avatar alone, so the
+ * shared buffers act as copy-on-write.
+ *
+ * Prototypes are reference counted by their avatars. A prototype retires once its last avatar is destroyed,
+ * or when retire() is called; the shared native resources are destroyed as soon as it's retired and unused.
+ */
+public final class AvatarPrototype {
+
+    // Component types which are shared between all avatars of a prototype
+    private static final Set<AvatarComponent.Type<?>> SHARED_COMPONENTS = Set.of(Textures.TYPE, Materials.TYPE);
+    private static final Object MODULES_KEY = new Object();
+
+    private final ModuleMaterials materials;
+
+    // Everything below is guarded by "this"
+    private final Map<Object, CompletableFuture<Object>> shared = new IdentityHashMap<>();
+    private final Set<Object> sharedValues = Collections.newSetFromMap(new IdentityHashMap<>()); // Every value successfully built
+    private int users; // Number of live avatars using this prototype
+    private boolean retired; // Once retired, no new avatars may use this
+    private boolean disposed; // Shared resources have been destroyed
+
+    public AvatarPrototype(ModuleMaterials materials) {
+        this.materials = materials;
+    }
+
+    /**
+     * The modules for avatars of this prototype, loaded only once.
+     */
+    public AvatarModules modules() throws ModuleImportingException, IOException {
+        return this.<AvatarModules, ModuleImportingException, IOException>share(MODULES_KEY, () -> AvatarModules.loadModules(materials));
+    }
+
+    public static boolean isSharedType(AvatarComponent.Type<?> type) {
+        return SHARED_COMPONENTS.contains(type);
+    }
+
+    /**
+     * Return whether the given object is owned by this prototype rather than any single avatar.
+     */
+    public synchronized boolean isShared(Object value) {
+        return sharedValues.contains(value);
+    }
+
+    /**
+     * Fetch the shared value for the given key (compared by identity), building it if this is the first request.
+     * If another avatar is building it right now, waits for that instead of building it twice.
+     * If the builder fails, its error is thrown to the caller who ran it. Anyone who was waiting on it tries again,
+     * building the value themselves if nobody else is, so each caller only ever throws its own builder's errors.
+     */
+    @SuppressWarnings("unchecked")
+    public <T, E1 extends Throwable, E2 extends Throwable> T share(Object key, BiThrowingSupplier<T, E1, E2> builder) throws E1, E2 {
+        while (true) {
+            CompletableFuture<Object> future;
+            boolean mustBuild = false;
+            synchronized (this) {
+                future = shared.get(key);
+                if (future == null) {
+                    future = new CompletableFuture<>();
+                    shared.put(key, future);
+                    mustBuild = true;
+                }
+            }
+            if (mustBuild) {
+                try {
+                    T value = builder.get();
+                    synchronized (this) { if (value != null) sharedValues.add(value); }
+                    future.complete(value);
+                    return value;
+                } catch (Throwable t) {
+                    synchronized (this) { shared.remove(key); }
+                    future.completeExceptionally(t);
+                    throw t;
+                }
+            }
+            try {
+                return (T) future.join();
+            } catch (CompletionException failed) {
+                // The other builder already removed the key, so go again
+            }
+        }
+    }
+
+    /**
+     * Register a new avatar as a user of this prototype.
+     * Returns false if the prototype was already retired; don't use it in that case.
+     */
+    public synchronized boolean acquire() {
+        if (retired) return false;
+        users++;
+        return true;
+    }
+
+    // Called when an avatar using this prototype is destroyed.
+    // Once the last one is gone, the prototype retires itself and its shared resources are destroyed.
+    public void release() {
+        synchronized (this) {
+            users--;
+            if (users > 0 || disposed) return;
+            retired = true;
+            disposed = true;
+        }
+        dispose();
+    }
+
+    /**
+     * Stop handing out this prototype. Its resources are destroyed once no avatar uses them anymore.
+     */
+    public void retire() {
+        synchronized (this) {
+            retired = true;
+            if (users > 0 || disposed) return;
+            disposed = true;
+        }
+        dispose();
+    }
+
+    /**
+     * Whether this prototype was retired, either explicitly or because its last avatar was destroyed.
+     * Owners should replace a retired prototype with a new one rather than hand it out again.
+     */
+    public synchronized boolean isRetired() {
+        return retired;
+    }
+
+    private void dispose() {
+        List<Object> values;
+        synchronized (this) { values = List.copyOf(sharedValues); }
+        for (Object value : values) {
+            switch (value) {
+                case AvatarComponent<?> component -> component.destroy();
+                case RenderData renderData -> renderData.close();
+                default -> {}
+            }
+        }
+    }
+
+}
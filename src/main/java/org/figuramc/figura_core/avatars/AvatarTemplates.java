@@ -4,12 +4,14 @@ import org.figuramc.figura_core.avatars.components.*;
 import org.figuramc.figura_core.avatars.errors.AvatarError;
 import org.figuramc.figura_core.avatars.errors.AvatarInitError;
 import org.figuramc.figura_core.avatars.errors.AvatarOutOfMemoryError;
+import org.figuramc.figura_core.data.importer.ModuleImportingException;
 import org.figuramc.figura_core.manage.AvatarManagers;
 import org.figuramc.figura_core.minecraft_interop.FiguraConnectionPoint;
 import org.figuramc.figura_core.minecraft_interop.vanilla_parts.VanillaModel;
 import org.figuramc.memory_tracker.AllocationTracker;
 import org.figuramc.memory_tracker.AllocationTrackerImpl;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.UUID;
 
@@ -46,8 +48,29 @@ public class AvatarTemplates {
         return new Avatar<>(
                 AvatarManagers.ENTITIES, uuid,
                 modules, null,
-                List.of(AvatarEvents.TYPE, AvatarProfiling.TYPE, CemSelfDeleter.TYPE, CustomItems.TYPE, EntityRoot.TYPE, Materials.TYPE, Molang.TYPE, RenderDataHolder.TYPE, Textures.TYPE, VanillaRendering.TYPE),
+                CEM_TYPES,
                 vanillaModel
         );
     }
+
+    // Create a CEM avatar which shares its immutable data with all other avatars of the given prototype.
+    public static Avatar<UUID> cemAvatar(UUID uuid, VanillaModel vanillaModel, AvatarPrototype prototype) throws AvatarInitError, ModuleImportingException, IOException {
+        AvatarModules modules = prototype.modules();
+        // If the prototype was already torn down, fall back to a standalone avatar
+        if (!prototype.acquire()) return cemAvatar(uuid, vanillaModel, modules);
+        try {
+            return new Avatar<>(
+                    AvatarManagers.ENTITIES, uuid,
+                    modules, null,
+                    CEM_TYPES,
+                    vanillaModel,
+                    prototype
+            );
+        } catch (Throwable t) {
+            prototype.release();
+            throw t;
+        }
+    }
+
+    private static final List<AvatarComponent.Type<?>> CEM_TYPES = List.of(AvatarEvents.TYPE, AvatarProfiling.TYPE, CemSelfDeleter.TYPE, CustomItems.TYPE, EntityRoot.TYPE, Materials.TYPE, Molang.TYPE, RenderDataHolder.TYPE, Textures.TYPE, VanillaRendering.TYPE);
 }
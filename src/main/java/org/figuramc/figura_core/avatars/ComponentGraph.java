@@ -0,0 +1,177 @@
+package org.figuramc.figura_core.avatars;
+
+import org.figuramc.figura_core.avatars.errors.AvatarInitError;
+import org.figuramc.figura_core.avatars.errors.AvatarOutOfMemoryError;
+import org.figuramc.figura_core.manage.AvatarLoadScheduler;
+import org.figuramc.figura_core.manage.LoadPriority;
+import org.figuramc.figura_core.util.enumlike.IdMap;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Constructs an Avatar's components as a dependency graph.
+ * A component is built as soon as all of its (present) dependencies are built, and independent components
+ * are built concurrently on the avatar loading threads, so load time follows the critical path instead of the sum.
+ *
+ * The thread calling build() also works through the graph itself, so it never deadlocks waiting on
+ * helper tasks which can't get a loading thread.
+ *
+ * If any component fails to build, the ones already built are destroyed before the error is rethrown,
+ * since no avatar will exist to destroy them later.
+ */
+final class ComponentGraph {
+
+    private final Avatar<?> avatar;
+    private final AvatarModules modules;
+    private final IdMap<AvatarComponent.Type, AvatarComponent<?>> output;
+    private final LoadPriority priority;
+
+    // Everything below is guarded by "this"
+    private final ArrayDeque<Node> ready = new ArrayDeque<>(); // Nodes whose dependencies are all built
+    private final List<AvatarLoadScheduler.Task<?>> helpers = new ArrayList<>();
+    private final List<AvatarComponent<?>> built = new ArrayList<>(); // Components in the order they were built
+    private int remaining; // Number of nodes not built yet
+    private int running; // Number of nodes currently being built
+    private @Nullable Throwable failure; // First error thrown by a factory
+
+    private static final class Node {
+        final AvatarComponent.Type<?> type;
+        final List<Node> dependents = new ArrayList<>(0);
+        int pendingDependencies;
+        Node(AvatarComponent.Type<?> type) { this.type = type; }
+    }
+
+    ComponentGraph(Avatar<?> avatar, AvatarModules modules, Collection<AvatarComponent.Type<?>> types, IdMap<AvatarComponent.Type, AvatarComponent<?>> output) {
+        this.avatar = avatar;
+        this.modules = modules;
+        this.output = output;
+        this.priority = AvatarLoadScheduler.currentPriority();
+        // Link up the nodes. Dependencies which the avatar doesn't have are skipped.
+        IdMap<AvatarComponent.Type, Node> nodes = new IdMap<>(AvatarComponent.Type.class);
+        for (var type : types) nodes.put(type, new Node(type));
+        for (Node node : nodes.values()) {
+            if (node == null) continue;
+            for (var dependency : node.type.dependencies) {
+                Node depNode = nodes.get(dependency);
+                if (depNode == null) continue;
+                depNode.dependents.add(node);
+                node.pendingDependencies++;
+            }
+        }
+        // Helpers may start running as soon as the first node is marked ready, so hold the lock
+        synchronized (this) {
+            this.remaining = nodes.size();
+            for (Node node : nodes.values())
+                if (node != null && node.pendingDependencies == 0)
+                    markReady(node);
+        }
+    }
+
+    /**
+     * Build all the components, putting them in the output map.
+     * Returns once every component is built, or throws the first error once no more components are being built.
+     */
+    void build() throws AvatarInitError, AvatarOutOfMemoryError {
+        try {
+            while (true) {
+                Node next;
+                synchronized (this) {
+                    while (true) {
+                        if (failure != null && running == 0) { destroyBuilt(failure); rethrow(failure); return; }
+                        if (remaining == 0) return;
+                        next = ready.poll();
+                        if (next != null) { running++; break; }
+                        try { wait(); } catch (InterruptedException ignored) {}
+                    }
+                }
+                run(next);
+            }
+        } finally {
+            // Any helpers which haven't started have nothing left to do
+            synchronized (this) {
+                for (var helper : helpers) AvatarLoadScheduler.INSTANCE.cancel(helper);
+                helpers.clear();
+            }
+        }
+    }
+
+    // Called with the lock held
+    private void markReady(Node node) {
+        ready.add(node);
+        helpers.add(AvatarLoadScheduler.INSTANCE.submit(priority, () -> {
+            Node next;
+            synchronized (this) {
+                next = ready.poll();
+                if (next == null) return null;
+                running++;
+            }
+            run(next);
+            return null;
+        }));
+    }
+
+    private void run(Node node) {
+        AvatarComponent<?> component = null;
+        Throwable error = null;
+        try {
+            // Components which can be shared are only built by the first avatar of a prototype
+            AvatarPrototype prototype = avatar.prototype;
+            if (prototype != null && AvatarPrototype.isSharedType(node.type))
+                component = prototype.<AvatarComponent<?>, AvatarInitError, AvatarOutOfMemoryError>share(node.type, () -> node.type.factory.apply(avatar, modules));
+            else
+                component = node.type.factory.apply(avatar, modules);
+        } catch (Throwable t) {
+            error = t;
+        }
+        synchronized (this) {
+            running--;
+            if (error != null) {
+                // Stop building anything else
+                if (failure == null) failure = error;
+                ready.clear();
+            } else {
+                if (component != null) {
+                    output.put(node.type, component);
+                    built.add(component);
+                }
+                remaining--;
+                if (failure == null) {
+                    for (Node dependent : node.dependents)
+                        if (--dependent.pendingDependencies == 0)
+                            markReady(dependent);
+                }
+            }
+            notifyAll();
+        }
+    }
+
+    // Destroy the components built so far, dependents first, leaving out any a prototype shares with other avatars.
+    // Errors while destroying are attached to the failure, so they don't hide it.
+    // Called with the lock held, once nothing is being built anymore.
+    private void destroyBuilt(Throwable failure) {
+        AvatarPrototype prototype = avatar.prototype;
+        for (int i = built.size() - 1; i >= 0; i--) {
+            AvatarComponent<?> component = built.get(i);
+            if (prototype != null && prototype.isShared(component)) continue;
+            try {
+                component.destroy();
+            } catch (Throwable t) {
+                failure.addSuppressed(t);
+            }
+        }
+        built.clear();
+    }
+
+    private static void rethrow(Throwable failure) throws AvatarInitError, AvatarOutOfMemoryError {
+        if (failure instanceof AvatarInitError initError) throw initError;
+        if (failure instanceof AvatarOutOfMemoryError oom) throw oom;
+        if (failure instanceof RuntimeException runtimeException) throw runtimeException;
+        if (failure instanceof Error error) throw error;
+        throw new IllegalStateException("Unexpected checked exception while building components", failure);
+    }
+
+}
@@ -20,7 +20,7 @@ public class AvatarEvents implements AvatarComponent<AvatarEvents> {
     public final IdMap<Event<?, ?>, EventListener<?, ?>> eventListeners;
 
     public AvatarEvents(Avatar<?> avatar, AvatarModules modules) {
-        eventListeners = new IdMap<>(Event.class, e -> new EventListener<>(avatar, e.type));
+        eventListeners = new IdMap<>(Event.class, e -> new EventListener<>(avatar, e));
     }
 
     // Type-safe EventListener<T> getter from Event<T>
@@ -3,10 +3,20 @@ package org.figuramc.figura_core.avatars.components;
 import org.figuramc.figura_core.avatars.Avatar;
 import org.figuramc.figura_core.avatars.AvatarComponent;
 import org.figuramc.figura_core.avatars.AvatarModules;
+import org.figuramc.figura_core.avatars.errors.AvatarError;
+import org.figuramc.figura_core.avatars.errors.AvatarOutOfMemoryError;
+import org.figuramc.figura_core.minecraft_interop.FiguraConnectionPoint;
 import org.figuramc.figura_core.script_hooks.timing.ProfilingCategory;
+import org.figuramc.figura_core.script_hooks.timing.TimingHistogram;
+import org.figuramc.figura_core.util.exception.FiguraException;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Keep data about time spent by this avatar
@@ -16,10 +26,21 @@ public class AvatarProfiling implements AvatarComponent<AvatarProfiling> {
 
     public static final Type<AvatarProfiling> TYPE = new Type<>("AVATAR_PROFILING", AvatarProfiling::new);
 
-    public final Map<ProfilingCategory, Measurer> measurers = new HashMap<>();
+    // Concurrent, since the init script is timed on a loading thread while the avatar may already be ticking
+    public final Map<ProfilingCategory, Measurer> measurers = new ConcurrentHashMap<>();
+    // Interrupt checks per invocation, if the avatar is metered (see InstructionMeter). This is the unit the Lua
+    // runtime meters in: Cobalt checks for interrupts as it runs, not on every VM instruction, so counts are
+    // reproducible for a given script but lower than its actual instruction count.
+    public final Map<ProfilingCategory, Measurer> interruptCheckMeasurers = new ConcurrentHashMap<>();
+    // Histograms of this avatar's times, indexed by ProfilingCategory.index and rolled up the category tree.
+    // Most avatars only ever run in a few categories, so each one is created the first time it gets a time,
+    // and tracked as part of the avatar's memory. Replaced (never modified) when one is added.
+    private volatile @Nullable TimingHistogram[] histograms = new TimingHistogram[0];
 
-    public AvatarProfiling(Avatar<?> avatar, AvatarModules modules) {
+    private final Avatar<?> avatar;
 
+    public AvatarProfiling(Avatar<?> avatar, AvatarModules modules) {
+        this.avatar = avatar;
     }
 
     // TODO: Measurers in hierarchy, killing the avatar if running average exceeds a threshold, etc...
@@ -27,11 +48,174 @@ public class AvatarProfiling implements AvatarComponent<AvatarProfiling> {
     // Record time taken by this avatar in the given category
     public void recordTime(ProfilingCategory category, long elapsedNanos) {
         measurers.computeIfAbsent(category, x -> x == ProfilingCategory.INITIALIZATION ? new Measurer(1) : new Measurer(100)).recordTime(elapsedNanos);
+        for (ProfilingCategory c = category; c != null; c = c.parent) {
+            TimingHistogram histogram = histogram(c);
+            if (histogram != null) histogram.record(elapsedNanos);
+            TimingHistogram.global(c).record(elapsedNanos);
+        }
+        Throttle throttle = getThrottle(category);
+        if (throttle != null) throttle.recordTime(elapsedNanos);
+    }
+
+    // Record interrupt checks made by this avatar's script in the given category
+    public void recordInterruptChecks(ProfilingCategory category, long checks) {
+        interruptCheckMeasurers.computeIfAbsent(category, x -> x == ProfilingCategory.INITIALIZATION ? new Measurer(1) : new Measurer(100)).recordTime(checks);
+    }
+
+    // This avatar's histogram for the category, including times in its descendants.
+    // Null if no time was recorded in the category yet. For the same across all avatars, see TimingHistogram.global().
+    public @Nullable TimingHistogram getHistogram(ProfilingCategory category) {
+        TimingHistogram[] histograms = this.histograms;
+        return category.index < histograms.length ? histograms[category.index] : null;
+    }
+
+    // Get the histogram for the category, creating it if needed.
+    // Returns null if the avatar has no memory left for it, in which case the avatar is errored.
+    private @Nullable TimingHistogram histogram(ProfilingCategory category) {
+        TimingHistogram histogram = getHistogram(category);
+        if (histogram != null) return histogram;
+        synchronized (this) {
+            histogram = getHistogram(category);
+            if (histogram != null) return histogram;
+            histogram = new TimingHistogram();
+            try {
+                if (avatar.allocationTracker != null) avatar.allocationTracker.track(histogram, TimingHistogram.SIZE_ESTIMATE);
+            } catch (AvatarOutOfMemoryError oom) {
+                avatar.error(new AvatarError(FiguraException.LITERAL, "Ran out of memory profiling " + category.fullName + " (TODO translate)"));
+                return null;
+            }
+            // Categories may be created after this avatar, so grow the array if needed
+            TimingHistogram[] grown = Arrays.copyOf(this.histograms, Math.max(this.histograms.length, ProfilingCategory.count()));
+            grown[category.index] = histogram;
+            this.histograms = grown;
+            return histogram;
+        }
+    }
+
+    // -------- FRAME SCHEDULING -------- //
+
+    // Results from FrameBudgetScheduler. Only touched on the main thread.
+    private long expectedFrameNanos; // Moving average of this avatar's per-frame cost when it ran
+    private int deferredStreak; // Frames deferred in a row
+    private long framesDeferred; // Total frames deferred
+
+    public void recordFrameRun(long elapsedNanos) {
+        expectedFrameNanos = expectedFrameNanos == 0 ? elapsedNanos : (expectedFrameNanos * 7 + elapsedNanos) / 8;
+        deferredStreak = 0;
+    }
+
+    public void recordFrameDeferred() {
+        deferredStreak++;
+        framesDeferred++;
+    }
+
+    public long getExpectedFrameNanos() { return expectedFrameNanos; }
+    public int getDeferredStreak() { return deferredStreak; }
+    public long getFramesDeferred() { return framesDeferred; }
+
+    // -------- THROTTLING -------- //
+
+    // Per-frame render events can be throttled: instead of killing an avatar which is steadily too expensive,
+    // only 1 in every N invocations is allowed to run, with N adapting to the avatar's average cost.
+    // The rest are skipped by AvatarTimeTracker. Only touched on the main thread, except for the global totals.
+
+    // Budgets for the effective per-frame cost of a throttled event, per avatar and summed across all avatars.
+    public static volatile long perAvatarBudgetNanos = 2_000_000L;
+    public static volatile long globalBudgetNanos = 8_000_000L;
+    private static final int MAX_INTERVAL = 16;
+
+    // Sum of all avatars' effective per-frame costs, and the number of avatars contributing to it
+    private static final AtomicLong GLOBAL_COST = new AtomicLong();
+    private static final AtomicInteger CONTRIBUTORS = new AtomicInteger();
+
+    private final Throttle[] throttles = {
+            new Throttle(ProfilingCategory.CLIENT_RENDER_EVENT),
+            new Throttle(ProfilingCategory.ENTITY_RENDER_EVENT)
+    };
+
+    // Get the throttle for the category, or null if the category isn't throttled
+    public @Nullable Throttle getThrottle(ProfilingCategory category) {
+        for (Throttle throttle : throttles)
+            if (throttle.category == category)
+                return throttle;
+        return null;
+    }
+
+    // Whether the next invocation in the given category should run, or be skipped to stay within budget
+    public boolean shouldRun(ProfilingCategory category) {
+        Throttle throttle = getThrottle(category);
+        return throttle == null || throttle.shouldRun();
+    }
+
+    @Override
+    public Set<Phase> phases() {
+        return Set.of(Phase.DESTROY);
+    }
+
+    // Stop counting towards the global cost
+    @Override
+    public void destroy() {
+        for (Throttle throttle : throttles)
+            throttle.setContribution(0);
+    }
+
+    public final class Throttle {
+        public final ProfilingCategory category;
+        private long averageNanos; // Exponential moving average of the cost of invocations which ran
+        private int interval = 1; // Only 1 in every "interval" invocations runs
+        private int counter;
+        private long skipped; // Total number of skipped invocations
+        private long contribution; // What this throttle currently adds to GLOBAL_COST
+
+        private Throttle(ProfilingCategory category) {
+            this.category = category;
+        }
+
+        public int getInterval() { return interval; }
+        public long getAverageNanos() { return averageNanos; }
+        public long getSkipped() { return skipped; }
+        public boolean isThrottled() { return interval > 1; }
+
+        private boolean shouldRun() {
+            if (++counter < interval) {
+                skipped++;
+                return false;
+            }
+            counter = 0;
+            return true;
+        }
+
+        private void recordTime(long elapsedNanos) {
+            averageNanos = averageNanos == 0 ? elapsedNanos : (averageNanos * 7 + elapsedNanos) / 8;
+            // Our fair share of the global budget applies once the global budget is exceeded
+            long budget = perAvatarBudgetNanos;
+            if (GLOBAL_COST.get() > globalBudgetNanos)
+                budget = Math.min(budget, globalBudgetNanos / Math.max(1, CONTRIBUTORS.get()));
+            // Back off while over budget, and speed back up with some hysteresis once well under it
+            int newInterval = interval;
+            if (averageNanos / interval > budget) newInterval = Math.min(interval * 2, MAX_INTERVAL);
+            else if (interval > 1 && averageNanos / (interval / 2) < budget * 3 / 4) newInterval = interval / 2;
+            if (newInterval != interval) {
+                interval = newInterval;
+                FiguraConnectionPoint.CONSOLE_OUTPUT.logVerbose(avatar.key, newInterval == 1
+                        ? "No longer throttling " + category.fullName + " (average cost " + averageNanos / 1000 + " us)"
+                        : "Throttling " + category.fullName + " to 1 in " + newInterval + " invocations (average cost " + averageNanos / 1000 + " us)");
+            }
+            setContribution(averageNanos / interval);
+        }
+
+        private void setContribution(long newContribution) {
+            if (newContribution == contribution) return;
+            if (contribution == 0) CONTRIBUTORS.incrementAndGet();
+            else if (newContribution == 0) CONTRIBUTORS.decrementAndGet();
+            GLOBAL_COST.addAndGet(newContribution - contribution);
+            contribution = newContribution;
+        }
     }
 
     // Measures a profiling category, tracking information about it
     public static class Measurer {
-        private final long[] lastNValues; // Sliding window of elapsed times in nanoseconds
+        private final long[] lastNValues; // Sliding window of elapsed times in nanoseconds (or interrupt checks)
         private int index; // Current index into lastNValues (ring buffer)
         private long sum; // Sum of times in lastNValues
 
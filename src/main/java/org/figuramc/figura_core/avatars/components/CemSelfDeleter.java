@@ -6,6 +6,7 @@ import org.figuramc.figura_core.avatars.AvatarModules;
 import org.figuramc.figura_core.minecraft_interop.FiguraConnectionPoint;
 import org.figuramc.figura_core.minecraft_interop.game_data.entity.MinecraftEntity;
 
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -29,6 +30,11 @@ public class CemSelfDeleter implements AvatarComponent<CemSelfDeleter> {
         this.self = (Avatar<UUID>) avatar;
     }
 
+    @Override
+    public Set<Phase> phases() {
+        return Set.of(Phase.TICK);
+    }
+
     @Override
     public void tick() {
         // Fetch the entity if we don't already have it
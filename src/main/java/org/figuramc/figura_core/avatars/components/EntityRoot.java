@@ -3,9 +3,11 @@ package org.figuramc.figura_core.avatars.components;
 import org.figuramc.figura_core.avatars.Avatar;
 import org.figuramc.figura_core.avatars.AvatarComponent;
 import org.figuramc.figura_core.avatars.AvatarModules;
+import org.figuramc.figura_core.avatars.AvatarPrototype;
 import org.figuramc.figura_core.avatars.errors.AvatarInitError;
 import org.figuramc.figura_core.avatars.errors.AvatarOutOfMemoryError;
 import org.figuramc.figura_core.model.part.parts.FiguraModelPart;
+import org.figuramc.figura_core.model.rendering.RenderData;
 import org.figuramc.memory_tracker.AllocationTracker;
 import org.jetbrains.annotations.Nullable;
 
@@ -37,8 +39,14 @@ public class EntityRoot implements AvatarComponent<EntityRoot> {
         // Return a wrapper around all of them
         root = new FiguraModelPart(avatar, "", roots);
         root.getTransform().setScale(1f / 16); // Scale by 1/16 for entity!
-        // Make sure we build rendering data for this root and save it in the holder
-        AvatarInitError.wrapAvatarError(root::buildRenderingData);
+        // Make sure we build rendering data for this root and save it in the holder.
+        // Avatars built from a prototype share the root's vertex buffers instead.
+        AvatarPrototype prototype = avatar.prototype;
+        if (prototype == null) AvatarInitError.wrapAvatarError(root::buildRenderingData);
+        else root.renderData = prototype.<@Nullable RenderData, AvatarInitError, AvatarOutOfMemoryError>share(SHARED_RENDER_DATA, () -> AvatarInitError.wrapAvatarErrorFor(() -> root.buildRenderingData(null)));
     }
 
+    // Key for the shared RenderData in a prototype
+    private static final Object SHARED_RENDER_DATA = new Object();
+
 }
@@ -27,9 +27,32 @@ public class RenderDataHolder implements AvatarComponent<RenderDataHolder> {
         this.allRenderData.add(toCloseLater);
     }
 
+    // Whether the render data belongs to this avatar (rather than being shared through a prototype)
+    public boolean owns(RenderData renderData) {
+        return this.allRenderData.contains(renderData);
+    }
+
+    // Forget about render data, so it's no longer closed with the avatar. Returns false if it wasn't registered here.
+    public boolean unregister(RenderData renderData) {
+        return this.allRenderData.remove(renderData);
+    }
+
+    @Override
+    public Set<Phase> phases() {
+        return Set.of(Phase.DESTROY);
+    }
+
     // On destruction, destroy all render data
     @Override
     public void destroy() {
         allRenderData.forEach(RenderData::close);
     }
+
+    @Override
+    public long nativeBytes() {
+        long bytes = 0;
+        for (RenderData renderData : allRenderData)
+            bytes += renderData.nativeBytes();
+        return bytes;
+    }
 }
@@ -1,5 +1,6 @@
 package org.figuramc.figura_core.avatars.components;
 
+import org.figuramc.figura_core.avatars.AllocationLedger;
 import org.figuramc.figura_core.avatars.Avatar;
 import org.figuramc.figura_core.avatars.AvatarComponent;
 import org.figuramc.figura_core.avatars.errors.AvatarError;
@@ -13,6 +14,7 @@ import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.stream.Stream;
 
@@ -28,8 +30,8 @@ public class Textures implements AvatarComponent<Textures> {
     public final @Nullable FiguraTextureAtlas atlas;
     private final List<List<AvatarTexture>> textures; // textures[moduleIndex][textureIndex]
 
-    // Set this to true once all textures are uploaded
-    private volatile boolean ready = false;
+    // Completes once all textures are uploaded
+    private final CompletableFuture<Void> ready;
 
     public Textures(Avatar<?> avatar, AvatarModules modules) throws AvatarInitError, AvatarOutOfMemoryError {
         FiguraTextureAtlas.Builder atlasBuilder = FiguraTextureAtlas.builder();
@@ -37,19 +39,19 @@ public class Textures implements AvatarComponent<Textures> {
         for (var module : modules.loadTimeModules()) {
             ArrayList<AvatarTexture> moduleTextures = new ArrayList<>();
             for (ModuleMaterials.TextureMaterials mats : module.materials.textures())
-                moduleTextures.add(AvatarTexture.from(mats, avatar.allocationTracker, this, atlasBuilder));
+                moduleTextures.add(AvatarTexture.from(mats, avatar.allocationTracker(AllocationLedger.Source.TEXTURES), this, atlasBuilder));
             textures.add(moduleTextures);
         }
-        atlas = atlasBuilder.build(avatar.allocationTracker);
+        atlas = atlasBuilder.build(avatar.allocationTracker(AllocationLedger.Source.TEXTURES));
 
-        // Set our ready value to true once all textures are ready
-        CompletableFuture.allOf(
+        // We're ready once all textures are ready
+        ready = CompletableFuture.allOf(
                 Stream.concat(
                     textures.stream().flatMap(List::stream),
                     Stream.ofNullable(atlas)
                 ).map(AvatarTexture::ready)
                 .toArray(CompletableFuture[]::new)
-        ).thenRun(() -> this.ready = true);
+        );
     }
 
     public List<AvatarTexture> getTextures(int moduleIndex) {
@@ -61,10 +63,25 @@ public class Textures implements AvatarComponent<Textures> {
     }
 
     @Override
-    public boolean isReady() {
+    public CompletableFuture<?> whenReady() {
         return ready;
     }
 
+    // Estimate with 4 bytes per pixel; atlased textures are counted by their own size rather than the atlas's
+    @Override
+    public long nativeBytes() {
+        long bytes = 0;
+        for (var moduleTextures : textures)
+            for (var texture : moduleTextures)
+                bytes += 4L * texture.getWidth() * texture.getHeight();
+        return bytes;
+    }
+
+    @Override
+    public Set<Phase> phases() {
+        return Set.of(Phase.DESTROY);
+    }
+
     @Override
     public void destroy() {
         if (atlas != null) atlas.destroy();
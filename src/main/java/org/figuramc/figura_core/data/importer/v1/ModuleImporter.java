@@ -15,6 +15,7 @@ import org.figuramc.figura_core.util.ListUtils;
 import org.figuramc.figura_core.util.MapUtils;
 import org.figuramc.figura_core.util.data_structures.DataTree;
 import org.figuramc.figura_core.util.data_structures.Pair;
+import org.figuramc.figura_core.util.jfr.FiguraEvents;
 import org.figuramc.figura_translations.Translatable;
 import org.figuramc.figura_translations.TranslatableItems;
 import org.jetbrains.annotations.Nullable;
@@ -52,6 +53,19 @@ public class ModuleImporter {
     }
 
     public static ModuleMaterials importFromFile(File root) throws ModuleImportingException, IOException {
+        FiguraEvents.AvatarImport event = new FiguraEvents.AvatarImport();
+        event.begin();
+        try {
+            return importFromFileUntraced(root);
+        } finally {
+            if (event.shouldCommit()) {
+                event.path = root.getPath();
+                event.commit();
+            }
+        }
+    }
+
+    private static ModuleMaterials importFromFileUntraced(File root) throws ModuleImportingException, IOException {
 
         ModuleMaterials.MetadataMaterials metadata = readMetadata(root);
         Predicate<File> shouldIgnore = readFigIgnore(root);
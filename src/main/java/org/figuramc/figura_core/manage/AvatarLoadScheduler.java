@@ -0,0 +1,218 @@
+package org.figuramc.figura_core.manage;
+
+import org.figuramc.figura_core.util.functional.ThrowingSupplier;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs avatar loading work (imports, PNG decoding, init scripts...) on a dedicated, bounded set of daemon threads,
+ * instead of flooding the common ForkJoinPool with long blocking tasks.
+ * Queued tasks run in order of their LoadPriority, and in submission order within equal priorities.
+ */
+public class AvatarLoadScheduler {
+
+    // Singleton
+    public static final AvatarLoadScheduler INSTANCE = new AvatarLoadScheduler(Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+
+    // How long an idle worker waits for a task before re-checking whether it should shut down.
+    private static final long IDLE_CHECK_MILLIS = 1000;
+
+    // The priority of the task running on the current thread, if it's a loading thread
+    private static final ThreadLocal<LoadPriority> CURRENT_PRIORITY = new ThreadLocal<>();
+
+    private final PriorityBlockingQueue<Task<?>> queue = new PriorityBlockingQueue<>();
+    private final AtomicLong nextSequence = new AtomicLong();
+
+    // Worker bookkeeping
+    private volatile int concurrency;
+    private final AtomicInteger workerCount = new AtomicInteger();
+    private final AtomicInteger runningCount = new AtomicInteger();
+    private final AtomicInteger nextWorkerId = new AtomicInteger();
+
+    // Statistics, for tuning under load
+    private final AtomicLong completedTasks = new AtomicLong();
+    private final AtomicLong cancelledTasks = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong totalRunNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong maxRunNanos = new AtomicLong();
+
+    public AvatarLoadScheduler(int concurrency) {
+        setConcurrency(concurrency);
+    }
+
+    /**
+     * Set the maximum number of tasks that may run at once.
+     * Extra workers are started immediately; surplus workers exit once they finish their current task.
+     */
+    public void setConcurrency(int concurrency) {
+        if (concurrency < 1) throw new IllegalArgumentException("Avatar loading concurrency must be at least 1, got " + concurrency);
+        this.concurrency = concurrency;
+        while (true) {
+            int workers = workerCount.get();
+            if (workers >= concurrency) break;
+            if (workerCount.compareAndSet(workers, workers + 1)) {
+                Thread worker = new Thread(this::workerLoop, "Figura Avatar Loader #" + nextWorkerId.getAndIncrement());
+                worker.setDaemon(true);
+                worker.start();
+            }
+        }
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Queue up some work with the given priority.
+     * The returned task can be cancelled or reprioritized while it's still queued.
+     */
+    public <T> Task<T> submit(LoadPriority priority, ThrowingSupplier<T, Throwable> work) {
+        Task<T> task = new Task<>(work, priority, nextSequence.getAndIncrement());
+        queue.add(task);
+        return task;
+    }
+
+    /**
+     * Cancel a task if it hasn't started running yet; its future is cancelled as well.
+     * Returns false if the task already started (or finished), in which case nothing happens.
+     */
+    public boolean cancel(Task<?> task) {
+        if (!task.state.compareAndSet(Task.QUEUED, Task.CANCELLED)) return false;
+        queue.remove(task);
+        task.future.cancel(false);
+        cancelledTasks.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Change the priority of a task that's still queued. Does nothing if it already started.
+     */
+    public void reprioritize(Task<?> task, LoadPriority priority) {
+        if (task.priority.equals(priority)) return;
+        // The task must leave the queue while its priority changes, or it would corrupt the heap.
+        // If it's no longer in the queue, then a worker already took it, and the priority doesn't matter anymore.
+        if (queue.remove(task)) {
+            task.priority = priority;
+            queue.add(task);
+        }
+    }
+
+    /**
+     * Get the priority of the loading task running on this thread.
+     * Useful for work that splits itself into more tasks. Returns ENTITY if this isn't a loading thread.
+     */
+    public static LoadPriority currentPriority() {
+        LoadPriority priority = CURRENT_PRIORITY.get();
+        return priority == null ? LoadPriority.ENTITY : priority;
+    }
+
+    private void workerLoop() {
+        while (true) {
+            // Exit if there are too many workers
+            int workers = workerCount.get();
+            if (workers > concurrency) {
+                if (workerCount.compareAndSet(workers, workers - 1)) return;
+                continue;
+            }
+            Task<?> task;
+            try {
+                task = queue.poll(IDLE_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ignored) {
+                continue;
+            }
+            if (task != null) runTask(task);
+        }
+    }
+
+    private <T> void runTask(Task<T> task) {
+        // If the task was cancelled between being polled and now, skip it
+        if (!task.state.compareAndSet(Task.QUEUED, Task.RUNNING)) return;
+        runningCount.incrementAndGet();
+        long start = System.nanoTime();
+        task.waitNanos = start - task.enqueueTime;
+        CURRENT_PRIORITY.set(task.priority);
+        try {
+            task.future.complete(task.work.get());
+        } catch (Throwable t) {
+            task.future.completeExceptionally(t);
+        } finally {
+            CURRENT_PRIORITY.remove();
+            task.runNanos = System.nanoTime() - start;
+            task.state.set(Task.DONE);
+            runningCount.decrementAndGet();
+            completedTasks.incrementAndGet();
+            totalWaitNanos.addAndGet(task.waitNanos);
+            totalRunNanos.addAndGet(task.runNanos);
+            maxWaitNanos.accumulateAndGet(task.waitNanos, Math::max);
+            maxRunNanos.accumulateAndGet(task.runNanos, Math::max);
+        }
+    }
+
+    // Number of tasks waiting to start
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    // Number of tasks currently running
+    public int getRunningCount() {
+        return runningCount.get();
+    }
+
+    public Stats getStats() {
+        return new Stats(getQueueDepth(), getRunningCount(), completedTasks.get(), cancelledTasks.get(), totalWaitNanos.get(), totalRunNanos.get(), maxWaitNanos.get(), maxRunNanos.get());
+    }
+
+    /**
+     * A snapshot of the scheduler's statistics.
+     */
+    public record Stats(int queueDepth, int running, long completed, long cancelled, long totalWaitNanos, long totalRunNanos, long maxWaitNanos, long maxRunNanos) {
+        public long averageWaitNanos() { return completed == 0 ? 0 : totalWaitNanos / completed; }
+        public long averageRunNanos() { return completed == 0 ? 0 : totalRunNanos / completed; }
+    }
+
+    /**
+     * A unit of loading work.
+     * The result (or error) of the work is delivered through future().
+     */
+    public static final class Task<T> implements Comparable<Task<?>> {
+
+        private static final int QUEUED = 0, RUNNING = 1, DONE = 2, CANCELLED = 3;
+
+        private final ThrowingSupplier<T, Throwable> work;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private final AtomicInteger state = new AtomicInteger(QUEUED);
+        private final long sequence; // Tiebreaker, so equal priorities run in submission order
+        private final long enqueueTime = System.nanoTime();
+        private volatile LoadPriority priority;
+        private volatile long waitNanos = -1, runNanos = -1;
+
+        private Task(ThrowingSupplier<T, Throwable> work, LoadPriority priority, long sequence) {
+            this.work = work;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        public CompletableFuture<T> future() { return future; }
+        public LoadPriority priority() { return priority; }
+        public boolean hasStarted() { return state.get() != QUEUED; }
+
+        // Time spent in the queue before starting, or -1 if it hasn't started yet.
+        public long waitNanos() { return waitNanos; }
+        // Time spent running, or -1 if it hasn't finished yet.
+        public long runNanos() { return runNanos; }
+
+        @Override
+        public int compareTo(@NotNull Task<?> o) {
+            int priorityCompare = priority.compareTo(o.priority);
+            if (priorityCompare != 0) return priorityCompare;
+            return Long.compare(sequence, o.sequence);
+        }
+    }
+
+}
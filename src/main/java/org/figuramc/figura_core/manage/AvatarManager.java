@@ -2,16 +2,18 @@ package org.figuramc.figura_core.manage;
 
 import org.figuramc.figura_core.avatars.Avatar;
 import org.figuramc.figura_core.minecraft_interop.FiguraConnectionPoint;
-import org.figuramc.figura_core.util.exception.ExceptionUtils;
 import org.figuramc.figura_core.util.exception.FiguraException;
 import org.figuramc.figura_core.util.functional.ThrowingConsumer;
 import org.figuramc.figura_core.util.functional.ThrowingSupplier;
+import org.figuramc.figura_core.util.metrics.FiguraMetrics;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Collection;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Manages a set of avatars, indexed by the given key.
@@ -19,53 +21,89 @@ import java.util.concurrent.ExecutionException;
 public class AvatarManager<K> {
 
     private final ConcurrentHashMap<K, Avatar<K>> loadedAvatars = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<K, CompletableFuture<@Nullable Avatar<K>>> inProgressAvatars = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<K, AvatarLoadScheduler.Task<@Nullable Avatar<K>>> inProgressAvatars = new ConcurrentHashMap<>();
+
+    // Loading tasks whose state changed since the last poll(). Fed from completion callbacks on other threads,
+    // so poll() only has to look at avatars that actually changed.
+    private final ConcurrentLinkedQueue<Completion<K>> completions = new ConcurrentLinkedQueue<>();
+
+    // Incremented whenever an avatar is loaded, unloaded, or starts/stops loading, so lookups can be cached
+    private final AtomicInteger generation = new AtomicInteger();
+    // The generation each loaded or in-progress key last changed at, so lookups of one key can be cached. See generation(K).
+    private final ConcurrentHashMap<K, Integer> keyGenerations = new ConcurrentHashMap<>();
+    private final AtomicInteger removals = new AtomicInteger(); // Incremented whenever a key stops being loaded or in progress
+
+    // Priority of loads which don't give one
+    private final LoadPriority defaultPriority;
+
+    public AvatarManager(LoadPriority defaultPriority) {
+        this.defaultPriority = defaultPriority;
+    }
 
     // See if any async tasks have completed; if they have, initialize them.
     public void poll() {
-        // Iterate over in-progress Avatars, see if any are complete.
-        // If they are, move them to the map of loaded Avatars.
-        for (var entry : inProgressAvatars.entrySet()) {
-            K key = entry.getKey();
-            CompletableFuture<Avatar<K>> future = inProgressAvatars.get(key);
-            if (future.isDone()) {
-                // Fetch the result of the future:
-                Avatar<K> result;
-                try {
-                    // If the following get() call doesn't throw, then the async task finished without throwing
-                    result = future.get();
-                } catch (ExecutionException ex) {
-                    // For now, we'll ALWAYS report to chat/console.
-                    // Maybe later we'll disable this for multiplayer avatars (whenever we get to that lol)
-                    if (ex.getCause() instanceof FiguraException figuraException) FiguraConnectionPoint.CONSOLE_OUTPUT.reportError(figuraException);
-                    else FiguraConnectionPoint.CONSOLE_OUTPUT.reportUnexpectedError(ex.getCause());
-                    // Cancel the in-progress Avatar, since it errored
-                    cancelInProgress(key);
-                    continue;
-                } catch (Throwable unexpected) {
-                    FiguraConnectionPoint.CONSOLE_OUTPUT.reportUnexpectedError(unexpected);
-                    cancelInProgress(key);
-                    continue;
-                }
-
-                // If no result, then just remove it from the map and end
-                if (result == null) {
-                    cancelInProgress(key);
-                    continue;
-                }
-
-                // If it's not ready yet, continue and wait until it is ready
-                if (!result.isReady()) continue;
-
-                // Now that the result is ready, remove from the in-progress map and add to the loaded map
-                inProgressAvatars.remove(key);
-                loadedAvatars.put(key, result);
+        // Drain the tasks which completed since last time.
+        // If they're ready, move them to the map of loaded Avatars.
+        Completion<K> completion;
+        while ((completion = completions.poll()) != null) {
+            K key = completion.key();
+            // If the task was cancelled or replaced since it completed, ignore it
+            if (inProgressAvatars.get(key) != completion.task()) continue;
+            // Fetch the result of the future:
+            Avatar<K> result;
+            try {
+                // If the following get() call doesn't throw, then the async task finished without throwing
+                result = completion.task().future().get();
+            } catch (ExecutionException ex) {
+                reportLoadError(ex.getCause());
+                // Cancel the in-progress Avatar, since it errored
+                cancelInProgress(key);
+                continue;
+            } catch (Throwable unexpected) {
+                FiguraConnectionPoint.CONSOLE_OUTPUT.reportUnexpectedError(unexpected);
+                cancelInProgress(key);
+                continue;
+            }
+
+            // If no result, then just remove it from the map and end
+            if (result == null) {
+                cancelInProgress(key);
+                continue;
             }
+
+            // If it's not ready yet, come back once it is
+            CompletableFuture<Void> ready = result.whenReady();
+            if (!ready.isDone()) {
+                Completion<K> retry = completion;
+                ready.whenComplete((v, err) -> completions.add(retry));
+                continue;
+            }
+            if (ready.isCompletedExceptionally()) {
+                reportLoadError(ready.exceptionNow());
+                cancelInProgress(key);
+                continue;
+            }
+
+            // Now that the result is ready, remove from the in-progress map and add to the loaded map
+            inProgressAvatars.remove(key);
+            Avatar<K> replaced = loadedAvatars.put(key, result);
+            changed(key);
+            FiguraMetrics.AVATAR_LOAD_LATENCY.record(System.nanoTime() - completion.startNanos());
+            if (replaced != null) AvatarReaper.INSTANCE.reap(replaced);
         }
     }
 
+    private static void reportLoadError(Throwable error) {
+        FiguraMetrics.AVATAR_LOAD_ERRORS.increment();
+        // For now, we'll ALWAYS report to chat/console.
+        // Maybe later we'll disable this for multiplayer avatars (whenever we get to that lol)
+        if (error instanceof FiguraException figuraException) FiguraConnectionPoint.CONSOLE_OUTPUT.reportError(figuraException);
+        else FiguraConnectionPoint.CONSOLE_OUTPUT.reportUnexpectedError(error);
+    }
+
     /**
-     * Clear out the entire manager.
+     * Clear out the entire manager, destroying the unloaded avatars right away.
+     * Should be called on the main thread.
      */
     public void clear() {
         for (K key : inProgressAvatars.keySet())
@@ -74,6 +112,47 @@ public class AvatarManager<K> {
             unload(key);
         inProgressAvatars.clear();
         loadedAvatars.clear();
+        completions.clear();
+        keyGenerations.clear();
+        removals.incrementAndGet();
+        generation.incrementAndGet();
+        // Clearing usually means everything is going away (leaving a world, reloading...), so don't spread
+        // the destruction over the next frames. Cancelled tasks still running are reaped whenever they finish.
+        AvatarReaper.INSTANCE.flush();
+    }
+
+    /**
+     * A counter which changes whenever the set of loaded or in-progress avatars changes.
+     * If it's the same as before, then anything looked up from this manager in the meantime is still accurate.
+     */
+    public int generation() {
+        return generation.get();
+    }
+
+    /**
+     * Like generation(), but only changes when the given key is loaded, unloaded, or starts/stops loading.
+     * While the key is absent, it also changes whenever any other key is removed, since there's nothing left to
+     * remember the key by. Either way, the same value means the key's state didn't change in the meantime.
+     */
+    public int generation(K key) {
+        Integer keyGeneration = keyGenerations.get(key);
+        // Keep the absent values negative, so they never collide with the others
+        return keyGeneration != null ? keyGeneration : ~removals.get();
+    }
+
+    // Called after the key was loaded, unloaded, or started/stopped loading
+    private void changed(K key) {
+        int stamp = generation.incrementAndGet();
+        if (loadedAvatars.containsKey(key) || inProgressAvatars.containsKey(key)) keyGenerations.put(key, stamp);
+        else if (keyGenerations.remove(key) != null) removals.incrementAndGet();
+    }
+
+    public int loadedCount() {
+        return loadedAvatars.size();
+    }
+
+    public int inProgressCount() {
+        return inProgressAvatars.size();
     }
 
     /**
@@ -84,6 +163,13 @@ public class AvatarManager<K> {
             new AvatarView<>(avatar).use(consumer::accept);
     }
 
+    /**
+     * Add every loaded Avatar to the given collection, without locking them.
+     */
+    public void collectLoaded(Collection<? super Avatar<K>> out) {
+        out.addAll(loadedAvatars.values());
+    }
+
     /**
      * Get an Avatar if it's loaded. Return null if no Avatar exists for this key.
      */
@@ -101,35 +187,86 @@ public class AvatarManager<K> {
     }
 
     /**
-     * Unload an Avatar that is currently loaded, and destroy it.
+     * Get the loading task for the given key, if one is in progress.
+     * Useful for inspecting its priority and timings.
+     */
+    public @Nullable AvatarLoadScheduler.Task<@Nullable Avatar<K>> getLoadTask(K key) {
+        return inProgressAvatars.get(key);
+    }
+
+    /**
+     * Change the priority of an in-progress Avatar, for example because its entity moved closer.
+     * Does nothing if there's no task for the key, or if it already started running.
+     */
+    public void reprioritize(K key, LoadPriority priority) {
+        AvatarLoadScheduler.Task<Avatar<K>> task = inProgressAvatars.get(key);
+        if (task != null) AvatarLoadScheduler.INSTANCE.reprioritize(task, priority);
+    }
+
+    /**
+     * Unload an Avatar that is currently loaded, and queue it to be destroyed by the AvatarReaper.
      * If there is no Avatar for the given key, does nothing.
      */
     public void unload(K key) {
         Avatar<K> oldAvatar = loadedAvatars.remove(key);
-        if (oldAvatar != null) oldAvatar.destroy();
+        if (oldAvatar != null) {
+            changed(key);
+            AvatarReaper.INSTANCE.reap(oldAvatar);
+        }
     }
 
     /**
      * Cancel an Avatar in progress.
-     * This removes it from the in-progress map, and queues up an action on the
-     * future to destroy the Avatar once it's loaded.
-     * Unfortunately we can't actually cancel a future in progress, so the best we can do
-     * is (asynchronously) immediately destroy the Avatar once it's done.
+     * This removes it from the in-progress map. If the task hasn't started yet, it's
+     * removed from the loading queue and never runs.
+     * Unfortunately we can't actually cancel a task that's already running, so the best we can do
+     * is hand the Avatar to the AvatarReaper once it's done.
      */
     public void cancelInProgress(K key) {
-        CompletableFuture<Avatar<K>> oldTask = inProgressAvatars.remove(key);
-        if (oldTask != null) oldTask.whenComplete((avatar, error) -> {
-            if (avatar != null) avatar.destroy();
+        AvatarLoadScheduler.Task<Avatar<K>> oldTask = inProgressAvatars.remove(key);
+        if (oldTask != null) cancel(key, oldTask);
+    }
+
+    /**
+     * Like cancelInProgress(key), but only if the given task is still the one in progress for the key.
+     * Does nothing if it already finished, or was replaced by another load.
+     */
+    public void cancelInProgress(K key, AvatarLoadScheduler.Task<@Nullable Avatar<K>> task) {
+        if (inProgressAvatars.remove(key, task)) cancel(key, task);
+    }
+
+    // Cancel a task which was just removed from the in-progress map
+    private void cancel(K key, AvatarLoadScheduler.Task<@Nullable Avatar<K>> task) {
+        changed(key);
+        if (!AvatarLoadScheduler.INSTANCE.cancel(task)) task.future().whenComplete((avatar, error) -> {
+            if (avatar != null) AvatarReaper.INSTANCE.reap(avatar);
         });
     }
 
     /**
-     * Launch the creation task on an off-thread and load the avatar.
+     * Launch the creation task on an off-thread and load the avatar, with this manager's default priority.
+     * Returns the loading task.
+     */
+    public AvatarLoadScheduler.Task<@Nullable Avatar<K>> load(K key, ThrowingSupplier<@Nullable Avatar<K>, Throwable> creationTask) {
+        return load(key, defaultPriority, creationTask);
+    }
+
+    /**
+     * Launch the creation task on the avatar loading threads with the given priority, and load the avatar.
+     * Returns the loading task.
      */
-    public void load(K key, ThrowingSupplier<@Nullable Avatar<K>, Throwable> creationTask) {
+    public AvatarLoadScheduler.Task<@Nullable Avatar<K>> load(K key, LoadPriority priority, ThrowingSupplier<@Nullable Avatar<K>, Throwable> creationTask) {
         // Cancel any previous task, then launch the new task.
         cancelInProgress(key);
-        inProgressAvatars.put(key, CompletableFuture.supplyAsync(ExceptionUtils.wrapChecked(creationTask, CompletionException::new)));
+        long startNanos = System.nanoTime();
+        AvatarLoadScheduler.Task<@Nullable Avatar<K>> task = AvatarLoadScheduler.INSTANCE.submit(priority, creationTask);
+        inProgressAvatars.put(key, task);
+        changed(key);
+        // Let the next poll() know once this finishes, one way or another
+        task.future().whenComplete((avatar, error) -> completions.add(new Completion<>(key, task, startNanos)));
+        return task;
     }
 
+    private record Completion<K>(K key, AvatarLoadScheduler.Task<@Nullable Avatar<K>> task, long startNanos) {}
+
 }
@@ -1,11 +1,18 @@
 package org.figuramc.figura_core.manage;
 
+import org.figuramc.figura_core.avatars.AllocationLedger;
 import org.figuramc.figura_core.avatars.Avatar;
+import org.figuramc.figura_core.minecraft_interop.FiguraCacheHolder;
 import org.figuramc.figura_core.minecraft_interop.game_data.entity.MinecraftEntity;
 import org.figuramc.figura_core.util.functional.ThrowingConsumer;
+import org.figuramc.figura_core.util.metrics.FiguraMetrics;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.UUID;
+import java.util.WeakHashMap;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
@@ -13,15 +20,36 @@ import java.util.concurrent.locks.ReentrantLock;
  */
 public class AvatarManagers {
 
-    public static final AvatarManager<UUID> ENTITIES = new AvatarManager<>();
-    public static final AvatarManager<GuiKind> GUIS = new AvatarManager<>();
+    public static final AvatarManager<UUID> ENTITIES = new AvatarManager<>(LoadPriority.ENTITY);
+    public static final AvatarManager<GuiKind> GUIS = new AvatarManager<>(LoadPriority.GUI);
 
     /**
-     * Poll all managers.
+     * Poll all managers, destroy this frame's share of unloaded avatars, and publish metrics if it's time to.
      */
     public static void pollAll() {
+        FrameBudgetScheduler.INSTANCE.beginFrame();
         ENTITIES.poll();
         GUIS.poll();
+        CemResidency.INSTANCE.onFrame();
+        AvatarReaper.INSTANCE.drain();
+        FiguraMetrics.REGISTRY.publishIfDue();
+    }
+
+    // Reused between ticks, only touched on the main thread
+    private static final ArrayList<Avatar<?>> TICKING_AVATARS = new ArrayList<>();
+
+    /**
+     * Tick every loaded avatar. Thread-safe avatars are ticked in parallel.
+     * Should be called on the main thread, at the end of each client tick.
+     */
+    public static void tickAll() {
+        ENTITIES.collectLoaded(TICKING_AVATARS);
+        GUIS.collectLoaded(TICKING_AVATARS);
+        try {
+            AvatarTickScheduler.tick(TICKING_AVATARS);
+        } finally {
+            TICKING_AVATARS.clear();
+        }
     }
 
     public static <E extends Throwable> void forEachAvatar(ThrowingConsumer<Avatar<?>, E> consumer) throws E {
@@ -29,20 +57,116 @@ public class AvatarManagers {
         GUIS.forEach(consumer);
     }
 
+    /**
+     * Like forEachAvatar(), but avatars share one time budget for the frame, and low-priority avatars
+     * which don't fit in it are skipped this frame. See FrameBudgetScheduler.
+     * Should be called on the main thread.
+     */
+    public static <E extends Throwable> void forEachAvatarBudgeted(ThrowingConsumer<Avatar<?>, E> consumer) throws E {
+        FrameBudgetScheduler.INSTANCE.run(consumer);
+    }
+
+    /**
+     * Snapshot every loaded avatar's allocation ledger, largest first.
+     * Most sources are cumulative, the bytes tracked over the avatar's lifetime, rather than live (see
+     * AllocationLedger.Source.live). See AllocationLedger.format() to turn it into text, for example for a debug command.
+     */
+    public static List<AllocationLedger.Report> memoryReport() {
+        ArrayList<Avatar<?>> avatars = new ArrayList<>();
+        ENTITIES.collectLoaded(avatars);
+        GUIS.collectLoaded(avatars);
+        ArrayList<AllocationLedger.Report> reports = new ArrayList<>(avatars.size());
+        for (Avatar<?> avatar : avatars) reports.add(avatar.allocationLedger.report(String.valueOf(avatar.key)));
+        reports.sort(Comparator.comparingLong(AllocationLedger.Report::total).reversed());
+        return reports;
+    }
+
     // Types of GUI avatars; only one for now.
     public enum GuiKind {
         MAIN_GUI
     }
 
     // Utility: Fetch the avatar for an entity, or start looking for CEM
+    // This runs for every rendered entity every frame, so the result is cached on the entity itself (see FiguraCacheHolder).
+    // The cache is valid as long as neither the entity's key in ENTITIES nor CemManager changed since it was filled,
+    // so other entities' avatars loading and unloading don't invalidate it.
     public static @Nullable AvatarView<UUID> tryGetEntityAvatar(MinecraftEntity entity) {
+        // Fetch the generations first, so any change during the lookup invalidates the result
+        int avatarGeneration = ENTITIES.generation(entity.getUUID());
+        int cemGeneration = CemManager.generation();
+        if (getCache(entity) instanceof EntityResolution cached && cached.avatarGeneration == avatarGeneration && cached.cemGeneration == cemGeneration) {
+            if (cached.resident != null) cached.resident.markRendered();
+            if (cached.launch == null || cached.launch == CemManager.Launch.NO_CEM) return cached.avatar;
+            LoadPriority priority = LoadPriority.forEntity(LoadPriority.Tier.CEM_ENTITY, entity);
+            int bucket = distanceBucket(priority);
+            if (cached.launch == CemManager.Launch.PENDING) {
+                // A CEM avatar is on the way. Only bother updating its priority once the entity moves to another distance bucket.
+                if (bucket != cached.distanceBucket) {
+                    cached.distanceBucket = bucket;
+                    ENTITIES.reprioritize(entity.getUUID(), priority);
+                }
+                return null;
+            }
+            // Deferred by CemResidency. Ask again once the entity moves to another distance bucket, or after a while, since room may have freed up.
+            if (bucket == cached.distanceBucket && CemResidency.INSTANCE.frame() - cached.frame < DEFERRED_RECHECK_FRAMES) return null;
+            return launchCem(entity, priority, avatarGeneration, cemGeneration);
+        }
         // See if it already has an avatar. If it does, return it immediately.
         AvatarView<UUID> avatar = ENTITIES.get(entity.getUUID());
-        if (avatar != null) return avatar;
+        if (avatar != null) {
+            CemResidency.Resident resident = CemResidency.INSTANCE.resolved(entity, avatar);
+            setCache(entity, new EntityResolution(avatarGeneration, cemGeneration, avatar, resident, null, 0, 0));
+            return avatar;
+        }
         // Otherwise, launch an async task to load a CEM avatar for it, and return null.
-        CemManager.launchCemTask(entity);
+        return launchCem(entity, LoadPriority.forEntity(LoadPriority.Tier.CEM_ENTITY, entity), avatarGeneration, cemGeneration);
+    }
+
+    // How many frames an entity deferred by CemResidency waits before asking again, if it stays at the same distance
+    private static final int DEFERRED_RECHECK_FRAMES = 20;
+
+    private static @Nullable AvatarView<UUID> launchCem(MinecraftEntity entity, LoadPriority priority, int avatarGeneration, int cemGeneration) {
+        CemManager.Launch launch = CemManager.launchCemTask(entity, priority);
+        setCache(entity, new EntityResolution(avatarGeneration, cemGeneration, null, null, launch, distanceBucket(priority), CemResidency.INSTANCE.frame()));
         return null;
     }
 
+    // Cached lookups for entities which don't implement FiguraCacheHolder. Only touched on the main thread.
+    private static final WeakHashMap<MinecraftEntity, EntityResolution> SIDE_CACHE = new WeakHashMap<>();
+
+    private static @Nullable Object getCache(MinecraftEntity entity) {
+        return entity instanceof FiguraCacheHolder holder ? holder.getFiguraCache() : SIDE_CACHE.get(entity);
+    }
+
+    private static void setCache(MinecraftEntity entity, EntityResolution resolution) {
+        if (entity instanceof FiguraCacheHolder holder) holder.setFiguraCache(resolution);
+        else SIDE_CACHE.put(entity, resolution);
+    }
+
+    // Roughly the log2 of the squared distance, so nearby entities have finer buckets
+    private static int distanceBucket(LoadPriority priority) {
+        return Math.getExponent(priority.distanceSquared());
+    }
+
+    // Result of tryGetEntityAvatar(), cached on the entity
+    private static final class EntityResolution {
+        final int avatarGeneration, cemGeneration;
+        final @Nullable AvatarView<UUID> avatar;
+        final @Nullable CemResidency.Resident resident; // Set if the avatar is a CEM avatar, to track when it was last rendered
+        final @Nullable CemManager.Launch launch; // If there was no avatar, what happened when looking for CEM
+        int distanceBucket; // Distance bucket last used as the loading priority
+        final long frame; // CemResidency frame of the CEM launch
+
+        EntityResolution(int avatarGeneration, int cemGeneration, @Nullable AvatarView<UUID> avatar, @Nullable CemResidency.Resident resident, @Nullable CemManager.Launch launch, int distanceBucket, long frame) {
+            this.avatarGeneration = avatarGeneration;
+            this.cemGeneration = cemGeneration;
+            this.avatar = avatar;
+            this.resident = resident;
+            this.launch = launch;
+            this.distanceBucket = distanceBucket;
+            this.frame = frame;
+        }
+    }
+
 
 }
@@ -0,0 +1,96 @@
+package org.figuramc.figura_core.manage;
+
+import org.figuramc.figura_core.avatars.Avatar;
+import org.figuramc.figura_core.minecraft_interop.FiguraConnectionPoint;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Destroys unloaded avatars a few at a time, instead of all at once on whatever thread unloaded them.
+ * Mass despawns (chunk unloads, dimension changes...) can drop hundreds of avatars in a single frame;
+ * the reaper spreads the cost of releasing their native and GPU resources over the following frames.
+ *
+ * Avatars are queued from any thread, and destroyed on the main thread by drain(), once per frame.
+ */
+public class AvatarReaper {
+
+    // Singleton
+    public static final AvatarReaper INSTANCE = new AvatarReaper();
+
+    private final ConcurrentLinkedQueue<Pending> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicLong pendingBytes = new AtomicLong();
+
+    // Budget for each drain(). At least one avatar is always destroyed, so the queue can't stall.
+    private volatile long bytesPerFrame = 32L * 1024 * 1024;
+    private volatile long nanosPerFrame = 1_000_000L;
+
+    private record Pending(Avatar<?> avatar, long bytes) {}
+
+    /**
+     * Queue an avatar for destruction. It should already be removed from its manager.
+     * Safe to call from any thread.
+     */
+    public void reap(Avatar<?> avatar) {
+        long bytes = avatar.nativeBytes();
+        pendingCount.incrementAndGet();
+        pendingBytes.addAndGet(bytes);
+        queue.add(new Pending(avatar, bytes));
+    }
+
+    /**
+     * Destroy queued avatars until this frame's budget is used up.
+     * Should be called on the main thread, once per frame.
+     */
+    public void drain() {
+        long start = System.nanoTime();
+        long bytes = 0;
+        Pending pending;
+        while ((pending = queue.peek()) != null) {
+            // Stop once over budget, unless nothing was destroyed yet
+            if (bytes > 0 && (bytes + pending.bytes > bytesPerFrame || System.nanoTime() - start > nanosPerFrame)) break;
+            queue.poll();
+            destroy(pending);
+            bytes += Math.max(pending.bytes, 1);
+        }
+    }
+
+    /**
+     * Destroy every queued avatar right away, ignoring the budget. AvatarManager.clear() does this.
+     * Should be called on the main thread.
+     */
+    public void flush() {
+        Pending pending;
+        while ((pending = queue.poll()) != null)
+            destroy(pending);
+    }
+
+    private void destroy(Pending pending) {
+        try {
+            pending.avatar.destroy();
+        } catch (Throwable unexpected) {
+            FiguraConnectionPoint.CONSOLE_OUTPUT.reportUnexpectedError(unexpected);
+        } finally {
+            pendingCount.decrementAndGet();
+            pendingBytes.addAndGet(-pending.bytes);
+        }
+    }
+
+    public void setBudget(long bytesPerFrame, long nanosPerFrame) {
+        this.bytesPerFrame = bytesPerFrame;
+        this.nanosPerFrame = nanosPerFrame;
+    }
+
+    // Number of avatars waiting to be destroyed
+    public int getPendingCount() {
+        return pendingCount.get();
+    }
+
+    // Estimated native bytes held by avatars waiting to be destroyed
+    public long getPendingBytes() {
+        return pendingBytes.get();
+    }
+
+}
@@ -0,0 +1,110 @@
+package org.figuramc.figura_core.manage;
+
+import org.figuramc.figura_core.avatars.Avatar;
+import org.figuramc.figura_core.script_hooks.EventListener;
+import org.figuramc.figura_core.script_hooks.callback.items.CallbackItem;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * Ticks a set of avatars, fanning thread-safe avatars out over a work-stealing pool.
+ * Thread-unsafe avatars are ticked serially on the calling thread, like before.
+ *
+ * While thread-safe avatars tick in parallel, any invocations they queue on other avatars' EventListeners
+ * are staged in a per-avatar outbox instead of going straight into the target's queue.
+ * After the parallel phase, the outboxes are flushed in avatar order, so the order in which queued
+ * invocations arrive doesn't depend on thread scheduling.
+ */
+public class AvatarTickScheduler {
+
+    // Don't bother with the pool unless there are at least this many thread-safe avatars
+    private static final int MIN_PARALLEL_AVATARS = 2;
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(
+            Math.max(1, Runtime.getRuntime().availableProcessors() - 1),
+            pool -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("Figura Avatar Ticker #" + thread.getPoolIndex());
+                thread.setDaemon(true);
+                return thread;
+            },
+            null, false
+    );
+
+    // The outbox of the avatar currently ticking on this thread, if we're in the parallel phase.
+    private static final ThreadLocal<@Nullable List<StagedInvocation<?>>> CURRENT_OUTBOX = new ThreadLocal<>();
+
+    /**
+     * Tick all the given avatars. Should be called on the main thread.
+     */
+    public static void tick(List<? extends Avatar<?>> avatars) {
+        // Split into thread-safe and thread-unsafe avatars
+        List<Avatar<?>> parallel = new ArrayList<>();
+        List<Avatar<?>> serial = new ArrayList<>();
+        for (Avatar<?> avatar : avatars)
+            (avatar.isThreadSafe() ? parallel : serial).add(avatar);
+        if (parallel.size() < MIN_PARALLEL_AVATARS) {
+            serial.addAll(0, parallel);
+            parallel.clear();
+        }
+
+        // Tick the thread-safe avatars in parallel, each with its own outbox
+        if (!parallel.isEmpty()) {
+            List<List<StagedInvocation<?>>> outboxes = new ArrayList<>(parallel.size());
+            List<ForkJoinTask<?>> tasks = new ArrayList<>(parallel.size());
+            for (Avatar<?> avatar : parallel) {
+                List<StagedInvocation<?>> outbox = new ArrayList<>(0);
+                outboxes.add(outbox);
+                tasks.add(ForkJoinTask.adapt(() -> tickStaged(avatar, outbox)));
+            }
+            POOL.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+            // Flush the staged invocations in avatar order
+            for (List<StagedInvocation<?>> outbox : outboxes)
+                for (StagedInvocation<?> staged : outbox)
+                    staged.deliver();
+        }
+
+        // Tick the rest on this thread
+        for (Avatar<?> avatar : serial)
+            tickIsolated(avatar);
+    }
+
+    /**
+     * If the current thread is ticking an avatar in the parallel phase, returns the outbox
+     * that invocations queued on other avatars should go into. Otherwise, returns null.
+     */
+    public static @Nullable List<StagedInvocation<?>> currentOutbox() {
+        return CURRENT_OUTBOX.get();
+    }
+
+    private static void tickStaged(Avatar<?> avatar, List<StagedInvocation<?>> outbox) {
+        CURRENT_OUTBOX.set(outbox);
+        try {
+            tickIsolated(avatar);
+        } finally {
+            CURRENT_OUTBOX.remove();
+        }
+    }
+
+    // Tick the avatar, making sure that nothing it throws can escape and affect other avatars
+    private static void tickIsolated(Avatar<?> avatar) {
+        try {
+            new AvatarView<>(avatar).use(Avatar::tick);
+        } catch (Throwable unexpected) {
+            avatar.unexpectedError(unexpected);
+        }
+    }
+
+    // An invocation which was queued during the parallel phase, waiting to be delivered to its listener
+    public record StagedInvocation<Args extends CallbackItem>(EventListener<Args, ?> listener, Args args, AvatarView<?> caller) {
+        private void deliver() {
+            listener.enqueueInvocation(args, caller);
+        }
+    }
+
+}
@@ -16,7 +16,7 @@ public class AvatarView<Key> {
     // If this is true, then use() will not block the caller.
     // If false, use() might block, if another thread is using the avatar.
     public boolean isThreadSafe() {
-        return avatar.isThreadSafe;
+        return avatar.isThreadSafe();
     }
 
     // THIS SHOULDN'T DEADLOCK!
@@ -29,7 +29,7 @@ public class AvatarView<Key> {
     // Use the Avatar in an operation.
     // Synchronizes only if the avatar is not thread-safe.
     public <E1 extends Throwable, E2 extends Throwable> void use(BiThrowingConsumer<Avatar<Key>, E1, E2> func) throws E1, E2 {
-        if (avatar.isThreadSafe) {
+        if (avatar.isThreadSafe()) {
             func.accept(avatar);
         } else {
             synchronized (avatar) {
@@ -39,7 +39,7 @@ public class AvatarView<Key> {
     }
     // Use the Avatar in an operation and return a result.
     public <R, E1 extends Throwable, E2 extends Throwable> R useFor(BiThrowingFunction<Avatar<Key>, R, E1, E2> func) throws E1, E2 {
-        if (avatar.isThreadSafe) {
+        if (avatar.isThreadSafe()) {
             return func.apply(avatar);
         } else {
             synchronized (avatar) {
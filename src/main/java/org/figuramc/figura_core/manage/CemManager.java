@@ -1,6 +1,6 @@
 package org.figuramc.figura_core.manage;
 
-import org.figuramc.figura_core.avatars.AvatarModules;
+import org.figuramc.figura_core.avatars.AvatarPrototype;
 import org.figuramc.figura_core.avatars.AvatarTemplates;
 import org.figuramc.figura_core.data.importer.ModuleImportingException;
 import org.figuramc.figura_core.data.importer.v1.ModuleImporter;
@@ -9,8 +9,6 @@ import org.figuramc.figura_core.minecraft_interop.FiguraConnectionPoint;
 import org.figuramc.figura_core.minecraft_interop.game_data.MinecraftIdentifier;
 import org.figuramc.figura_core.minecraft_interop.game_data.entity.MinecraftEntity;
 import org.figuramc.figura_core.minecraft_interop.vanilla_parts.VanillaModel;
-import org.figuramc.figura_core.util.exception.ExceptionUtils;
-import org.figuramc.figura_core.util.exception.FiguraException;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
@@ -21,27 +19,77 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class CemManager {
 
     private static final ConcurrentHashMap<CemKey, CompletableFuture<@Nullable ModuleMaterials>> IMPORTED_MATERIALS = new ConcurrentHashMap<>();
+    // All CEM avatars of the same entity type share their immutable data through a prototype.
+    // Retired prototypes (see AvatarPrototype.release()) are replaced the next time the type is launched.
+    private static final ConcurrentHashMap<CemKey, AvatarPrototype> PROTOTYPES = new ConcurrentHashMap<>();
+    // Entity types whose CEM lookup has finished, mapped to whether they have CEM at all
+    private static final ConcurrentHashMap<MinecraftIdentifier, Boolean> PRESENCE = new ConcurrentHashMap<>();
+    // Incremented whenever a CEM lookup finishes or the CEM state is cleared, so lookups can be cached
+    private static final AtomicInteger GENERATION = new AtomicInteger();
 
+    // Call this when the contents of the CEM folder may have changed, so they're imported again.
     public static void clear() {
         IMPORTED_MATERIALS.clear();
+        PRESENCE.clear();
+        CemResidency.INSTANCE.clear();
+        GENERATION.incrementAndGet();
+        // Avatars still alive keep their prototype's data until they're destroyed
+        PROTOTYPES.values().forEach(AvatarPrototype::retire);
+        PROTOTYPES.clear();
+    }
+
+    /**
+     * A counter which changes whenever a CEM lookup finishes, or the CEM state is cleared.
+     * If it's the same as before, then the result of launchCemTask() is still accurate.
+     */
+    public static int generation() {
+        return GENERATION.get();
+    }
+
+    // Number of entity types whose CEM is still being imported
+    public static int importsInProgress() {
+        int count = 0;
+        for (var materials : IMPORTED_MATERIALS.values())
+            if (!materials.isDone()) count++;
+        return count;
+    }
+
+    // Result of launchCemTask()
+    public enum Launch {
+        NO_CEM, // The entity type has no CEM
+        PENDING, // A CEM avatar may still show up: it's loading, or the type's CEM is still being imported
+        DEFERRED // The entity type has CEM, but the entity is too far away or doesn't fit in CemResidency's budget right now
     }
 
     // Tries to set up CEM for this entity.
     // Call this when we already know the entity doesn't have an avatar equipped.
-    // - If the entity already has an avatar loading in progress, does nothing
+    // - If the entity already has an avatar loading in progress, updates its priority based on its distance
     // - If this entity type has no CEM in the folder, does nothing
+    // - If CemResidency doesn't admit the entity, does nothing for now; call again later
     // - Otherwise, will launch a task to give this entity its CEM avatar.
-    public static void launchCemTask(MinecraftEntity entity) {
+    public static Launch launchCemTask(MinecraftEntity entity) {
+        return launchCemTask(entity, LoadPriority.forEntity(LoadPriority.Tier.CEM_ENTITY, entity));
+    }
+
+    public static Launch launchCemTask(MinecraftEntity entity, LoadPriority priority) {
         UUID uuid = entity.getUUID();
-        if (AvatarManagers.ENTITIES.isInProgress(uuid)) return;
+        if (AvatarManagers.ENTITIES.isInProgress(uuid)) {
+            // The entity may have moved closer (or further away) since the task was queued
+            AvatarManagers.ENTITIES.reprioritize(uuid, priority);
+            return Launch.PENDING;
+        }
         MinecraftIdentifier type = entity.getType();
+        // Skip the lookup entirely for types we already know have no CEM
+        if (PRESENCE.get(type) == Boolean.FALSE) return Launch.NO_CEM;
+        CemKey key = new CemKey(type);
         // Fetch the materials, or begin a task for them.
-        CompletableFuture<@Nullable ModuleMaterials> materials = IMPORTED_MATERIALS.computeIfAbsent(new CemKey(type),
-                cemKey -> CompletableFuture.supplyAsync(() -> {
+        CompletableFuture<@Nullable ModuleMaterials> materials = IMPORTED_MATERIALS.computeIfAbsent(key,
+                cemKey -> AvatarLoadScheduler.INSTANCE.<@Nullable ModuleMaterials>submit(priority, () -> {
                     // Try to load for this type
                     @Nullable File cemDir = FiguraConnectionPoint.PATH_PROVIDER.getCEMFolder().exceptionally(x -> null).join();
                     if (cemDir == null) return null; // If no CEM dir, return null right away
@@ -58,16 +106,26 @@ public class CemManager {
                         FiguraConnectionPoint.CONSOLE_OUTPUT.reportUnexpectedError(otherError);
                     }
                     return null; // Don't try again next time
+                }).future().whenComplete((result, error) -> {
+                    // Skip if CEM was cleared in the meantime
+                    if (IMPORTED_MATERIALS.get(cemKey) == null) return;
+                    PRESENCE.put(cemKey.entityType, result != null);
+                    GENERATION.incrementAndGet();
                 }));
         // If the material-fetching task isn't complete yet, just return out.
-        if (!materials.isDone()) return;
+        if (!materials.isDone()) return Launch.PENDING;
         // This should theoretically never throw, since all errors are caught in the earlier task
         @Nullable ModuleMaterials result = materials.getNow(null);
         // If the result is null, this entity has no CEM, so just do nothing and return.
-        if (result == null) return;
+        if (result == null) return Launch.NO_CEM;
         // Otherwise, this entity has CEM, so launch a task to load it.
         VanillaModel model = entity.getModel();
-        AvatarManagers.ENTITIES.load(uuid, () -> AvatarTemplates.cemAvatar(uuid, model, AvatarModules.loadModules(result)));
+        // Far away entities, or ones that don't fit in the budget, stay vanilla
+        if (!CemResidency.INSTANCE.admit(entity, priority)) return Launch.DEFERRED;
+        // A prototype retires once its last avatar is gone, so start a new one then
+        AvatarPrototype prototype = PROTOTYPES.compute(key, (k, old) -> old == null || old.isRetired() ? new AvatarPrototype(result) : old);
+        CemResidency.INSTANCE.loading(uuid, AvatarManagers.ENTITIES.load(uuid, priority, () -> AvatarTemplates.cemAvatar(uuid, model, prototype)));
+        return Launch.PENDING;
     }
 
     public record CemKey(MinecraftIdentifier entityType) {}
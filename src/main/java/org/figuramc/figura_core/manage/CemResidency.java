@@ -0,0 +1,214 @@
+package org.figuramc.figura_core.manage;
+
+import org.figuramc.figura_core.avatars.Avatar;
+import org.figuramc.figura_core.avatars.components.CemSelfDeleter;
+import org.figuramc.figura_core.minecraft_interop.game_data.entity.MinecraftEntity;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Decides which entities get a full CEM avatar, and which fall back to vanilla rendering.
+ * Mob farms can contain thousands of entities of a CEM'd type; without a limit, every one of them would keep
+ * a live avatar until it despawns.
+ *
+ * The number of live CEM avatars and their estimated native memory are capped. When a new entity wants an avatar
+ * and we're at the cap, the least recently rendered avatar (the farthest one, among equally recent ones) is evicted
+ * to make room, as long as it's worse off than the newcomer. Entities beyond the maximum distance never get one.
+ *
+ * Only touched on the main thread.
+ */
+public class CemResidency {
+
+    // Singleton
+    public static final CemResidency INSTANCE = new CemResidency();
+
+    private final HashMap<UUID, Resident> residents = new HashMap<>();
+    private long frame; // Incremented once per frame
+    private long residentBytes; // Sum of the residents' estimated native bytes
+
+    // Configuration
+    private int maxAvatars = 256;
+    private long maxBytes = 256L * 1024 * 1024;
+    private double maxDistanceSquared = 96 * 96;
+
+    private static final int BYTES_REFRESH_FRAMES = 20; // How often onFrame() refreshes the residents' sizes
+
+    // A CEM avatar which is loaded or loading
+    public static final class Resident {
+        private final UUID uuid;
+        private final MinecraftEntity entity;
+        private long lastRenderedFrame;
+        private long bytes; // Estimated native bytes, known once the avatar is loaded
+        private @Nullable AvatarLoadScheduler.Task<@Nullable Avatar<UUID>> loadTask; // The CEM load this entity was admitted for
+
+        private Resident(UUID uuid, MinecraftEntity entity, long frame) {
+            this.uuid = uuid;
+            this.entity = entity;
+            this.lastRenderedFrame = frame;
+        }
+
+        // Called each time the entity is rendered with its avatar
+        public void markRendered() {
+            lastRenderedFrame = INSTANCE.frame;
+        }
+    }
+
+    public void configure(int maxAvatars, long maxBytes, double maxDistance) {
+        this.maxAvatars = maxAvatars;
+        this.maxBytes = maxBytes;
+        this.maxDistanceSquared = maxDistance * maxDistance;
+    }
+
+    /**
+     * Decide whether the entity may load a CEM avatar, evicting a worse-off avatar if needed to make room.
+     * If this returns true, the entity counts as a resident from now on.
+     */
+    public boolean admit(MinecraftEntity entity, LoadPriority priority) {
+        if (priority.distanceSquared() > maxDistanceSquared) return false;
+        UUID uuid = entity.getUUID();
+        if (residents.containsKey(uuid)) return true;
+        if (isFull()) {
+            Resident victim = worstResident();
+            // The newcomer is being rendered right now. Only replace an avatar that's no longer visible, or visible but farther away.
+            // Avatars rendered last frame still count as visible, since they may not have been rendered yet this frame.
+            if (victim == null || (victim.lastRenderedFrame >= frame - 1 && distanceSquared(victim) <= priority.distanceSquared())) return false;
+            evict(victim);
+        }
+        residents.put(uuid, new Resident(uuid, entity, frame));
+        return true;
+    }
+
+    /**
+     * Called once the CEM load for an admitted entity is launched, so evicting it cancels that load and nothing else.
+     */
+    public void loading(UUID uuid, AvatarLoadScheduler.Task<@Nullable Avatar<UUID>> task) {
+        Resident resident = residents.get(uuid);
+        if (resident != null) resident.loadTask = task;
+    }
+
+    /**
+     * Called when a loaded avatar is found for the entity. Returns its resident entry, or null if it's not a CEM avatar.
+     */
+    public @Nullable Resident resolved(MinecraftEntity entity, AvatarView<UUID> avatar) {
+        UUID uuid = entity.getUUID();
+        Resident resident = residents.get(uuid);
+        // The entity may have equipped a regular avatar in the meantime
+        if (!isCemAvatar(avatar)) {
+            if (resident != null) remove(resident);
+            return null;
+        }
+        // CEM avatars we don't know about were loaded before the last clear(). Take them back in, and let onFrame() evict if that's too many.
+        if (resident == null) {
+            resident = new Resident(uuid, entity, frame);
+            residents.put(uuid, resident);
+        }
+        // Now that it's loaded, we know its size
+        updateBytes(resident, avatar);
+        resident.markRendered();
+        return resident;
+    }
+
+    /**
+     * Advance to the next frame, forget residents whose avatars are gone, and evict avatars while over budget.
+     * Every so often, the residents' sizes are also refreshed, since avatars grow and shrink as their scripts run.
+     * Called on the main thread, once per frame.
+     */
+    public void onFrame() {
+        frame++;
+        if (residents.isEmpty()) return;
+        boolean refreshBytes = frame % BYTES_REFRESH_FRAMES == 0;
+        // Forget about avatars which unloaded on their own (for example, because their entity died)
+        List<Resident> gone = null;
+        for (Resident resident : residents.values()) {
+            if (AvatarManagers.ENTITIES.isInProgress(resident.uuid)) continue;
+            AvatarView<UUID> avatar = AvatarManagers.ENTITIES.get(resident.uuid);
+            if (avatar != null) {
+                if (refreshBytes) updateBytes(resident, avatar);
+                continue;
+            }
+            if (gone == null) gone = new ArrayList<>();
+            gone.add(resident);
+        }
+        if (gone != null) gone.forEach(this::remove);
+        // Evict until we're back under the limits
+        while (residents.size() > maxAvatars || residentBytes > maxBytes) {
+            Resident victim = worstResident();
+            if (victim == null) break;
+            evict(victim);
+        }
+    }
+
+    // Forget all residents. Their avatars stay loaded, and are taken back in by resolved() the next time they're looked up.
+    public void clear() {
+        residents.clear();
+        residentBytes = 0;
+    }
+
+    // Incremented once per frame
+    public long frame() {
+        return frame;
+    }
+
+    public int getResidentCount() {
+        return residents.size();
+    }
+
+    public long getResidentBytes() {
+        return residentBytes;
+    }
+
+    private boolean isFull() {
+        return residents.size() >= maxAvatars || residentBytes >= maxBytes;
+    }
+
+    // The least recently rendered resident, picking the farthest one among equally recent ones
+    private @Nullable Resident worstResident() {
+        Resident worst = null;
+        double worstDistance = 0;
+        for (Resident resident : residents.values()) {
+            if (worst != null && resident.lastRenderedFrame > worst.lastRenderedFrame) continue;
+            double distance = distanceSquared(resident);
+            if (worst == null || resident.lastRenderedFrame < worst.lastRenderedFrame || distance > worstDistance) {
+                worst = resident;
+                worstDistance = distance;
+            }
+        }
+        return worst;
+    }
+
+    private void evict(Resident resident) {
+        remove(resident);
+        // Only unload it if it's still a CEM avatar
+        // A load in progress may be for a regular avatar the entity equipped since, so only cancel our own
+        AvatarView<UUID> avatar = AvatarManagers.ENTITIES.get(resident.uuid);
+        if (avatar != null) {
+            if (isCemAvatar(avatar)) AvatarManagers.ENTITIES.unload(resident.uuid);
+        } else if (resident.loadTask != null) {
+            AvatarManagers.ENTITIES.cancelInProgress(resident.uuid, resident.loadTask);
+        }
+    }
+
+    private void updateBytes(Resident resident, AvatarView<UUID> avatar) {
+        long bytes = avatar.useFor(a -> a.nativeBytes());
+        residentBytes += bytes - resident.bytes;
+        resident.bytes = bytes;
+    }
+
+    private void remove(Resident resident) {
+        residents.remove(resident.uuid);
+        residentBytes -= resident.bytes;
+    }
+
+    private static double distanceSquared(Resident resident) {
+        return LoadPriority.forEntity(LoadPriority.Tier.CEM_ENTITY, resident.entity).distanceSquared();
+    }
+
+    private static boolean isCemAvatar(AvatarView<UUID> avatar) {
+        return avatar.useFor(a -> a.getComponent(CemSelfDeleter.TYPE) != null);
+    }
+
+}
@@ -0,0 +1,183 @@
+package org.figuramc.figura_core.manage;
+
+import org.figuramc.figura_core.avatars.Avatar;
+import org.figuramc.figura_core.avatars.components.AvatarProfiling;
+import org.figuramc.figura_core.avatars.components.CemSelfDeleter;
+import org.figuramc.figura_core.minecraft_interop.FiguraConnectionPoint;
+import org.figuramc.figura_core.minecraft_interop.game_data.entity.MinecraftEntity;
+import org.figuramc.figura_core.util.functional.ThrowingConsumer;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.UUID;
+
+/**
+ * Shares one per-frame time budget between all avatars' per-frame work (usually render events).
+ * Each avatar is timed in isolation by AvatarTimeTracker, so a hundred avatars each within their own limit
+ * can still blow the frame; this decides which of them get to run at all this frame.
+ *
+ * Avatars are run in priority order: the local player and GUI avatars first (they always run), then other entities
+ * by distance, then CEM avatars by distance. Once the budget is used up, avatars whose expected cost doesn't fit are
+ * deferred to a later frame. Deferred avatars age: each deferred frame counts as halving their distance, and after
+ * MAX_DEFERRED_FRAMES in a row they run regardless, so no avatar is starved.
+ *
+ * Avatars are prioritized and picked once per frame, in the first run() call after beginFrame(). Every run() in the
+ * same frame (one per kind of per-frame work) then runs the same avatars, and an avatar's expected cost is what all
+ * of its work cost together in the frames it ran. Per-avatar results (expected cost, deferred frames) are recorded
+ * in AvatarProfiling at the start of the next frame.
+ * Only touched on the main thread.
+ */
+public class FrameBudgetScheduler {
+
+    // Singleton
+    public static final FrameBudgetScheduler INSTANCE = new FrameBudgetScheduler();
+
+    private static final int MAX_DEFERRED_FRAMES = 8;
+
+    private volatile long budgetNanos = 6_000_000L;
+
+    // Reused between frames
+    private final ArrayList<Avatar<?>> avatars = new ArrayList<>();
+    private final ArrayList<Entry> entries = new ArrayList<>();
+    private int entryCount;
+    private boolean picked; // Whether this frame's entries were picked yet
+
+    // Results of the last frame
+    private long lastSpentNanos;
+    private int lastRunCount, lastDeferredCount;
+
+    private static final Comparator<Entry> ORDER = Comparator
+            .<Entry, LoadPriority.Tier>comparing(e -> e.tier)
+            .thenComparingDouble(e -> e.score);
+
+    private static final class Entry {
+        Avatar<?> avatar;
+        @Nullable AvatarProfiling profiling;
+        LoadPriority.Tier tier;
+        double score; // Distance squared, reduced the longer the avatar was deferred
+        boolean runs; // Whether the avatar runs this frame
+        long spentNanos; // Time spent running the avatar this frame, across every run()
+    }
+
+    /**
+     * Finish the previous frame, recording its results, and start a new one.
+     * Should be called on the main thread, once per frame, before any run(). AvatarManagers.pollAll() does this.
+     */
+    public void beginFrame() {
+        if (picked) {
+            long spent = 0;
+            int run = 0, deferred = 0;
+            for (int i = 0; i < entryCount; i++) {
+                Entry entry = entries.get(i);
+                if (entry.runs) {
+                    spent += entry.spentNanos;
+                    run++;
+                    if (entry.profiling != null) entry.profiling.recordFrameRun(entry.spentNanos);
+                } else {
+                    deferred++;
+                    if (entry.profiling != null) entry.profiling.recordFrameDeferred();
+                }
+            }
+            lastSpentNanos = spent;
+            lastRunCount = run;
+            lastDeferredCount = deferred;
+        }
+        for (int i = 0; i < entryCount; i++) {
+            entries.get(i).avatar = null;
+            entries.get(i).profiling = null;
+        }
+        entryCount = 0;
+        picked = false;
+    }
+
+    /**
+     * Run the consumer on this frame's avatars, in priority order: those which fit in the frame's budget.
+     * Should be called on the main thread, once per frame for each kind of per-frame work.
+     */
+    public <E extends Throwable> void run(ThrowingConsumer<Avatar<?>, E> consumer) throws E {
+        if (!picked) pick();
+        for (int i = 0; i < entryCount; i++) {
+            Entry entry = entries.get(i);
+            if (!entry.runs) continue;
+            long start = System.nanoTime();
+            use(entry.avatar, consumer);
+            entry.spentNanos += System.nanoTime() - start;
+        }
+    }
+
+    // Prioritize the loaded avatars, and pick which of them fit in the budget, based on their expected costs
+    private void pick() {
+        picked = true;
+        AvatarManagers.ENTITIES.collectLoaded(avatars);
+        AvatarManagers.GUIS.collectLoaded(avatars);
+        try {
+            UUID localUUID = FiguraConnectionPoint.GAME_DATA_PROVIDER.getLocalUUID();
+            MinecraftEntity localPlayer = localUUID == null ? null : FiguraConnectionPoint.GAME_DATA_PROVIDER.getEntity(localUUID);
+            for (Avatar<?> avatar : avatars) prioritize(avatar, localUUID, localPlayer);
+        } finally {
+            avatars.clear();
+        }
+        entries.subList(0, entryCount).sort(ORDER);
+
+        long budget = budgetNanos;
+        long expected = 0;
+        for (int i = 0; i < entryCount; i++) {
+            Entry entry = entries.get(i);
+            AvatarProfiling profiling = entry.profiling;
+            long cost = profiling == null ? 0 : profiling.getExpectedFrameNanos();
+            boolean essential = entry.tier.compareTo(LoadPriority.Tier.ENTITY) < 0;
+            entry.runs = essential || profiling == null || profiling.getDeferredStreak() >= MAX_DEFERRED_FRAMES || expected + cost <= budget;
+            entry.spentNanos = 0;
+            if (entry.runs) expected += cost;
+        }
+    }
+
+    private void prioritize(Avatar<?> avatar, @Nullable UUID localUUID, @Nullable MinecraftEntity localPlayer) {
+        if (entryCount == entries.size()) entries.add(new Entry());
+        Entry entry = entries.get(entryCount++);
+        entry.avatar = avatar;
+        entry.profiling = avatar.getComponent(AvatarProfiling.TYPE);
+        entry.tier = LoadPriority.Tier.GUI;
+        entry.score = 0;
+        if (avatar.key instanceof UUID uuid) {
+            if (uuid.equals(localUUID)) {
+                entry.tier = LoadPriority.Tier.LOCAL_PLAYER;
+            } else {
+                entry.tier = avatar.getComponent(CemSelfDeleter.TYPE) != null ? LoadPriority.Tier.CEM_ENTITY : LoadPriority.Tier.ENTITY;
+                MinecraftEntity entity = FiguraConnectionPoint.GAME_DATA_PROVIDER.getEntity(uuid);
+                entry.score = entity == null ? Double.MAX_VALUE : LoadPriority.forEntity(entry.tier, entity, localPlayer).distanceSquared();
+                // Each deferred frame counts as halving the distance
+                if (entry.profiling != null) entry.score /= 1L << (2 * Math.min(entry.profiling.getDeferredStreak(), MAX_DEFERRED_FRAMES));
+            }
+        }
+    }
+
+    private static <K, E extends Throwable> void use(Avatar<K> avatar, ThrowingConsumer<Avatar<?>, E> consumer) throws E {
+        new AvatarView<>(avatar).use(consumer::accept);
+    }
+
+    public void setBudget(long budgetNanos) {
+        this.budgetNanos = budgetNanos;
+    }
+
+    public long getBudget() {
+        return budgetNanos;
+    }
+
+    // Time spent running avatars in the last finished frame
+    public long getLastSpentNanos() {
+        return lastSpentNanos;
+    }
+
+    // Number of avatars which ran in the last finished frame
+    public int getLastRunCount() {
+        return lastRunCount;
+    }
+
+    // Number of avatars deferred in the last finished frame
+    public int getLastDeferredCount() {
+        return lastDeferredCount;
+    }
+
+}
@@ -0,0 +1,57 @@
+package org.figuramc.figura_core.manage;
+
+import org.figuramc.figura_core.minecraft_interop.FiguraConnectionPoint;
+import org.figuramc.figura_core.minecraft_interop.game_data.entity.MinecraftEntity;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.joml.Vector3d;
+
+import java.util.UUID;
+
+/**
+ * The priority of an avatar loading task. Lower priorities run first.
+ * Tasks are ordered by tier, and then by (squared) distance to the local player within a tier.
+ */
+public record LoadPriority(Tier tier, double distanceSquared) implements Comparable<LoadPriority> {
+
+    public static final LoadPriority LOCAL_PLAYER = new LoadPriority(Tier.LOCAL_PLAYER, 0);
+    public static final LoadPriority GUI = new LoadPriority(Tier.GUI, 0);
+    public static final LoadPriority ENTITY = new LoadPriority(Tier.ENTITY, 0);
+
+    public enum Tier {
+        LOCAL_PLAYER, // The local player's own avatar, the one they're most likely looking at
+        GUI, // GUI avatars, like the main wardrobe
+        ENTITY, // Avatars equipped on other entities
+        CEM_ENTITY // Custom entity models, which can be numerous and are the least important
+    }
+
+    // Scratch vectors for the distance check. Only touched on the main thread.
+    private static final Vector3d ENTITY_POS = new Vector3d(), LOCAL_POS = new Vector3d();
+
+    /**
+     * Get the priority of a task for the given entity, in the given tier.
+     * Should only be called on the main thread, since it looks up the local player.
+     * If there's no local player (e.g. not in a world yet), every entity in the tier gets the same priority.
+     */
+    public static LoadPriority forEntity(Tier tier, MinecraftEntity entity) {
+        UUID localUUID = FiguraConnectionPoint.GAME_DATA_PROVIDER.getLocalUUID();
+        MinecraftEntity localPlayer = localUUID == null ? null : FiguraConnectionPoint.GAME_DATA_PROVIDER.getEntity(localUUID);
+        return forEntity(tier, entity, localPlayer);
+    }
+
+    // Same as above, for callers handling many entities at once which already looked up the local player
+    public static LoadPriority forEntity(Tier tier, MinecraftEntity entity, @Nullable MinecraftEntity localPlayer) {
+        if (localPlayer == null || localPlayer == entity) return new LoadPriority(tier, 0);
+        entity.getPosition(1f, ENTITY_POS);
+        localPlayer.getPosition(1f, LOCAL_POS);
+        return new LoadPriority(tier, ENTITY_POS.distanceSquared(LOCAL_POS));
+    }
+
+    @Override
+    public int compareTo(@NotNull LoadPriority o) {
+        int tierCompare = tier.compareTo(o.tier);
+        if (tierCompare != 0) return tierCompare;
+        return Double.compare(distanceSquared, o.distanceSquared);
+    }
+
+}
@@ -0,0 +1,18 @@
+package org.figuramc.figura_core.minecraft_interop;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Optional interface for game objects which give figura-core a slot to cache things in.
+ * For example, an entity implementing MinecraftEntity can implement this too, backed by a plain field,
+ * so looking up its avatar every frame doesn't need a map lookup. Objects which don't implement it still work,
+ * they just go through a slower side table.
+ *
+ * This lives outside game_data on purpose: it's Figura bookkeeping, not game state, so SessionRecorder doesn't record it.
+ */
+public interface FiguraCacheHolder {
+
+    @Nullable Object getFiguraCache();
+    void setFiguraCache(@Nullable Object cache);
+
+}
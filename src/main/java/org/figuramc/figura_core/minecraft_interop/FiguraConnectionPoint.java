@@ -31,6 +31,7 @@ public class FiguraConnectionPoint {
     // Global instances of various singleton interfaces should be given implementations.
     public static MinecraftTextureProvider TEXTURE_PROVIDER = null;
     public static MinecraftGlyphProvider GLYPH_PROVIDER = null;
+    // The tracker feeds the avatar's live render buffer figure, so anything tracked with it should be taken back off (changeSize) once freed.
     public static ThrowingBiFunction<RenderData, @Nullable AllocationTracker<AvatarOutOfMemoryError>, ClientPartRenderer, AvatarOutOfMemoryError> PART_RENDERER_FACTORY = null;
     public static GameDataProvider GAME_DATA_PROVIDER = null;
     public static ConsoleOutput CONSOLE_OUTPUT = null;
@@ -1,5 +1,6 @@
 package org.figuramc.figura_core.minecraft_interop.render;
 
+import org.figuramc.figura_core.model.rendering.vertex.FiguraVertexFormat;
 import org.figuramc.figura_core.util.data_structures.FiguraTransformStack;
 
 /**
@@ -10,9 +11,17 @@ public interface ClientPartRenderer extends AutoCloseable {
     // Close should not error
     @Override void close();
 
-    // Draw! The RenderData's transforms are updated by the time this runs.
+    // Draw! The RenderData's transforms are updated by the time this runs; upload partData.buffer() directly.
     // Also passes through some kind of unknown "state" object.
     // This object should be defined by the client.
     // The object is passed unmodified through FiguraModelPart.render() into all ClientPartRenderer.draw() invocations.
     void draw(FiguraTransformStack transformStack, Object state);
+
+    // Incremental updates (see RenderData.patch()). Renderers which return true here are told about changes
+    // through the methods below, instead of being thrown away and recreated with a whole new RenderData.
+    default boolean supportsPatching() { return false; }
+    // The bytes in [start, start + length) of the format's buffer in builtData changed. The buffer's limit may have grown.
+    default void updateRange(FiguraVertexFormat format, int start, int length) {}
+    // The RenderData's draw calls, or the part count of its partData, changed. partData.buffer() may be a new buffer.
+    default void updateLayout() {}
 }
@@ -44,6 +44,7 @@ public class PartTransform {
     public static final byte SCALE_DIRTY = 0x04; // totalScale is dirty and needs recalculation
     public static final byte POSITION_DIRTY = 0x08; // totalScale is dirty and needs recalculation
     public static final byte MATRIX_DIRTY = 0x10; // matrix is dirty and needs recalculation
+    public static final byte WORLD_DIRTY = 0x20; // matrix or color changed since the part's cached world transform was last computed
 
     // Size estimate
     public static final int SIZE_ESTIMATE =
@@ -96,36 +97,42 @@ public class PartTransform {
     private boolean scaleDirty() { return mimicPart != null || hasFlags(SCALE_DIRTY); }
     private boolean positionDirty() { return mimicPart != null || hasFlags(POSITION_DIRTY); }
     private boolean matrixDirty() { return mimicPart != null || hasFlags(MATRIX_DIRTY); }
+    // Return whether the world transform needs recalculating, and clear the flag. Mimic parts move every frame, so they always do.
+    public boolean consumeWorldDirty() {
+        boolean dirty = mimicPart != null || hasFlags(WORLD_DIRTY);
+        removeFlags(WORLD_DIRTY);
+        return dirty;
+    }
 
     // Property set/get
-    public void setOrigin(Vector3fc origin) { this.origin.set(origin); setFlags(ORIGIN_DIRTY | MATRIX_DIRTY); }
-    public void setOrigin(float x, float y, float z) { this.origin.set(x, y, z); setFlags(ORIGIN_DIRTY | MATRIX_DIRTY); }
+    public void setOrigin(Vector3fc origin) { this.origin.set(origin); setFlags(ORIGIN_DIRTY | MATRIX_DIRTY | WORLD_DIRTY); }
+    public void setOrigin(float x, float y, float z) { this.origin.set(x, y, z); setFlags(ORIGIN_DIRTY | MATRIX_DIRTY | WORLD_DIRTY); }
     public Vector3fc getOrigin() { return this.origin; }
 
-    public void setEulerRad(Vector3fc rotation) { this.rotation.set(rotation); setFlags(ROTATION_DIRTY | MATRIX_DIRTY); }
-    public void setEulerRad(float x, float y, float z) { this.rotation.set(x, y, z); setFlags(ROTATION_DIRTY | MATRIX_DIRTY); }
-    public void setEulerDeg(Vector3fc rotation) { this.rotation.set(rotation).mul((float) (Math.PI / 180)); setFlags(ROTATION_DIRTY | MATRIX_DIRTY); }
-    public void setEulerDeg(float x, float y, float z) { this.rotation.set(x, y, z).mul((float) (Math.PI / 180)); setFlags(ROTATION_DIRTY | MATRIX_DIRTY); }
+    public void setEulerRad(Vector3fc rotation) { this.rotation.set(rotation); setFlags(ROTATION_DIRTY | MATRIX_DIRTY | WORLD_DIRTY); }
+    public void setEulerRad(float x, float y, float z) { this.rotation.set(x, y, z); setFlags(ROTATION_DIRTY | MATRIX_DIRTY | WORLD_DIRTY); }
+    public void setEulerDeg(Vector3fc rotation) { this.rotation.set(rotation).mul((float) (Math.PI / 180)); setFlags(ROTATION_DIRTY | MATRIX_DIRTY | WORLD_DIRTY); }
+    public void setEulerDeg(float x, float y, float z) { this.rotation.set(x, y, z).mul((float) (Math.PI / 180)); setFlags(ROTATION_DIRTY | MATRIX_DIRTY | WORLD_DIRTY); }
     public Vector3fc getEulerRad() { return this.rotation; }
 
-    public void setScale(Vector3fc scale) { this.scale.set(scale); setFlags(SCALE_DIRTY | MATRIX_DIRTY); }
-    public void setScale(float x, float y, float z) { this.scale.set(x, y, z); setFlags(SCALE_DIRTY | MATRIX_DIRTY); }
-    public void setScale(float s) { this.scale.set(s); setFlags(SCALE_DIRTY | MATRIX_DIRTY); }
+    public void setScale(Vector3fc scale) { this.scale.set(scale); setFlags(SCALE_DIRTY | MATRIX_DIRTY | WORLD_DIRTY); }
+    public void setScale(float x, float y, float z) { this.scale.set(x, y, z); setFlags(SCALE_DIRTY | MATRIX_DIRTY | WORLD_DIRTY); }
+    public void setScale(float s) { this.scale.set(s); setFlags(SCALE_DIRTY | MATRIX_DIRTY | WORLD_DIRTY); }
     public Vector3fc getScale() { return this.scale; }
 
-    public void setPosition(Vector3fc position) { this.position.set(position); setFlags(POSITION_DIRTY | MATRIX_DIRTY); }
-    public void setPosition(float x, float y, float z) { this.position.set(x, y, z); setFlags(POSITION_DIRTY | MATRIX_DIRTY); }
+    public void setPosition(Vector3fc position) { this.position.set(position); setFlags(POSITION_DIRTY | MATRIX_DIRTY | WORLD_DIRTY); }
+    public void setPosition(float x, float y, float z) { this.position.set(x, y, z); setFlags(POSITION_DIRTY | MATRIX_DIRTY | WORLD_DIRTY); }
     public Vector3fc getPosition() { return this.position; }
 
-    public void forceMatrix(Matrix4fc matrix) { this.totalMatrix.set(matrix); this.totalMatrix.normal(totalNormalMatrix); removeFlags(MATRIX_DIRTY); }
-    public void unforceMatrix() { setFlags(MATRIX_DIRTY); }
+    public void forceMatrix(Matrix4fc matrix) { this.totalMatrix.set(matrix); this.totalMatrix.normal(totalNormalMatrix); removeFlags(MATRIX_DIRTY); setFlags(WORLD_DIRTY); }
+    public void unforceMatrix() { setFlags(MATRIX_DIRTY | WORLD_DIRTY); }
 
-    public void setColor(Vector4fc color) { this.color.set(color); }
-    public void setColor(float r, float g, float b, float a) { this.color.set(r, g, b, a); }
+    public void setColor(Vector4fc color) { this.color.set(color); setFlags(WORLD_DIRTY); }
+    public void setColor(float r, float g, float b, float a) { this.color.set(r, g, b, a); setFlags(WORLD_DIRTY); }
 
     public void setVisible(boolean vis) { this.visible = vis; }
 
-    public void setMimicPart(@Nullable VanillaRendering.ScriptVanillaPart mimicPart) { this.mimicPart = mimicPart; }
+    public void setMimicPart(@Nullable VanillaRendering.ScriptVanillaPart mimicPart) { this.mimicPart = mimicPart; setFlags(WORLD_DIRTY); }
 
     public void addAnimator(Animator animator) throws AvatarOutOfMemoryError {
         if (animators == null)
@@ -189,8 +196,8 @@ public class PartTransform {
         return visible;
     }
 
-    // Affect the transform stack with this
-    public void affect(FiguraTransformStack stack) {
+    // The local matrix, position/rotation/scale combined
+    public Matrix4fc totalMatrix() {
         if (matrixDirty()) {
             Vector3fc origin = totalOrigin();
             Vector3fc rotation = totalEulerRad();
@@ -204,6 +211,16 @@ public class PartTransform {
             totalMatrix.normal(totalNormalMatrix);
             removeFlags(MATRIX_DIRTY);
         }
+        return totalMatrix;
+    }
+    public Matrix3fc totalNormalMatrix() {
+        totalMatrix();
+        return totalNormalMatrix;
+    }
+
+    // Affect the transform stack with this
+    public void affect(FiguraTransformStack stack) {
+        totalMatrix();
         stack.multiply(totalMatrix, totalNormalMatrix);
         stack.color(color);
     }
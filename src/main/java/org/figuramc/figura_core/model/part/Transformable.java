@@ -5,4 +5,8 @@ package org.figuramc.figura_core.model.part;
  */
 public interface Transformable {
     PartTransform getTransform();
+
+    // Whether the main thread may already be reading this, so setters relevant to rendering have to go through
+    // QueuedSetters while they're enabled. Anything which can't tell should say it is.
+    default boolean isPublished() { return true; }
 }
@@ -0,0 +1,60 @@
+package org.figuramc.figura_core.model.part;
+
+import org.figuramc.figura_core.util.data_structures.FiguraTransformStack;
+import org.figuramc.memory_tracker.AllocationTracker;
+import org.joml.Matrix3f;
+import org.joml.Matrix4f;
+import org.joml.Vector2f;
+import org.joml.Vector4f;
+
+/**
+ * A model part's cached transform in the space of its render root, with everything above it applied.
+ * Recomputed only when the part's own transform changed, or its parent's world transform did,
+ * so a static subtree under a static parent costs a copy per part instead of matrix math.
+ */
+public class WorldTransform {
+
+    public final Matrix4f position = new Matrix4f();
+    public final Matrix3f normal = new Matrix3f();
+    public final Vector4f color = new Vector4f(1.0f);
+    public final Vector2f light = new Vector2f(-1f, -1f);
+    public boolean visible = false; // Whether the values above are valid. Starts false, so the first render always computes them.
+
+    public static final int SIZE_ESTIMATE =
+            AllocationTracker.OBJECT_SIZE
+            + AllocationTracker.REFERENCE_SIZE * 4
+            + AllocationTracker.MAT4F_SIZE
+            + AllocationTracker.MAT3F_SIZE
+            + AllocationTracker.VEC4F_SIZE
+            + AllocationTracker.OBJECT_SIZE + AllocationTracker.FLOAT_SIZE * 2;
+
+    // Take the top of the stack as this transform. Returns true if it differs from what was stored before.
+    public boolean update(FiguraTransformStack stack) {
+        Matrix4f stackPosition = stack.peekPosition();
+        Matrix3f stackNormal = stack.peekNormal();
+        Vector4f stackColor = stack.peekColor();
+        Vector2f stackLight = stack.peekLight();
+        if (visible && position.equals(stackPosition) && normal.equals(stackNormal) && color.equals(stackColor) && light.equals(stackLight))
+            return false;
+        position.set(stackPosition);
+        normal.set(stackNormal);
+        color.set(stackColor);
+        light.set(stackLight);
+        visible = true;
+        return true;
+    }
+
+    // Set this to the parent's world transform, followed by the part's local transform
+    public void compose(WorldTransform parent, PartTransform local) {
+        position.set(parent.position).mul(local.totalMatrix());
+        normal.set(parent.normal).mul(local.totalNormalMatrix());
+        color.set(parent.color).mul(local.getColor());
+        light.set(parent.light);
+    }
+
+    // Push this transform onto the stack, for rendering a separate root beneath it
+    public void push(FiguraTransformStack stack) {
+        stack.push(position, normal, color, light);
+    }
+
+}
@@ -2,6 +2,7 @@ package org.figuramc.figura_core.model.part.parts;
 
 import org.figuramc.figura_core.animation.Animation;
 import org.figuramc.figura_core.animation.AnimationInstance;
+import org.figuramc.figura_core.avatars.AllocationLedger;
 import org.figuramc.figura_core.avatars.Avatar;
 import org.figuramc.figura_core.avatars.AvatarModules;
 import org.figuramc.figura_core.avatars.components.Materials;
@@ -35,7 +36,7 @@ public class FigmodelModelPart extends FiguraModelPart {
         Molang molang = owningAvatar.assertComponent(Molang.TYPE);
         Textures texturesComponent = owningAvatar.assertComponent(Textures.TYPE);
 
-        animations = MapUtils.<String, ModuleMaterials.AnimationMaterials, AnimationInstance, AvatarInitError, AvatarOutOfMemoryError>mapValuesBiThrowing(materials.animations, (animName, animMats) -> new AnimationInstance(new Animation(name, animName, animMats, molang, owningAvatar.allocationTracker), this, owningAvatar.allocationTracker));
+        animations = MapUtils.<String, ModuleMaterials.AnimationMaterials, AnimationInstance, AvatarInitError, AvatarOutOfMemoryError>mapValuesBiThrowing(materials.animations, (animName, animMats) -> new AnimationInstance(new Animation(name, animName, animMats, molang, owningAvatar.allocationTracker(AllocationLedger.Source.KEYFRAMES)), this, owningAvatar.allocationTracker(AllocationLedger.Source.KEYFRAMES)));
         textures = MapUtils.mapValues(materials.textures, texIndex -> texturesComponent.getTexture(module.index, texIndex));
 
         if (owningAvatar.allocationTracker != null) {
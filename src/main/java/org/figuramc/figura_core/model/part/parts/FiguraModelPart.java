@@ -1,7 +1,9 @@
 package org.figuramc.figura_core.model.part.parts;
 
+import org.figuramc.figura_core.avatars.AllocationLedger;
 import org.figuramc.figura_core.avatars.Avatar;
 import org.figuramc.figura_core.avatars.AvatarModules;
+import org.figuramc.figura_core.avatars.AvatarPrototype;
 import org.figuramc.figura_core.avatars.components.Materials;
 import org.figuramc.figura_core.avatars.components.RenderDataHolder;
 import org.figuramc.figura_core.avatars.components.VanillaRendering;
@@ -11,6 +13,7 @@ import org.figuramc.figura_core.avatars.errors.AvatarOutOfMemoryError;
 import org.figuramc.figura_core.data.materials.ModuleMaterials;
 import org.figuramc.figura_core.model.part.PartTransform;
 import org.figuramc.figura_core.model.part.RiggedHierarchy;
+import org.figuramc.figura_core.model.part.WorldTransform;
 import org.figuramc.figura_core.model.rendering.FiguraRenderType;
 import org.figuramc.figura_core.model.rendering.RenderData;
 import org.figuramc.figura_core.model.rendering.vertex.PartVertexData;
@@ -19,6 +22,8 @@ import org.figuramc.figura_core.model.texture.AvatarTexture;
 import org.figuramc.figura_core.script_hooks.flags.QueuedSetters;
 import org.figuramc.figura_core.util.MapUtils;
 import org.figuramc.figura_core.util.data_structures.FiguraTransformStack;
+import org.figuramc.figura_core.util.exception.FiguraException;
+import org.figuramc.figura_core.util.jfr.FiguraEvents;
 import org.figuramc.memory_tracker.AllocationTracker;
 import org.jetbrains.annotations.Nullable;
 
@@ -49,8 +54,16 @@ public class FiguraModelPart implements RiggedHierarchy<FiguraModelPart> {
     // Rendering
     public @Nullable PartVertexData vertices; // Vertex data making up cubes/meshes of this part (not yet baked)
     public @Nullable FiguraRenderType renderType; // Render type for this part. Pass null to inherit unconditionally.
+    private @Nullable FiguraRenderType sharedRenderType; // The render type from a prototype's shared Materials, until copied
     public int renderTypePriority; // If the render type priority is >= than the parent's, renderType can replace the current render type (TODO is this actually helpful?)
     public @Nullable RenderData renderData; // Contains information needed for rendering this part as a root
+    private final WorldTransform world = new WorldTransform(); // Cached transform of this part, relative to the stack its render root was drawn with
+    private @Nullable WorldTransform renderInput; // Top of the stack when this part was last rendered as a root, created on first use
+
+    // Whether the main thread may be reading this part. Parts built with the avatar are published from the start;
+    // parts created later (by the init script) are published once attached to a published parent or rebuilt.
+    // Until then only the script's thread can reach them, so their setters don't need to be queued. See QueuedSetters.
+    private volatile boolean published;
 
     // The avatar who owns this part.
     // Should only be used in a thread-safe way, since it's not behind an exclusive AvatarView!!
@@ -62,6 +75,7 @@ public class FiguraModelPart implements RiggedHierarchy<FiguraModelPart> {
     public FiguraModelPart(Avatar<?> owningAvatar, String name, List<FiguraModelPart> children) throws AvatarOutOfMemoryError {
         this.owningAvatar = owningAvatar;
         this.name = name;
+        this.published = owningAvatar.getStage() == Avatar.Stage.BUILDING;
         this.transform = new PartTransform(owningAvatar.allocationTracker);
         this.children = new ArrayList<>(children);
         this.vertices = null;
@@ -75,13 +89,15 @@ public class FiguraModelPart implements RiggedHierarchy<FiguraModelPart> {
 
     public static final int SIZE_ESTIMATE =
             AllocationTracker.OBJECT_SIZE
-            + AllocationTracker.REFERENCE_SIZE * 8
-            + AllocationTracker.INT_SIZE;
+            + AllocationTracker.REFERENCE_SIZE * 10
+            + AllocationTracker.INT_SIZE
+            + WorldTransform.SIZE_ESTIMATE;
 
     // Construct from materials. Vanilla rendering parameter is used for mimics
     public FiguraModelPart(Avatar<?> owningAvatar, String name, AvatarModules.LoadTimeModule module, ModuleMaterials.ModelPartMaterials materials) throws AvatarInitError, AvatarOutOfMemoryError {
         this.owningAvatar = owningAvatar;
         this.name = name;
+        this.published = owningAvatar.getStage() == Avatar.Stage.BUILDING;
         // Get required and optional components
         Materials materialsComponent = owningAvatar.assertComponent(Materials.TYPE);
         VanillaRendering vanillaComponent = owningAvatar.getComponent(VanillaRendering.TYPE);
@@ -114,11 +130,11 @@ public class FiguraModelPart implements RiggedHierarchy<FiguraModelPart> {
         if (materials.materialIndex != null) {
             // If material index is not null, then get the render type
             renderType = materialsComponent.getMaterial(module.index, materials.materialIndex);
-            // Also get vertices
-            PartVertexData.Builder verticesBuilder = PartVertexData.builder();
-            for (ModuleMaterials.CubeData cubeData : materials.cubes) VertexDataExtraction.addVertices(verticesBuilder, cubeData);
-            for (ModuleMaterials.MeshData meshData : materials.meshes) VertexDataExtraction.addVertices(verticesBuilder, meshData);
-            vertices = verticesBuilder.build(owningAvatar.allocationTracker);
+            // Also get vertices. These never change, so avatars built from a prototype share them.
+            AvatarPrototype prototype = owningAvatar.prototype;
+            if (prototype != null) sharedRenderType = renderType;
+            if (prototype == null) vertices = extractVertices(materials, owningAvatar.allocationTracker(AllocationLedger.Source.VERTEX_DATA));
+            else vertices = prototype.share(materials, () -> extractVertices(materials, owningAvatar.allocationTracker(AllocationLedger.Source.VERTEX_DATA)));
         }
 
         // Register to alloc tracker
@@ -130,16 +146,24 @@ public class FiguraModelPart implements RiggedHierarchy<FiguraModelPart> {
         } else allocState = null;
     }
 
+    private static PartVertexData extractVertices(ModuleMaterials.ModelPartMaterials materials, @Nullable AllocationTracker<AvatarOutOfMemoryError> allocationTracker) throws AvatarOutOfMemoryError {
+        PartVertexData.Builder verticesBuilder = PartVertexData.builder();
+        for (ModuleMaterials.CubeData cubeData : materials.cubes) VertexDataExtraction.addVertices(verticesBuilder, cubeData);
+        for (ModuleMaterials.MeshData meshData : materials.meshes) VertexDataExtraction.addVertices(verticesBuilder, meshData);
+        return verticesBuilder.build(allocationTracker);
+    }
+
     // Construct by extruding a texture (TODO: normal/specular buddies?)
     public FiguraModelPart(Avatar<?> owningAvatar, String name, AvatarTexture texture) throws AvatarOutOfMemoryError {
         this.owningAvatar = owningAvatar;
         this.name = name;
+        this.published = owningAvatar.getStage() == Avatar.Stage.BUILDING;
         this.transform = new PartTransform(owningAvatar.allocationTracker);
         this.renderType = FiguraRenderType.albedo(0, new FiguraRenderType.TextureBinding(texture.getHandle(), texture.getUvValues()));
         this.children = new ArrayList<>(0);
         PartVertexData.Builder builder = PartVertexData.builder();
         VertexDataExtraction.extrudeTexture(builder, texture);
-        vertices = builder.build(owningAvatar.allocationTracker);
+        vertices = builder.build(owningAvatar.allocationTracker(AllocationLedger.Source.VERTEX_DATA));
         // Track
         if (owningAvatar.allocationTracker != null) {
             allocState = owningAvatar.allocationTracker.track(this, SIZE_ESTIMATE);
@@ -149,27 +173,81 @@ public class FiguraModelPart implements RiggedHierarchy<FiguraModelPart> {
     // Rendering stuff
 
     // Trigger a vertex rebuild of this part. Stores resulting data in the associated RenderData.
+    // This always creates a new RenderData owned by this avatar, even if the old one was shared through a prototype.
+    // The old one is closed right away if this avatar owned it, so its buffers go back to the pool.
     public void buildRenderingData() throws AvatarError, AvatarOutOfMemoryError {
+        RenderDataHolder holder = owningAvatar.getComponent(RenderDataHolder.TYPE);
+        RenderData old = this.renderData;
+        this.renderData = buildRenderingData(holder);
+        if (old != null && holder != null && holder.unregister(old)) old.close();
+    }
+    // Bring this part's rendering data up to date with its subtree, only rewriting the parts which changed
+    // (see RenderData.patch()). Falls back to a full rebuild when there's nothing to patch, or it can't be patched.
+    public void updateRenderingData() throws AvatarError, AvatarOutOfMemoryError {
+        RenderDataHolder holder = owningAvatar.getComponent(RenderDataHolder.TYPE);
+        RenderData renderData = this.renderData;
+        if (renderData != null && holder != null && holder.owns(renderData)) {
+            List<RenderData.PartEntry> parts = new ArrayList<>();
+            collectRenderedParts(parts, this.renderType, this.renderTypePriority);
+            if (renderData.patch(parts)) return;
+        }
+        buildRenderingData();
+    }
+    // updateRenderingData(), but queued behind any other queued setters while they're enabled (see QueuedSetters).
+    // While the init script runs on a loading thread, the avatar may already be rendering on the main thread,
+    // and the tree changes this should pick up (addChild(), removeChild()...) haven't happened yet either.
+    // The main thread reads this subtree once the rebuild runs, so it's published right away.
+    // Errors in a queued rebuild error the avatar, since there's no script left to throw them into.
+    public void queueRenderingDataUpdate() throws AvatarError, AvatarOutOfMemoryError {
+        if (!QueuedSetters.FLAG.enabled()) {
+            updateRenderingData();
+            return;
+        }
+        publish();
+        QueuedSetters.handle(() -> {
+            try {
+                updateRenderingData();
+            } catch (AvatarError err) {
+                owningAvatar.error(err);
+            } catch (AvatarOutOfMemoryError oom) {
+                owningAvatar.error(new AvatarError(FiguraException.LITERAL, "Ran out of memory rebuilding part " + name + " (TODO translate)"));
+            }
+        });
+    }
+    // Build rendering data for this part, without storing it in the part.
+    // If no holder is given, the caller is responsible for closing the result.
+    public @Nullable RenderData buildRenderingData(@Nullable RenderDataHolder holder) throws AvatarError, AvatarOutOfMemoryError {
+        FiguraEvents.RenderDataBuild event = new FiguraEvents.RenderDataBuild();
+        event.begin();
         RenderData.Builder builder = RenderData.builder();
-        buildRenderingData(builder, this.renderType, this.renderTypePriority);
-        this.renderData = builder.build(owningAvatar.getComponent(RenderDataHolder.TYPE), owningAvatar.allocationTracker);
+        List<RenderData.PartEntry> parts = new ArrayList<>();
+        collectRenderedParts(parts, this.renderType, this.renderTypePriority);
+        for (RenderData.PartEntry part : parts) builder.addModelPart(part.part(), part.vertices(), part.renderType());
+        RenderData result = builder.build(holder, owningAvatar.allocationTracker(AllocationLedger.Source.RENDER_BUFFERS));
+        if (event.shouldCommit()) {
+            event.avatar = String.valueOf(owningAvatar.key);
+            event.part = name;
+            event.commit();
+        }
+        return result;
     }
+    // Gather the parts whose vertices go in this part's rendering data, in depth-first order, with their render types.
     // If a child has its own separate managed rendering data, don't recurse into it
-    private void buildRenderingData(RenderData.Builder out, FiguraRenderType renderType, int renderTypePriority) throws AvatarError {
+    private void collectRenderedParts(List<RenderData.PartEntry> out, FiguraRenderType renderType, int renderTypePriority) {
         // Update render type and priority if needed
         if (this.renderType != null && this.renderTypePriority >= renderTypePriority) {
             renderType = this.renderType;
             renderTypePriority = this.renderTypePriority;
         }
-        // Notify the builder this part exists
+        // This part exists
         if (this.vertices != null) {
-            out.addModelPart(this.vertices, renderType);
+            out.add(new RenderData.PartEntry(this, this.vertices, renderType));
         }
         // Recurse on children
         for (FiguraModelPart child : this.children) {
             // Only recurse if the child doesn't have its own managed rendering data
             if (child.renderData == null) {
-                child.buildRenderingData(out, renderType, renderTypePriority);
+                child.collectRenderedParts(out, renderType, renderTypePriority);
             }
         }
     }
@@ -180,50 +258,89 @@ public class FiguraModelPart implements RiggedHierarchy<FiguraModelPart> {
     // State is passthrough to all ClientPartRenderer impls.
     public void render(FiguraTransformStack transformStack, Object state) throws AvatarError, AvatarOutOfMemoryError {
         RenderData renderData = this.renderData;
-        this.renderHelper(transformStack, true, 0, renderData, state);
+        WorldTransform input = this.renderInput;
+        if (input == null) {
+            if (this.allocState != null) this.allocState.changeSize(WorldTransform.SIZE_ESTIMATE);
+            this.renderInput = input = new WorldTransform();
+        }
+        // If the stack we're drawn with moved, every cached world transform below us is stale
+        boolean inputChanged = input.update(transformStack);
+        this.renderHelper(transformStack, input, inputChanged, true, 0, renderData, state);
         if (renderData != null) renderData.clientPartRenderer.draw(transformStack, state);
     }
     // Returns new part ID
     private int renderHelper(
             FiguraTransformStack transformStack,
+            WorldTransform parentWorld,
+            boolean parentChanged, // Whether the parent's world transform changed since the last render
             boolean currentlyVisible,
             int partID,
             @Nullable RenderData renderData, // If data is null, we don't emit any transforms, just proceed to find descendants who do have RenderData
             Object state
     ) throws AvatarError, AvatarOutOfMemoryError {
-        // Update transform stack and visibility
+        // Update visibility and world transform. Always consume the dirty flag, even if we recompute anyway.
         currentlyVisible = currentlyVisible && transform.getVisible();
-        transformStack.push();
-        if (currentlyVisible) transform.affect(transformStack);
+        boolean changed = transform.consumeWorldDirty() | parentChanged | currentlyVisible != world.visible;
+        if (changed) {
+            world.visible = currentlyVisible;
+            if (currentlyVisible) world.compose(parentWorld, transform);
+        }
         // Only parts with vertices use IDs
-        if (vertices != null && renderData != null)
-            renderData.partData[partID++].fillFromStack(transformStack, currentlyVisible);
+        if (vertices != null && renderData != null) {
+            int id = renderData.partId(this, partID++);
+            if (id != -1) renderData.partData.write(id, world.position, world.normal, world.color, world.light, currentlyVisible);
+        }
         // Recurse on children
         for (FiguraModelPart child : children) {
             if (child.renderData != null && currentlyVisible) {
                 // If the child has their own separate render data, and we're visible:
                 // recurse with the *original* render function, drawing a whole new tree!
+                world.push(transformStack);
                 child.render(transformStack, state);
+                transformStack.pop();
             } else {
                 // Otherwise, continue recursing in this helper, and update the part ID.
-                partID = child.renderHelper(transformStack, currentlyVisible, partID, renderData, state);
+                partID = child.renderHelper(transformStack, world, changed, currentlyVisible, partID, renderData, state);
             }
         }
-        // Pop and return
-        transformStack.pop();
         return partID;
     }
 
+    // The cached world transform, as of the last render. Only for tests to check it against a full recompute.
+    WorldTransform cachedWorld() {
+        return world;
+    }
+
 
     // Script-y functions
 
+    // Get this part's render type, in order for a script to modify it.
+    // Render types shared through a prototype are copied first, so the change only affects this avatar.
+    // (The copy is picked up the next time rendering data is rebuilt.)
+    public @Nullable FiguraRenderType renderTypeForWriting() {
+        FiguraRenderType renderType = this.renderType;
+        if (renderType != null && renderType == sharedRenderType) {
+            renderType = renderType.copy();
+            this.renderType = renderType;
+            sharedRenderType = null;
+        }
+        return renderType;
+    }
+
+    // Adding a child to a published part publishes the child's subtree, before the (possibly queued) add happens.
     public void addChild(FiguraModelPart child) throws AvatarOutOfMemoryError {
         if (this.allocState != null) this.allocState.changeSize(AllocationTracker.REFERENCE_SIZE);
-        QueuedSetters.handle(() -> this.children.add(child));
+        if (published) child.publish();
+        QueuedSetters.handle(published, () -> {
+            this.children.add(child);
+            // Its cached world transform was relative to wherever it was before
+            child.transform.setFlags(PartTransform.WORLD_DIRTY);
+        });
     }
 
+    // The removed child stays published, since the main thread may still be holding on to it.
     public void removeChild(FiguraModelPart child) {
-        QueuedSetters.handle(() -> {
+        QueuedSetters.handle(published, () -> {
             this.children.remove(child);
             this.childrenSpeedupCache.remove(child.name);
         });
@@ -234,6 +351,18 @@ public class FiguraModelPart implements RiggedHierarchy<FiguraModelPart> {
         return transform;
     }
 
+    @Override
+    public boolean isPublished() {
+        return published;
+    }
+
+    // Mark this subtree as reachable from the main thread. Descendants of a published part are always published too.
+    private void publish() {
+        if (published) return;
+        published = true;
+        for (FiguraModelPart child : children) child.publish();
+    }
+
     @Override
     public @Nullable FiguraModelPart getChildByName(String name) {
         FiguraModelPart cached = childrenSpeedupCache.get(name);
@@ -0,0 +1,158 @@
+package org.figuramc.figura_core.model.rendering;
+
+import org.figuramc.figura_core.avatars.errors.AvatarOutOfMemoryError;
+import org.figuramc.memory_tracker.AllocationTracker;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reusable direct ByteBuffers for built vertex data and part data.
+ * Direct buffers are slow to allocate, and their native memory is only freed once the GC collects them, so
+ * avatars which rebuild their parts often would otherwise churn through native memory.
+ *
+ * Buffers come in power-of-two size classes. A lease is released explicitly (see RenderData.close()), which puts
+ * its buffer back in the pool, unless the pool is already holding its maximum number of bytes. Buffers too big
+ * for any size class aren't pooled at all.
+ *
+ * While leased, a buffer's capacity is counted against the avatar's allocation tracker.
+ * Thread-safe.
+ */
+public final class DirectBufferPool {
+
+    private static final int MIN_CLASS_SHIFT = 12; // 4 KiB
+    private static final int MAX_CLASS_SHIFT = 26; // 64 MiB
+
+    // Singleton
+    public static final DirectBufferPool INSTANCE = new DirectBufferPool();
+
+    // Free buffers, indexed by size class shift - MIN_CLASS_SHIFT
+    @SuppressWarnings("unchecked")
+    private final ConcurrentLinkedDeque<ByteBuffer>[] free = new ConcurrentLinkedDeque[MAX_CLASS_SHIFT - MIN_CLASS_SHIFT + 1];
+    private final AtomicLong pooledBytes = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong(), misses = new AtomicLong();
+
+    private volatile long maxPooledBytes = 64L * 1024 * 1024;
+
+    private DirectBufferPool() {
+        for (int i = 0; i < free.length; i++) free[i] = new ConcurrentLinkedDeque<>();
+    }
+
+    /**
+     * A buffer on loan from the pool. The buffer is in native order, positioned at 0, with its limit at the
+     * requested size. Its contents are left over from previous use.
+     */
+    public static final class Lease {
+        public final ByteBuffer buffer;
+        private final @Nullable AllocationTracker.State<AvatarOutOfMemoryError> state;
+        private boolean released;
+
+        private Lease(ByteBuffer buffer, @Nullable AllocationTracker.State<AvatarOutOfMemoryError> state) {
+            this.buffer = buffer;
+            this.state = state;
+        }
+    }
+
+    /**
+     * Lease a buffer of at least the given size, counting it against the tracker if given.
+     */
+    public Lease acquire(int size, @Nullable AllocationTracker<AvatarOutOfMemoryError> allocationTracker) throws AvatarOutOfMemoryError {
+        ByteBuffer buffer = take(size);
+        // The buffer outlives the lease, so release() takes its capacity back off the tracker
+        AllocationTracker.State<AvatarOutOfMemoryError> state = null;
+        if (allocationTracker != null) {
+            try {
+                state = allocationTracker.track(buffer, buffer.capacity());
+            } catch (AvatarOutOfMemoryError oom) {
+                give(buffer);
+                throw oom;
+            }
+        }
+        return new Lease(buffer, state);
+    }
+
+    /**
+     * Return a lease's buffer to the pool. The buffer must not be used afterwards. Releasing twice does nothing.
+     */
+    public void release(Lease lease) {
+        synchronized (lease) {
+            if (lease.released) return;
+            lease.released = true;
+        }
+        if (lease.state != null) {
+            try {
+                lease.state.changeSize(-lease.buffer.capacity());
+            } catch (AvatarOutOfMemoryError impossible) {
+                // Shrinking can't run out of memory
+            }
+        }
+        give(lease.buffer);
+    }
+
+    private ByteBuffer take(int size) {
+        int shift = classShift(size);
+        if (shift > MAX_CLASS_SHIFT) {
+            misses.incrementAndGet();
+            return ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+        }
+        ByteBuffer buffer = free[shift - MIN_CLASS_SHIFT].poll();
+        if (buffer != null) {
+            hits.incrementAndGet();
+            pooledBytes.addAndGet(-buffer.capacity());
+        } else {
+            misses.incrementAndGet();
+            buffer = ByteBuffer.allocateDirect(1 << shift).order(ByteOrder.nativeOrder());
+        }
+        return buffer.clear().limit(size);
+    }
+
+    private void give(ByteBuffer buffer) {
+        int capacity = buffer.capacity();
+        // Only buffers we allocated for a size class go back in; oversized ones are left to the GC
+        if (Integer.bitCount(capacity) != 1 || capacity < (1 << MIN_CLASS_SHIFT) || capacity > (1 << MAX_CLASS_SHIFT)) return;
+        if (pooledBytes.addAndGet(capacity) > maxPooledBytes) {
+            pooledBytes.addAndGet(-capacity);
+            return;
+        }
+        free[Integer.numberOfTrailingZeros(capacity) - MIN_CLASS_SHIFT].push(buffer);
+    }
+
+    // The shift of the smallest size class that fits the size
+    private static int classShift(int size) {
+        if (size <= (1 << MIN_CLASS_SHIFT)) return MIN_CLASS_SHIFT;
+        return 32 - Integer.numberOfLeadingZeros(size - 1);
+    }
+
+    // Lowering the maximum doesn't drop buffers already in the pool; call clear() for that.
+    public void setMaxPooledBytes(long maxPooledBytes) {
+        this.maxPooledBytes = maxPooledBytes;
+    }
+
+    // Drop every free buffer, leaving their memory to the GC
+    public void clear() {
+        for (ConcurrentLinkedDeque<ByteBuffer> deque : free) {
+            ByteBuffer buffer;
+            while ((buffer = deque.poll()) != null)
+                pooledBytes.addAndGet(-buffer.capacity());
+        }
+    }
+
+    // Bytes held by free buffers in the pool
+    public long getPooledBytes() {
+        return pooledBytes.get();
+    }
+
+    // Number of acquires served from the pool
+    public long getHits() {
+        return hits.get();
+    }
+
+    // Number of acquires which allocated a new buffer
+    public long getMisses() {
+        return misses.get();
+    }
+
+}
@@ -73,6 +73,11 @@ public class FiguraRenderType {
         assert textureBindings.size() == shader.textureBindingPoints().size();
     }
 
+    // Copy this render type, with its own scissor state
+    public FiguraRenderType copy() {
+        return new FiguraRenderType(priority, shader, textureBindings, scissorState.copy());
+    }
+
     // Helpers to construct certain render types
     public static FiguraRenderType albedo(int priority, TextureBinding albedo) {
         return new FiguraRenderType(
@@ -114,6 +119,11 @@ public class FiguraRenderType {
         public Vector4i get(Vector4i out) {
             return out.set(x, y, w, h);
         }
+        public ScissorState copy() {
+            ScissorState copy = new ScissorState();
+            copy.set(x, y, w, h);
+            return copy;
+        }
         // Quick check if the scissor state is active
         public boolean isActive() {
             return x != -1;
@@ -0,0 +1,150 @@
+package org.figuramc.figura_core.model.rendering;
+
+import org.figuramc.figura_core.avatars.errors.AvatarOutOfMemoryError;
+import org.figuramc.memory_tracker.AllocationTracker;
+import org.jetbrains.annotations.Nullable;
+import org.joml.*;
+
+import java.lang.Math;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The per-part data collected by a tree-walking pass and used for rendering, either in a VBO-based renderer
+ * or a compatible renderer. Parts are packed one after another in a direct, native-order buffer, already in
+ * the layout the GPU expects, so renderers can upload buffer() as-is.
+ *
+ * Each part is GPU_SIZE bytes: position matrix, normal matrix (3x4, for alignment in opengl), color multiplier,
+ * light UV, padding.
+ */
+public final class PartDataBuffer {
+
+    private static final int MAT4_SIZE = 4 * 4 * Float.BYTES;
+    private static final int MAT3_SIZE = 3 * 4 * Float.BYTES; // 3x4 for alignment in opengl
+    private static final int VEC4_SIZE = 4 * Float.BYTES;
+    private static final int VEC2_SIZE = 2 * Float.BYTES;
+
+    private static final int NORMAL_OFFSET = MAT4_SIZE;
+    private static final int COLOR_OFFSET = NORMAL_OFFSET + MAT3_SIZE;
+    private static final int LIGHT_OFFSET = COLOR_OFFSET + VEC4_SIZE;
+
+    // Size of one part's data in bytes (gpu)
+    public static final int GPU_SIZE =
+            // Position mat, normal mat, color, light UV, padding
+            MAT4_SIZE + MAT3_SIZE + VEC4_SIZE + VEC2_SIZE + VEC2_SIZE;
+
+    private final @Nullable AllocationTracker<AvatarOutOfMemoryError> allocationTracker;
+    private volatile DirectBufferPool.Lease lease;
+    private volatile ByteBuffer buffer; // Limit is always count * GPU_SIZE
+    private volatile int count;
+    // Outgrown leases. A render pass may still be writing to them, so they're only released in close().
+    private final List<DirectBufferPool.Lease> retired = new ArrayList<>(0);
+
+    public PartDataBuffer(int count, @Nullable AllocationTracker<AvatarOutOfMemoryError> allocationTracker) throws AvatarOutOfMemoryError {
+        this.allocationTracker = allocationTracker;
+        this.lease = DirectBufferPool.INSTANCE.acquire(Math.max(count, 1) * GPU_SIZE, allocationTracker);
+        this.buffer = lease.buffer;
+        this.count = count;
+        buffer.limit(count * GPU_SIZE);
+        clear(0, count);
+    }
+
+    // Number of parts
+    public int count() {
+        return count;
+    }
+
+    // The packed data of all parts, from 0 to its limit. Only use absolute gets, and don't change its position or limit.
+    // May be replaced by a bigger buffer when parts are added (see ClientPartRenderer.updateLayout()).
+    public ByteBuffer buffer() {
+        return buffer;
+    }
+
+    public void write(int partID, Matrix4fc transform, Matrix3fc normalMat, Vector4fc colorMultiplier, Vector2fc lightValues, boolean visible) {
+        ByteBuffer buffer = this.buffer;
+        int index = partID * GPU_SIZE;
+        if (visible) {
+            transform.get(index, buffer);
+            putNormal(buffer, index + NORMAL_OFFSET, normalMat);
+            colorMultiplier.get(index + COLOR_OFFSET, buffer);
+            lightValues.get(index + LIGHT_OFFSET, buffer);
+        } else {
+            writeInvisible(buffer, index);
+        }
+    }
+
+    /**
+     * Make room for at least the given number of parts, so setCount() can't fail.
+     * The contents are kept.
+     */
+    public synchronized void reserve(int count) throws AvatarOutOfMemoryError {
+        ByteBuffer buffer = this.buffer;
+        if (count * GPU_SIZE <= buffer.capacity()) return;
+        DirectBufferPool.Lease grown = DirectBufferPool.INSTANCE.acquire(count * GPU_SIZE, allocationTracker);
+        grown.buffer.put(0, buffer, 0, this.count * GPU_SIZE).limit(this.count * GPU_SIZE);
+        retired.add(lease);
+        this.lease = grown;
+        this.buffer = grown.buffer;
+    }
+
+    /**
+     * Change the number of parts. Added parts start out invisible.
+     * When growing, reserve() must have been called first.
+     */
+    public synchronized void setCount(int count) {
+        if (count * GPU_SIZE > buffer.capacity()) throw new IllegalStateException("Part data buffer wasn't reserved before growing - this is a bug in RenderData!");
+        int oldCount = this.count;
+        buffer.limit(count * GPU_SIZE);
+        clear(oldCount, count);
+        this.count = count;
+    }
+
+    public long nativeBytes() {
+        return buffer.capacity();
+    }
+
+    // Hand the buffers back to the pool. Nothing may use this afterwards.
+    public synchronized void close() {
+        DirectBufferPool.INSTANCE.release(lease);
+        for (DirectBufferPool.Lease lease : retired)
+            DirectBufferPool.INSTANCE.release(lease);
+        retired.clear();
+    }
+
+    // Pooled buffers hold leftover data, so new parts are made invisible until they're first written
+    private void clear(int from, int to) {
+        ByteBuffer buffer = this.buffer;
+        for (int partID = from; partID < to; partID++) {
+            int index = partID * GPU_SIZE;
+            writeInvisible(buffer, index);
+            for (int i = COLOR_OFFSET; i < GPU_SIZE; i += Float.BYTES)
+                buffer.putFloat(index + i, 0.0f);
+        }
+    }
+
+    // Turn the matrix into the zero-scale matrix
+    private static void writeInvisible(ByteBuffer buffer, int index) {
+        for (int i = 0; i < MAT4_SIZE + MAT3_SIZE; i += Float.BYTES)
+            buffer.putFloat(index + i, 0.0f);
+        buffer.putFloat(index + 15 * Float.BYTES, 1.0f);
+    }
+
+    // Matrix3f.get3x4() is broken in Minecraft's version of joml lmao
+    // So we reimplement it ourselves custom
+    private static void putNormal(ByteBuffer buffer, int index, Matrix3fc matrix) {
+        buffer.putFloat(index, matrix.m00());
+        buffer.putFloat(index + 4, matrix.m01());
+        buffer.putFloat(index + 8, matrix.m02());
+        buffer.putFloat(index + 12, 0.0f);
+        buffer.putFloat(index + 16, matrix.m10());
+        buffer.putFloat(index + 20, matrix.m11());
+        buffer.putFloat(index + 24, matrix.m12());
+        buffer.putFloat(index + 28, 0.0f);
+        buffer.putFloat(index + 32, matrix.m20());
+        buffer.putFloat(index + 36, matrix.m21());
+        buffer.putFloat(index + 40, matrix.m22());
+        buffer.putFloat(index + 44, 0.0f);
+    }
+
+}
@@ -6,7 +6,6 @@ import org.figuramc.figura_core.avatars.errors.AvatarOutOfMemoryError;
 import org.figuramc.figura_core.minecraft_interop.FiguraConnectionPoint;
 import org.figuramc.figura_core.minecraft_interop.render.ClientPartRenderer;
 import org.figuramc.figura_core.minecraft_interop.text.MinecraftGlyphProvider;
-import org.figuramc.figura_core.model.rendering.vertex.FiguraVertexElem;
 import org.figuramc.figura_core.model.rendering.vertex.FiguraVertexFormat;
 import org.figuramc.figura_core.model.rendering.vertex.PartVertexData;
 import org.figuramc.figura_core.text.FormattedText;
@@ -23,7 +22,6 @@ import org.joml.Vector2f;
 import org.joml.Vector4f;
 
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -33,22 +31,71 @@ import java.util.stream.Collectors;
  */
 public class RenderData implements AutoCloseable {
 
-    // Built data, by format, in native-order byte buffers.
+    // Built data, by format, in native-order byte buffers. The data ends at each buffer's limit; the capacity may be larger.
     public final Map<FiguraVertexFormat, ByteBuffer> builtData;
-    // The list of draw calls
-    public final List<DrawCall> drawCalls;
-    // Array holding part info, populated each render pass
-    public final PartDataStruct[] partData;
+    // The list of draw calls. Replaced (never modified) when patched.
+    public volatile List<DrawCall> drawCalls;
+    // Packed part info, written each render pass and uploaded by the client as-is. Grows when patching adds parts.
+    public final PartDataBuffer partData;
 
     // Render state for this, owned by the client
     public final ClientPartRenderer clientPartRenderer;
 
+    // Pooled buffers backing builtData
+    private final List<DirectBufferPool.Lease> leases = new ArrayList<>();
+    private boolean closed;
+
+    // Where each part's vertices are, for patching. Empty if this can't be patched (see patch()).
+    private final IdentityHashMap<Object, Slot> slots = new IdentityHashMap<>();
+    private final @Nullable AllocationTracker<AvatarOutOfMemoryError> allocationTracker;
+    private final int builtDrawCallCount; // Number of draw calls when built, to tell when patching fragmented them
+    private int wastedBytes; // Bytes of removed parts, still taking up space in the buffers
+    // Once patched, part IDs are no longer in depth-first order, so they're looked up here instead; see partId().
+    // Replaced (never modified) when patched, so it can be read without locking.
+    private volatile @Nullable IdentityHashMap<Object, Integer> patchedIds;
+
     // Holds a slice of built vertex data with the given draw call info, starting point, and length
     public record DrawCall(FiguraRenderType.DrawCallInfo drawCallInfo, int start, int length) {}
 
+    // Where one part's vertices are in the buffer for its format
+    private static final class Slot {
+        final int partID;
+        final FiguraRenderType.DrawCallInfo drawCallInfo;
+        final FiguraVertexFormat format;
+        final int start, length;
+        final PartVertexData vertices; // The vertices which were written, to notice when they're swapped out
+        final float[] uvModifiers; // The UV modifiers they were written with, to notice texture changes
+
+        Slot(int partID, FiguraRenderType renderType, int start, PartVertexData vertices) {
+            this.partID = partID;
+            this.drawCallInfo = renderType.drawCallInfo();
+            this.format = drawCallInfo.shader().vertexFormat();
+            this.start = start;
+            this.length = vertices.vertexCount * format.vertexSize;
+            this.vertices = vertices;
+            this.uvModifiers = uvModifiers(renderType);
+        }
+
+        private static float[] uvModifiers(FiguraRenderType renderType) {
+            float[] result = new float[renderType.textureBindings.size() * 4];
+            for (int i = 0; i < renderType.textureBindings.size(); i++) {
+                Vector4f uvModifier = renderType.textureBindings.get(i).uvModifier();
+                result[i * 4] = uvModifier.x;
+                result[i * 4 + 1] = uvModifier.y;
+                result[i * 4 + 2] = uvModifier.z;
+                result[i * 4 + 3] = uvModifier.w;
+            }
+            return result;
+        }
+    }
+
+    // A part with vertices, in the form patch() takes them
+    public record PartEntry(Object part, PartVertexData vertices, FiguraRenderType renderType) {}
+
     // Finalize the builder and merge constructed data
     // If a holder is passed, store it there.
     private RenderData(Builder built, @Nullable RenderDataHolder holder, @Nullable AllocationTracker<AvatarOutOfMemoryError> allocationTracker) throws AvatarOutOfMemoryError {
+        this.allocationTracker = allocationTracker;
 
         // Group draw call infos by priority and shader
         var byPriority = built.buildingBuffers.entrySet().stream().collect(Collectors.groupingBy(e -> e.getKey().priority(), TreeMap::new, Collectors.toList()));
@@ -63,39 +110,54 @@ public class RenderData implements AutoCloseable {
 
         // Create map of built data
         var groupedByFormat = drawCallInfosAndBufferBuilders.stream().collect(Collectors.groupingBy(p -> p.a().shader().vertexFormat()));
-        this.builtData = MapUtils.mapValues(groupedByFormat, pair -> {
-            int size = pair.stream().map(Pair::b).mapToInt(ByteBufferBuilder::size).sum();
-            // TODO: Reuse buffers? This could get laggy if we're constructing too many
-            //       Would also affect allocation tracker
-            ByteBuffer buffer = ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
-            if (allocationTracker != null) allocationTracker.track(buffer, size);
-            return buffer;
-        });
-
-        // Initialize buffers and draw calls
-        this.drawCalls = ListUtils.map(drawCallInfosAndBufferBuilders, pair -> {
-            // Extract pair
-            FiguraRenderType.DrawCallInfo drawCallInfo = pair.a();
-            ByteBufferBuilder bufferBuilder = pair.b();
-            // Get buffer and add data
-            ByteBuffer buf = builtData.get(drawCallInfo.shader().vertexFormat());
-            int pos = buf.position();
-            bufferBuilder.writeTo(buf);
-            return new DrawCall(drawCallInfo, pos, bufferBuilder.size());
-        });
-
-        // Create part infos array
-        partData = new PartDataStruct[built.currentPartID];
-        for (int i = 0; i < partData.length; i++)
-            partData[i] = new PartDataStruct();
-        if (allocationTracker != null)
-            allocationTracker.track(partData, AllocationTracker.OBJECT_SIZE + partData.length * (AllocationTracker.REFERENCE_SIZE + PartDataStruct.CPU_SIZE));
-
-        // Set up client state
-        clientPartRenderer = FiguraConnectionPoint.PART_RENDERER_FACTORY.apply(this, allocationTracker);
-
-        // Save this instance in the holder, if one was given
-        if (holder != null) holder.register(this);
+        // Buffers come from the pool, and go back to it on close(), or right away if construction fails
+        PartDataBuffer createdPartData = null;
+        ClientPartRenderer createdRenderer = null;
+        try {
+            this.builtData = MapUtils.mapValues(groupedByFormat, pair -> {
+                int size = pair.stream().map(Pair::b).mapToInt(ByteBufferBuilder::size).sum();
+                DirectBufferPool.Lease lease = DirectBufferPool.INSTANCE.acquire(size, allocationTracker);
+                leases.add(lease);
+                return lease.buffer;
+            });
+
+            // Initialize buffers and draw calls
+            this.drawCalls = ListUtils.map(drawCallInfosAndBufferBuilders, pair -> {
+                // Extract pair
+                FiguraRenderType.DrawCallInfo drawCallInfo = pair.a();
+                ByteBufferBuilder bufferBuilder = pair.b();
+                // Get buffer and add data
+                ByteBuffer buf = builtData.get(drawCallInfo.shader().vertexFormat());
+                int pos = buf.position();
+                bufferBuilder.writeTo(buf);
+                return new DrawCall(drawCallInfo, pos, bufferBuilder.size());
+            });
+            this.builtDrawCallCount = drawCalls.size();
+
+            // Find where each part ended up. Only data owned by an avatar can be patched; shared data isn't tracked,
+            // so it doesn't keep the parts it was built from alive.
+            if (holder != null) {
+                HashMap<FiguraRenderType.DrawCallInfo, Integer> drawCallStarts = new HashMap<>();
+                for (DrawCall drawCall : drawCalls) drawCallStarts.put(drawCall.drawCallInfo(), drawCall.start());
+                for (Builder.PendingSlot pending : built.pendingSlots)
+                    slots.put(pending.part(), new Slot(pending.partID(), pending.renderType(), drawCallStarts.get(pending.renderType().drawCallInfo()) + pending.offset(), pending.vertices()));
+            }
+
+            // Create part infos buffer
+            partData = createdPartData = new PartDataBuffer(built.currentPartID, allocationTracker);
+
+            // Set up client state
+            clientPartRenderer = createdRenderer = FiguraConnectionPoint.PART_RENDERER_FACTORY.apply(this, allocationTracker);
+
+            // Save this instance in the holder, if one was given
+            if (holder != null) holder.register(this);
+        } catch (Throwable t) {
+            // Nothing else will close this, so hand back what was acquired
+            if (createdRenderer != null) createdRenderer.close();
+            if (createdPartData != null) createdPartData.close();
+            releaseLeases();
+            throw t;
+        }
     }
 
     // Constructed through builder pattern
@@ -104,6 +166,9 @@ public class RenderData implements AutoCloseable {
 
         private int currentPartID; // ID of the current part
         private Map<FiguraRenderType.DrawCallInfo, ByteBufferBuilder> buildingBuffers = new HashMap<>();
+        // Where each part was written, relative to the start of its draw call
+        private record PendingSlot(Object part, int partID, FiguraRenderType renderType, int offset, PartVertexData vertices) {}
+        private final List<PendingSlot> pendingSlots = new ArrayList<>();
 
         /**
          * If this builder has no parts in it, then we just return null here.
@@ -115,98 +180,19 @@ public class RenderData implements AutoCloseable {
         }
 
         /**
-         * Add the given vertex data into this builder, with the given render type
+         * Add the given part's vertex data into this builder, with the given render type.
+         * The part is only used as a key, to find its vertices again when patching.
          */
-        public void addModelPart(PartVertexData vertexData, FiguraRenderType renderType) throws AvatarError {
+        public void addModelPart(Object part, PartVertexData vertexData, FiguraRenderType renderType) throws AvatarError {
             // Get the byte buffer builder
             ByteBufferBuilder buffer = buildingBuffers.computeIfAbsent(renderType.drawCallInfo(), x -> new ByteBufferBuilder());
             // Fetch unique ID and increment
             final int partID = currentPartID++;
-            // Local vars avoiding field fetches (probably doesn't matter)
-            final var vertexCount = vertexData.vertexCount;
-            final var positions = vertexData.positions;
-            final var riggingWeights = vertexData.riggingWeights;
-            final var riggingOffsets = vertexData.riggingOffsets;
-            final var uvs = vertexData.uvs;
-            final var normals = vertexData.normals;
-            final var tangents = vertexData.tangents;
             final var vertexFormat = renderType.drawCallInfo().shader().vertexFormat();
-            final var elements = vertexFormat.elements;
-            final var offsets = vertexFormat.offsets;
-            final var textureBindings = renderType.textureBindings;
-            // Iterate vertices:
-            for (int i = 0; i < vertexCount; i++) {
-                int start = buffer.size();
-                // Iterate vertex elements
-                for (int j = 0; j < elements.length; j++) {
-                    // Align by padding with 0s:
-                    while (buffer.size() < start + offsets[j])
-                        buffer.push((byte) 0);
-                    // Insert data
-                    FiguraVertexElem elem = elements[j];
-                    switch (elem.id) {
-                        case POSITION -> {
-                            int k = i * 3;
-                            buffer.pushFloat(positions[k]);
-                            buffer.pushFloat(positions[k + 1]);
-                            buffer.pushFloat(positions[k + 2]);
-                        }
-                        case RIGGING_WEIGHTS -> {
-                            int k = i * 4;
-                            buffer.push(riggingWeights[k]);
-                            buffer.push(riggingWeights[k + 1]);
-                            buffer.push(riggingWeights[k + 2]);
-                            buffer.push(riggingWeights[k + 3]);
-                        }
-                        case RIGGING_INDICES -> {
-                            if (partID > 0xFF00) throw new AvatarError(TOO_MANY_GROUPS, TranslatableItems.Items0.INSTANCE);
-                            int k = i * 4;
-                            buffer.pushUnsignedShort((char) (partID + Byte.toUnsignedInt(riggingOffsets[k])));
-                            buffer.pushUnsignedShort((char) (partID + Byte.toUnsignedInt(riggingOffsets[k + 1])));
-                            buffer.pushUnsignedShort((char) (partID + Byte.toUnsignedInt(riggingOffsets[k + 2])));
-                            buffer.pushUnsignedShort((char) (partID + Byte.toUnsignedInt(riggingOffsets[k + 3])));
-                        }
-                        case UV0, UV1, UV2, UV3 -> {
-                            int k = i * 2;
-                            float u = uvs[k];
-                            float v = uvs[k + 1];
-                            int uvIndex = elem.id.ordinal() - FiguraVertexElem.ID.UV0.ordinal(); // Offset from UV0
-                            Vector4f uvModifier = textureBindings.get(uvIndex).uvModifier();
-                            u = u * uvModifier.z + uvModifier.x;
-                            v = v * uvModifier.w + uvModifier.y;
-                            buffer.pushFloat(u).pushFloat(v);
-                        }
-                        case NORMAL -> {
-                            int k = i * 3;
-                            buffer.push(normals[k]);
-                            buffer.push(normals[k + 1]);
-                            buffer.push(normals[k + 2]);
-                        }
-                        case TANGENT -> {
-                            int k = i * 3;
-                            buffer.push(tangents[k]);
-                            buffer.push(tangents[k + 1]);
-                            buffer.push(tangents[k + 2]);
-                        }
-                        // Vertex color is just always 255 for regular model parts, it's unused in most shaders
-                        case COLOR -> buffer.push((byte) -1).push((byte) -1).push((byte) -1).push((byte) -1);
-                        case OTHER -> {
-                            // Custom data
-                            byte @Nullable [] data = vertexData.dataByElement.get(elem);
-                            if (data == null) {
-                                // Zeroes by default.
-                                for (int k = 0; k < elem.type.size; k++)
-                                    buffer.push((byte) 0);
-                            } else {
-                                buffer.pushArr(data, i * elem.type.size, elem.type.size);
-                            }
-                        }
-                    }
-                }
-                // Align whole vertex by padding with zeros
-                while (buffer.size() < start + vertexFormat.vertexSize)
-                    buffer.push((byte) 0);
-            }
+            // Every format has rigging indices, which must fit in an unsigned short
+            if (vertexData.vertexCount > 0 && partID > 0xFF00) throw new AvatarError(TOO_MANY_GROUPS, TranslatableItems.Items0.INSTANCE);
+            pendingSlots.add(new PendingSlot(part, partID, renderType, buffer.size(), vertexData));
+            vertexFormat.writer().write(buffer, vertexData, partID, renderType.textureBindings);
         }
 
         // (Not done, temporarily removed ahead of commit)
@@ -283,11 +269,204 @@ public class RenderData implements AutoCloseable {
         private static final Translatable<TranslatableItems.Items0> TOO_MANY_GROUPS = Translatable.create("figura_core.error.rendering.too_many_groups");
     }
 
+    // -------- PATCHING -------- //
+
+    /**
+     * Bring this up to date with the given parts (everything that would go in a rebuild, in depth-first order),
+     * rewriting only the parts which changed, instead of rebuilding everything:
+     * - A part whose vertices or UV modifiers changed, but still has the same vertex count and draw call, is
+     *   rewritten in place.
+     * - A removed part is cut out of its draw call. Its bytes stay in the buffer, unused, until the next rebuild.
+     * - An added part is appended to the spare capacity of its format's buffer, and gets a draw call of its own,
+     *   or extends one if it's right after it. Parts which moved to another draw call are removed and re-added.
+     *
+     * Returns false, changing nothing, if it can't be patched. The caller should rebuild from scratch instead.
+     * That's the case when the client renderer doesn't support patching, when there's no room for the added parts,
+     * when parts rigged to other parts would have to move or be reordered (rigging offsets are relative to the
+     * depth-first order), or when there's so much unused space or so many draw calls that it's time to compact with
+     * a rebuild anyway.
+     */
+    public synchronized boolean patch(List<PartEntry> parts) throws AvatarOutOfMemoryError {
+        if (closed || slots.isEmpty() || !clientPartRenderer.supportsPatching()) return false;
+
+        // Work out what changed
+        List<PartEntry> rewrites = new ArrayList<>(), additions = new ArrayList<>();
+        List<Slot> removals = new ArrayList<>();
+        Set<Object> present = Collections.newSetFromMap(new IdentityHashMap<>());
+        // Whether a kept part's depth-first index no longer matches the ID its vertices are rigged to, like when
+        // parts are reordered or re-parented. Its transform has to be looked up by part from then on.
+        boolean moved = false;
+        for (int i = 0; i < parts.size(); i++) {
+            PartEntry entry = parts.get(i);
+            present.add(entry.part());
+            Slot slot = slots.get(entry.part());
+            if (slot != null && slot.partID != i) moved = true;
+            FiguraRenderType.DrawCallInfo drawCallInfo = entry.renderType().drawCallInfo();
+            int length = entry.vertices().vertexCount * drawCallInfo.shader().vertexFormat().vertexSize;
+            if (slot != null && slot.drawCallInfo.equals(drawCallInfo) && slot.length == length) {
+                if (slot.vertices != entry.vertices() || !Arrays.equals(slot.uvModifiers, Slot.uvModifiers(entry.renderType())))
+                    rewrites.add(entry);
+            } else {
+                if (slot != null) removals.add(slot);
+                if (length > 0) additions.add(entry);
+            }
+        }
+        for (var e : slots.entrySet())
+            if (!present.contains(e.getKey())) removals.add(e.getValue());
+        if (rewrites.isEmpty() && removals.isEmpty() && additions.isEmpty() && !moved) return true;
+
+        // Check that it's possible, and still worth it
+        if (moved || !removals.isEmpty() || !additions.isEmpty()) {
+            for (Slot slot : slots.values())
+                if (!isSelfRigged(slot.vertices)) return false;
+            for (PartEntry entry : additions)
+                if (!isSelfRigged(entry.vertices())) return false;
+        }
+        HashMap<FiguraVertexFormat, Integer> needed = new HashMap<>();
+        for (PartEntry entry : additions) {
+            FiguraVertexFormat format = entry.renderType().drawCallInfo().shader().vertexFormat();
+            needed.merge(format, entry.vertices().vertexCount * format.vertexSize, Integer::sum);
+        }
+        for (var e : needed.entrySet()) {
+            ByteBuffer buffer = builtData.get(e.getKey());
+            if (buffer == null || buffer.capacity() - buffer.limit() < e.getValue()) return false;
+        }
+        if (partData.count() + additions.size() > 0xFF00) return false;
+        int wasted = wastedBytes;
+        for (Slot slot : removals) wasted += slot.length;
+        long total = 0;
+        for (ByteBuffer buffer : builtData.values()) total += buffer.limit();
+        if (wasted > total / 2) return false;
+        // Each removal splits at most one draw call in two, and each addition adds at most one
+        if (drawCalls.size() + removals.size() + additions.size() > builtDrawCallCount * 2 + 8) return false;
+
+        // Apply the changes, once the only thing left that can fail is done
+        if (!additions.isEmpty()) partData.reserve(partData.count() + additions.size());
+        ByteBufferBuilder scratch = new ByteBufferBuilder(0);
+        for (PartEntry entry : rewrites) {
+            Slot slot = slots.get(entry.part());
+            Slot rewritten = new Slot(slot.partID, entry.renderType(), slot.start, entry.vertices());
+            writeSlot(scratch, rewritten, entry);
+            slots.put(entry.part(), rewritten);
+            clientPartRenderer.updateRange(slot.format, slot.start, slot.length);
+        }
+        if (removals.isEmpty() && additions.isEmpty()) {
+            if (moved) publishIds();
+            return true;
+        }
+
+        ArrayList<DrawCall> newDrawCalls = new ArrayList<>(drawCalls);
+        for (Slot slot : removals) {
+            cutOut(newDrawCalls, slot);
+            wastedBytes += slot.length;
+        }
+        slots.values().removeAll(removals);
+        int partID = partData.count();
+        for (PartEntry entry : additions) {
+            FiguraVertexFormat format = entry.renderType().drawCallInfo().shader().vertexFormat();
+            ByteBuffer buffer = builtData.get(format);
+            Slot slot = new Slot(partID++, entry.renderType(), buffer.limit(), entry.vertices());
+            buffer.limit(slot.start + slot.length).position(buffer.limit());
+            writeSlot(scratch, slot, entry);
+            slots.put(entry.part(), slot);
+            insert(newDrawCalls, slot);
+            clientPartRenderer.updateRange(format, slot.start, slot.length);
+        }
+        partData.setCount(partID);
+        drawCalls = List.copyOf(newDrawCalls);
+        publishIds();
+        clientPartRenderer.updateLayout();
+        return true;
+    }
+
+    // From now on, look up each part's ID by part instead of by depth-first index (see partId())
+    private void publishIds() {
+        IdentityHashMap<Object, Integer> ids = new IdentityHashMap<>(slots.size());
+        for (var e : slots.entrySet()) ids.put(e.getKey(), e.getValue().partID);
+        patchedIds = ids;
+    }
+
+    /**
+     * The index in partData of the part's transform, or -1 if the part isn't in this data.
+     * Until patched, parts are numbered in depth-first order, and the given index is returned unchanged, so data
+     * shared between avatars with identical trees works.
+     */
+    public int partId(Object part, int depthFirstIndex) {
+        IdentityHashMap<Object, Integer> ids = patchedIds;
+        if (ids == null) return depthFirstIndex;
+        Integer id = ids.get(part);
+        return id == null ? -1 : id;
+    }
+
+    // Write the part's vertices over its slot
+    private void writeSlot(ByteBufferBuilder scratch, Slot slot, PartEntry entry) {
+        scratch.clear();
+        slot.format.writer().write(scratch, entry.vertices(), slot.partID, entry.renderType().textureBindings);
+        scratch.writeTo(builtData.get(slot.format), slot.start);
+    }
+
+    // Remove the slot's range from the draw call containing it, splitting it if needed
+    private static void cutOut(List<DrawCall> drawCalls, Slot slot) {
+        for (int i = 0; i < drawCalls.size(); i++) {
+            DrawCall drawCall = drawCalls.get(i);
+            int end = drawCall.start() + drawCall.length();
+            if (!drawCall.drawCallInfo().equals(slot.drawCallInfo) || slot.start < drawCall.start() || slot.start + slot.length > end) continue;
+            drawCalls.remove(i);
+            int afterStart = slot.start + slot.length;
+            if (afterStart < end) drawCalls.add(i, new DrawCall(drawCall.drawCallInfo(), afterStart, end - afterStart));
+            if (slot.start > drawCall.start()) drawCalls.add(i, new DrawCall(drawCall.drawCallInfo(), drawCall.start(), slot.start - drawCall.start()));
+            return;
+        }
+    }
+
+    // Add a draw call for the slot, next to the others with the same info, or in priority order
+    private static void insert(List<DrawCall> drawCalls, Slot slot) {
+        int lastSame = -1, firstAfter = drawCalls.size();
+        for (int i = 0; i < drawCalls.size(); i++) {
+            FiguraRenderType.DrawCallInfo info = drawCalls.get(i).drawCallInfo();
+            if (info.equals(slot.drawCallInfo)) lastSame = i;
+            else if (info.priority() > slot.drawCallInfo.priority() && firstAfter == drawCalls.size()) firstAfter = i;
+        }
+        if (lastSame != -1) {
+            DrawCall last = drawCalls.get(lastSame);
+            if (last.start() + last.length() == slot.start) drawCalls.set(lastSame, new DrawCall(last.drawCallInfo(), last.start(), last.length() + slot.length));
+            else drawCalls.add(lastSame + 1, new DrawCall(slot.drawCallInfo, slot.start, slot.length));
+        } else {
+            drawCalls.add(firstAfter, new DrawCall(slot.drawCallInfo, slot.start, slot.length));
+        }
+    }
+
+    // Whether the vertices are only rigged to their own part (offset 0), or not at all (the 255 sentinel)
+    private static boolean isSelfRigged(PartVertexData vertices) {
+        for (byte offset : vertices.riggingOffsets)
+            if (offset != 0 && offset != (byte) 0xFF) return false;
+        return true;
+    }
+
+    // Size in bytes of the built vertex buffers, which the client renderer uploads a copy of
+    public long nativeBytes() {
+        long bytes = 0;
+        for (ByteBuffer buffer : builtData.values())
+            bytes += buffer.capacity();
+        return bytes + partData.nativeBytes();
+    }
+
     @Override
     public synchronized void close() {
+        if (closed) return;
+        closed = true;
         // Close the client state!
         if (this.clientPartRenderer != null) {
             this.clientPartRenderer.close();
         }
+        // Then hand the buffers back, now that nothing reads them
+        releaseLeases();
+        partData.close();
+    }
+
+    private void releaseLeases() {
+        for (DirectBufferPool.Lease lease : leases)
+            DirectBufferPool.INSTANCE.release(lease);
+        leases.clear();
     }
 }
@@ -18,6 +18,7 @@ public class FiguraVertexFormat {
     public final FiguraVertexElem[] elements;
     public final int[] offsets;
     public final int vertexSize;
+    private final VertexWriter writer;
 
     // Safer creation. Always includes position, can optionally include uv/normal/custom elements.
     // Can also optionally include per-vertex color, but this is only used by text parts.
@@ -74,6 +75,12 @@ public class FiguraVertexFormat {
         }
         while (size % 4 != 0) size++; // Pad entire struct to 4
         this.vertexSize = size;
+        this.writer = new VertexWriter(this);
+    }
+
+    // Writer for vertices in this format
+    public VertexWriter writer() {
+        return writer;
     }
 
     // Equality and hashcodes
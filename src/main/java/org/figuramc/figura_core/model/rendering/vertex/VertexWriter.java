@@ -0,0 +1,99 @@
+package org.figuramc.figura_core.model.rendering.vertex;
+
+import org.figuramc.figura_core.model.rendering.FiguraRenderType;
+import org.figuramc.figura_core.util.data_structures.ByteBufferBuilder;
+import org.joml.Vector4f;
+
+import java.util.List;
+
+/**
+ * Writes a part's vertices into a buffer in a particular FiguraVertexFormat.
+ * The layout is worked out once per format: the space for all the vertices is reserved (already zeroed, so padding
+ * needs no work), then each element is written for every vertex in a tight loop, with whole floats and shorts stored
+ * at once instead of byte by byte.
+ *
+ * Get the writer for a format with FiguraVertexFormat.writer().
+ */
+public final class VertexWriter {
+
+    private final FiguraVertexElem[] elements;
+    private final int[] offsets;
+    private final int stride;
+
+    VertexWriter(FiguraVertexFormat format) {
+        this.elements = format.elements;
+        this.offsets = format.offsets;
+        this.stride = format.vertexSize;
+    }
+
+    /**
+     * Append the vertices to the buffer. Rigging indices are offset by the part ID.
+     * The caller is responsible for checking that the part ID fits.
+     */
+    public void write(ByteBufferBuilder buffer, PartVertexData vertexData, int partID, List<FiguraRenderType.TextureBinding> textureBindings) {
+        final int vertexCount = vertexData.vertexCount;
+        if (vertexCount == 0) return;
+        final int base = buffer.reserve(vertexCount * stride);
+        final int stride = this.stride;
+        for (int j = 0; j < elements.length; j++) {
+            FiguraVertexElem elem = elements[j];
+            int pos = base + offsets[j];
+            switch (elem.id) {
+                case POSITION -> {
+                    float[] positions = vertexData.positions;
+                    for (int i = 0, k = 0; i < vertexCount; i++, k += 3, pos += stride) {
+                        buffer.putFloat(pos, positions[k]);
+                        buffer.putFloat(pos + 4, positions[k + 1]);
+                        buffer.putFloat(pos + 8, positions[k + 2]);
+                    }
+                }
+                case RIGGING_WEIGHTS -> copyBytes(buffer, vertexData.riggingWeights, 4, vertexCount, pos, stride);
+                case RIGGING_INDICES -> {
+                    byte[] riggingOffsets = vertexData.riggingOffsets;
+                    for (int i = 0, k = 0; i < vertexCount; i++, k += 4, pos += stride) {
+                        buffer.putUnsignedShort(pos, (char) (partID + Byte.toUnsignedInt(riggingOffsets[k])));
+                        buffer.putUnsignedShort(pos + 2, (char) (partID + Byte.toUnsignedInt(riggingOffsets[k + 1])));
+                        buffer.putUnsignedShort(pos + 4, (char) (partID + Byte.toUnsignedInt(riggingOffsets[k + 2])));
+                        buffer.putUnsignedShort(pos + 6, (char) (partID + Byte.toUnsignedInt(riggingOffsets[k + 3])));
+                    }
+                }
+                case UV0, UV1, UV2, UV3 -> {
+                    float[] uvs = vertexData.uvs;
+                    int uvIndex = elem.id.ordinal() - FiguraVertexElem.ID.UV0.ordinal(); // Offset from UV0
+                    Vector4f uvModifier = textureBindings.get(uvIndex).uvModifier();
+                    float scaleU = uvModifier.z, scaleV = uvModifier.w, offsetU = uvModifier.x, offsetV = uvModifier.y;
+                    for (int i = 0, k = 0; i < vertexCount; i++, k += 2, pos += stride) {
+                        buffer.putFloat(pos, uvs[k] * scaleU + offsetU);
+                        buffer.putFloat(pos + 4, uvs[k + 1] * scaleV + offsetV);
+                    }
+                }
+                case NORMAL -> copyBytes(buffer, vertexData.normals, 3, vertexCount, pos, stride);
+                case TANGENT -> copyBytes(buffer, vertexData.tangents, 3, vertexCount, pos, stride);
+                // Vertex color is just always 255 for regular model parts, it's unused in most shaders
+                case COLOR -> {
+                    for (int i = 0; i < vertexCount; i++, pos += stride)
+                        buffer.putInt(pos, -1);
+                }
+                case OTHER -> {
+                    // Custom data; zeroes by default, which the reserved space already is
+                    byte[] data = vertexData.dataByElement.get(elem);
+                    if (data != null) copyBytes(buffer, data, elem.type.size, vertexCount, pos, stride);
+                }
+            }
+        }
+    }
+
+    // Copy densely packed per-vertex bytes into the strided layout.
+    // Elements are only a few bytes, so unless the layout is dense too, a plain loop beats an arraycopy per vertex.
+    private static void copyBytes(ByteBufferBuilder buffer, byte[] src, int size, int vertexCount, int pos, int stride) {
+        if (size == stride) {
+            buffer.putArr(pos, src, 0, vertexCount * size);
+            return;
+        }
+        for (int i = 0, k = 0; i < vertexCount; i++, k += size, pos += stride) {
+            for (int b = 0; b < size; b++)
+                buffer.put(pos + b, src[k + b]);
+        }
+    }
+
+}
@@ -8,6 +8,7 @@ import org.figuramc.figura_core.minecraft_interop.texture.OwnedMinecraftTexture;
 import org.figuramc.figura_core.util.ListUtils;
 import org.figuramc.figura_core.util.MathUtils;
 import org.figuramc.figura_core.util.PngSize;
+import org.figuramc.figura_core.util.jfr.FiguraEvents;
 import org.figuramc.figura_translations.TranslatableItems;
 import org.figuramc.memory_tracker.AllocationTracker;
 import org.jetbrains.annotations.Nullable;
@@ -80,6 +81,8 @@ public class FiguraTextureAtlas extends StandaloneAvatarTexture {
          */
         public @Nullable FiguraTextureAtlas build(@Nullable AllocationTracker<AvatarOutOfMemoryError> allocationTracker) throws AvatarInitError, AvatarOutOfMemoryError {
             if (rectangles.isEmpty()) return null;
+            FiguraEvents.TextureAtlasBuild event = new FiguraEvents.TextureAtlasBuild();
+            event.begin();
 
             // Guess a width as sqrt(sum(rectangle areas))
             int totalArea = 0;
@@ -130,7 +133,14 @@ public class FiguraTextureAtlas extends StandaloneAvatarTexture {
                 }
             }
 
-            return FiguraTextureAtlas.create(totalWidth, totalHeight, rectangles, allocationTracker);
+            FiguraTextureAtlas atlas = FiguraTextureAtlas.create(totalWidth, totalHeight, rectangles, allocationTracker);
+            if (event.shouldCommit()) {
+                event.textures = rectangles.size();
+                event.width = totalWidth;
+                event.height = totalHeight;
+                event.commit();
+            }
+            return atlas;
         }
 
     }
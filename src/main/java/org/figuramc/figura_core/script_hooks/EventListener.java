@@ -1,14 +1,20 @@
 package org.figuramc.figura_core.script_hooks;
 
+import org.figuramc.figura_core.avatars.AllocationLedger;
 import org.figuramc.figura_core.avatars.Avatar;
 import org.figuramc.figura_core.avatars.errors.AvatarError;
+import org.figuramc.figura_core.manage.AvatarTickScheduler;
 import org.figuramc.figura_core.manage.AvatarView;
 import org.figuramc.figura_core.script_hooks.callback.CallbackType;
 import org.figuramc.figura_core.script_hooks.callback.ScriptCallback;
 import org.figuramc.figura_core.script_hooks.callback.items.CallbackItem;
+import org.figuramc.figura_core.script_hooks.replay.SessionRecorder;
+import org.figuramc.figura_core.script_hooks.replay.SessionRecording;
 import org.figuramc.figura_core.util.data_structures.Mutable;
 import org.figuramc.figura_core.util.data_structures.Pair;
 import org.figuramc.figura_core.util.functional.*;
+import org.figuramc.figura_core.util.metrics.FiguraMetrics;
+import org.figuramc.memory_tracker.AllocationTracker;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
@@ -33,8 +39,11 @@ public class EventListener<Args extends CallbackItem, Ret extends CallbackItem>
 
     public final Avatar<?> owningAvatar; // No need for a View since this is only used for reference comparisons
     public final CallbackType.Func<Args, Ret> funcType; // Type for callbacks
+    public final @Nullable Event<Args, Ret> event; // The built-in event this listens to, or null for script-created listeners
     private final ArrayList<Pair<ScriptCallback<Args, Ret>, CallbackHandle>> callbacks = new ArrayList<>(); // TODO: Track this with allocation tracker
     private final ArrayDeque<QueuedInvocation<Args>> queuedInvocations = new ArrayDeque<>(); // TODO: Track this with allocation tracker, and add a max capacity to prevent OOM attacks
+    // Rough size of a queued invocation, for the owning avatar's allocation ledger. Doesn't include the args themselves.
+    private static final int QUEUED_INVOCATION_SIZE = AllocationTracker.OBJECT_SIZE * 2 + AllocationTracker.REFERENCE_SIZE * 3;
 
     private final Set<CallbackHandle> queuedCallbackRemoval = new HashSet<>(); // Callbacks marked for removal
     private int nesting; // Amount of nesting
@@ -45,6 +54,14 @@ public class EventListener<Args extends CallbackItem, Ret extends CallbackItem>
     public EventListener(Avatar<?> owningAvatar, CallbackType.Func<Args, Ret> funcType) {
         this.owningAvatar = owningAvatar;
         this.funcType = funcType;
+        this.event = null;
+    }
+
+    // Built-in listener for the given event
+    public EventListener(Avatar<?> owningAvatar, Event<Args, Ret> event) {
+        this.owningAvatar = owningAvatar;
+        this.funcType = event.type;
+        this.event = event;
     }
 
     // -------- ADDING/REMOVING FUNCTIONS (Owning avatar only) -------- //
@@ -105,8 +122,9 @@ public class EventListener<Args extends CallbackItem, Ret extends CallbackItem>
 
     // Invoke the event listener with the given args, ignoring returns.
     public void invoke(Args args) throws AvatarError {
+        Args recorded = record(SessionRecording.Kind.INVOKE, args);
         invokeImpl(callback -> {
-            callback.call(args);
+            callback.call(recorded);
             return false;
         });
     }
@@ -114,14 +132,16 @@ public class EventListener<Args extends CallbackItem, Ret extends CallbackItem>
     // Invoke the event listener, canceling if a result passes the predicate
     // Returns true if any function canceled, or false if none canceled
     public <E1 extends Throwable, E2 extends Throwable> boolean invokeCanceling(Args args, BiThrowingFunction<Ret, Boolean, E1, E2> shouldCancel) throws AvatarError, E1, E2 {
-        return this.<E1, E2, AvatarError>invokeImpl(callback -> shouldCancel.apply(callback.call(args)));
+        Args recorded = record(SessionRecording.Kind.CANCELING, args);
+        return this.<E1, E2, AvatarError>invokeImpl(callback -> shouldCancel.apply(callback.call(recorded)));
     }
 
     // Invoke the event listener with the given args, returning a list of results.
     public List<Ret> invokeToList(Args args) throws AvatarError {
+        Args recorded = record(SessionRecording.Kind.TO_LIST, args);
         List<Ret> res = new ArrayList<>();
         invokeImpl(callback -> {
-            res.add(callback.call(args));
+            res.add(callback.call(recorded));
             return false;
         });
         return res;
@@ -129,7 +149,7 @@ public class EventListener<Args extends CallbackItem, Ret extends CallbackItem>
 
     // Invoke the event listener in a chained manner: initialArg (-> event -> chainer)* -> return
     public <E1 extends Throwable, E2 extends Throwable> Args invokeChained(Args initialArg, BiThrowingFunction<Ret, Args, E1, E2> chainer) throws AvatarError, E1, E2 {
-        Mutable<Args> cur = new Mutable<>(initialArg);
+        Mutable<Args> cur = new Mutable<>(record(SessionRecording.Kind.CHAINED, initialArg));
         this.<E1, E2, AvatarError>invokeImpl(callback -> {
             cur.value = chainer.apply(callback.call(cur.value));
             return false;
@@ -137,21 +157,57 @@ public class EventListener<Args extends CallbackItem, Ret extends CallbackItem>
         return cur.value;
     }
 
+    // If a SessionRecorder is attached to the owning avatar, record the dispatch and return the args to call with instead
+    @SuppressWarnings("unchecked")
+    private Args record(SessionRecording.Kind kind, Args args) {
+        SessionRecorder recorder = owningAvatar.sessionRecorder;
+        if (recorder == null || event == null) return args;
+        return (Args) recorder.recordEvent(event, kind, args);
+    }
+
     // -------- QUEUEING -------- //
 
+    // The queue can be touched by several threads at once when avatars tick in parallel,
+    // so all access to it is synchronized on the queue itself.
+
     // Queue an invocation from another avatar
     public void queueInvocation(Args args, AvatarView<?> caller) {
-        queuedInvocations.push(new QueuedInvocation<>(args, caller));
+        // If the caller is ticking in parallel, stage the invocation so it's delivered in a deterministic order
+        List<AvatarTickScheduler.StagedInvocation<?>> outbox = AvatarTickScheduler.currentOutbox();
+        if (outbox != null) outbox.add(new AvatarTickScheduler.StagedInvocation<>(this, args, caller));
+        else enqueueInvocation(args, caller);
+    }
+
+    // Actually add the invocation to the queue, bypassing any staging
+    public void enqueueInvocation(Args args, AvatarView<?> caller) {
+        synchronized (queuedInvocations) {
+            queuedInvocations.offer(new QueuedInvocation<>(args, caller));
+        }
+        owningAvatar.allocationLedger.add(AllocationLedger.Source.EVENT_QUEUE, QUEUED_INVOCATION_SIZE);
+        FiguraMetrics.EVENTS_QUEUED.increment();
+    }
+
+    public int queueSize() {
+        synchronized (queuedInvocations) {
+            return queuedInvocations.size();
+        }
     }
 
     // Check if there are any queued invocations
     public boolean isQueueEmpty() {
-        return queuedInvocations.isEmpty();
+        synchronized (queuedInvocations) {
+            return queuedInvocations.isEmpty();
+        }
     }
 
     // Poll an invocation from another avatar, or null if none are queued
     public @Nullable QueuedInvocation<Args> pollInvocation() {
-        return queuedInvocations.poll();
+        QueuedInvocation<Args> invocation;
+        synchronized (queuedInvocations) {
+            invocation = queuedInvocations.poll();
+        }
+        if (invocation != null) owningAvatar.allocationLedger.add(AllocationLedger.Source.EVENT_QUEUE, -QUEUED_INVOCATION_SIZE);
+        return invocation;
     }
 
 
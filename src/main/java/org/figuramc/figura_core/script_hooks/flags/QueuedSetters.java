@@ -6,6 +6,8 @@ import java.util.ArrayList;
  * Implementation of Queued Setters in script for thread safety stuff.
  * While the flag is enabled, certain setters which are relevant to rendering will be queued up instead of immediately executed.
  * The queue can be flushed at a later time by client code.
+ * Until then, reading a queued value back gives the old one. Setters on things the main thread can't see yet
+ * (like parts the script just created) aren't queued, see handle(boolean, Runnable).
  */
 public class QueuedSetters {
 
@@ -31,6 +33,14 @@ public class QueuedSetters {
         else task.run();
     }
 
+    // Like handle(), but only queues the task if the main thread may already see what it changes (see Transformable.isPublished()).
+    // Anything else is only reachable from the thread setting it, so the task runs immediately, and reading the value
+    // back afterwards gives the new one.
+    public static void handle(boolean published, Runnable task) {
+        if (published && FLAG.enabled()) register(task);
+        else task.run();
+    }
+
     // Queue a task
     private static void register(Runnable task) {
         synchronized (LOCK) {
@@ -0,0 +1,183 @@
+package org.figuramc.figura_core.script_hooks.replay;
+
+import org.figuramc.figura_core.avatars.Avatar;
+import org.figuramc.figura_core.minecraft_interop.game_data.block.MinecraftBlockState;
+import org.figuramc.figura_core.minecraft_interop.game_data.entity.MinecraftEntity;
+import org.figuramc.figura_core.minecraft_interop.game_data.item.MinecraftItemStack;
+import org.figuramc.figura_core.minecraft_interop.game_data.world.MinecraftWorld;
+import org.figuramc.figura_core.script_hooks.Event;
+import org.figuramc.figura_core.script_hooks.callback.items.*;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.*;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Records a session of an avatar: the built-in events dispatched to it through its EventListeners, and every read it
+ * makes from the game objects passed in those events. The recording can then be replayed on a headless avatar by
+ * SessionReplayer, turning a real session into a repeatable benchmark.
+ *
+ * Game objects are handed to the avatar wrapped in recording proxies, so each read through them is captured in order.
+ * Events queued by other avatars, and listeners created by scripts, aren't recorded.
+ */
+public final class SessionRecorder {
+
+    private final Avatar<?> avatar;
+    private final SessionRecording recording = new SessionRecording();
+    // Guarded by "this"
+    private boolean active = true;
+    private int nextId;
+
+    private SessionRecorder(Avatar<?> avatar) {
+        this.avatar = avatar;
+    }
+
+    /**
+     * Start recording the avatar. Replaces any recorder which was already attached.
+     */
+    public static SessionRecorder attach(Avatar<?> avatar) {
+        SessionRecorder recorder = new SessionRecorder(avatar);
+        avatar.sessionRecorder = recorder;
+        return recorder;
+    }
+
+    /**
+     * Stop recording, and return the recording.
+     */
+    public synchronized SessionRecording detach() {
+        active = false;
+        if (avatar.sessionRecorder == this) avatar.sessionRecorder = null;
+        return recording;
+    }
+
+    /**
+     * Called by EventListener when a built-in event is dispatched. Records the event, and returns the args which the
+     * avatar should receive instead, with game objects wrapped so reads from them are recorded.
+     */
+    public synchronized CallbackItem recordEvent(Event<?, ?> event, SessionRecording.Kind kind, CallbackItem args) {
+        if (!active) return args;
+        IdentityHashMap<Object, SessionRecording.Ref> refs = new IdentityHashMap<>();
+        CallbackItem live = SessionRecording.mapViews(args, item -> {
+            SimpleView<?> view = (SimpleView<?>) item;
+            Object value = view.getValue();
+            if (value == null) return item; // Already revoked
+            Object proxy = refs.containsKey(value) ? null : wrap(value, gameObjectType(value), refs);
+            if (proxy == null) return item; // Same object twice in one event, only the first is recorded
+            // Parented to the original view, so ours is revoked along with it
+            return switch (view) {
+                case EntityView<?> v -> new EntityView<>((MinecraftEntity) proxy, v);
+                case WorldView<?> v -> new WorldView<>((MinecraftWorld) proxy, v);
+                case BlockStateView<?> v -> new BlockStateView<>((MinecraftBlockState) proxy, v);
+                case ItemStackView<?> v -> new ItemStackView<>((MinecraftItemStack) proxy, v);
+                default -> item;
+            };
+        });
+        // The stored copy has references in place of the game objects
+        CallbackItem template = SessionRecording.mapViews(args, item -> {
+            SessionRecording.Ref ref = refs.get(((SimpleView<?>) item).getValue());
+            return ref == null ? item : new CallbackItem.Opaque(ref);
+        });
+        recording.steps.add(new SessionRecording.EventStep(event, kind, template));
+        return live;
+    }
+
+    // The game object interface the value implements
+    private static Class<?> gameObjectType(Object value) {
+        for (Class<?> c = value.getClass(); c != null; c = c.getSuperclass())
+            for (Class<?> iface : c.getInterfaces())
+                if (SessionRecording.isGameObject(iface)) return iface;
+        throw new IllegalArgumentException("Not a game object: " + value.getClass());
+    }
+
+    // Wrap the target in a new recording proxy, noting its reference in the map if given. Called with the lock held.
+    private Object wrap(Object target, Class<?> type, @Nullable IdentityHashMap<Object, SessionRecording.Ref> refs) {
+        SessionRecording.Ref ref = new SessionRecording.Ref(nextId++, type);
+        if (refs != null) refs.put(target, ref);
+        return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, new Handler(target, ref));
+    }
+
+    // Record a call made through a proxy, and return the (possibly wrapped) result to hand back to the avatar
+    private synchronized Object recordRead(SessionRecording.Ref ref, Method method, @Nullable Object[] args, Object result) {
+        if (!active) return result;
+        // Remember the state of mutable arguments which the call may have written into
+        Object[] argsAfter = null;
+        if (args != null) {
+            for (int i = 0; i < args.length; i++) {
+                Object snapshot = SessionRecording.snapshot(args[i]);
+                if (snapshot == null) continue;
+                if (argsAfter == null) argsAfter = new Object[args.length];
+                argsAfter[i] = snapshot;
+            }
+        }
+        // Work out how to store the result
+        Object encoded = result, live = result;
+        if (result != null) {
+            int argIndex = indexOf(args, result);
+            if (argIndex != -1) {
+                encoded = new SessionRecording.ArgResult(argIndex);
+            } else if (SessionRecording.isGameObject(method.getReturnType())) {
+                live = wrap(result, method.getReturnType(), null);
+                encoded = ((Handler) Proxy.getInvocationHandler(live)).ref;
+            } else if (result instanceof List<?> list && gameObjectElementType(method) instanceof Class<?> element) {
+                List<Object> refs = new ArrayList<>(list.size()), proxies = new ArrayList<>(list.size());
+                for (Object o : list) {
+                    Object proxy = wrap(o, element, null);
+                    refs.add(((Handler) Proxy.getInvocationHandler(proxy)).ref);
+                    proxies.add(proxy);
+                }
+                encoded = refs;
+                live = proxies;
+            }
+        }
+        recording.reads.add(new SessionRecording.Read(ref.id(), method, argsAfter, encoded));
+        return live;
+    }
+
+    private static int indexOf(@Nullable Object[] args, Object value) {
+        if (args != null)
+            for (int i = 0; i < args.length; i++)
+                if (args[i] == value) return i;
+        return -1;
+    }
+
+    // If the method returns a List of game objects, the element type; otherwise null
+    private static @Nullable Class<?> gameObjectElementType(Method method) {
+        if (method.getGenericReturnType() instanceof ParameterizedType type
+                && type.getActualTypeArguments()[0] instanceof Class<?> element
+                && SessionRecording.isGameObject(element))
+            return element;
+        return null;
+    }
+
+    // Forwards calls to the real game object, recording each one
+    private final class Handler implements InvocationHandler {
+        private final Object target;
+        private final SessionRecording.Ref ref;
+
+        private Handler(Object target, SessionRecording.Ref ref) {
+            this.target = target;
+            this.ref = ref;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+                return switch (method.getName()) {
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    default -> "Recorded[" + ref.id() + "] " + target;
+                };
+            }
+            Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            return recordRead(ref, method, args, result);
+        }
+    }
+
+}
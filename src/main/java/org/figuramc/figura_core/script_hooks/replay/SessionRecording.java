@@ -0,0 +1,99 @@
+package org.figuramc.figura_core.script_hooks.replay;
+
+import org.figuramc.figura_core.script_hooks.Event;
+import org.figuramc.figura_core.script_hooks.callback.items.*;
+import org.joml.Vector2f;
+import org.joml.Vector3d;
+import org.joml.Vector3f;
+import org.joml.Vector3i;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * Everything an avatar saw over a recorded session: the built-in events dispatched to it, in order, and every read
+ * it made from the game objects passed to those events. See SessionRecorder and SessionReplayer.
+ *
+ * Game objects (entities, worlds, block states, item stacks) are replaced by numbered references, so a recording
+ * holds no live game state and can be replayed without a game. Recordings live in memory; values which aren't game
+ * objects or plain data (like Java callbacks passed as event arguments) are kept by reference.
+ */
+public final class SessionRecording {
+
+    // How the event was invoked on its EventListener
+    public enum Kind { INVOKE, CANCELING, TO_LIST, CHAINED }
+
+    // An event dispatch. Game objects in the args are Opaque(Ref).
+    public record EventStep(Event<?, ?> event, Kind kind, CallbackItem args) {}
+
+    // A reference to a recorded game object, by ID
+    public record Ref(int id, Class<?> type) {}
+    // A result which was the argument at the given index (like the "out" vectors of MinecraftEntity)
+    public record ArgResult(int index) {}
+
+    // A call made on a recorded game object. argsAfter holds the state of mutable arguments after the call, or null.
+    public record Read(int objectId, Method method, Object[] argsAfter, Object result) {}
+
+    final List<EventStep> steps = new ArrayList<>();
+    final List<Read> reads = new ArrayList<>();
+
+    public List<EventStep> getSteps() {
+        return Collections.unmodifiableList(steps);
+    }
+
+    public int getReadCount() {
+        return reads.size();
+    }
+
+    // -------- HELPERS -------- //
+
+    // Whether values of this type are game objects which should be recorded through a proxy
+    static boolean isGameObject(Class<?> type) {
+        return type.isInterface() && type.getPackageName().startsWith("org.figuramc.figura_core.minecraft_interop.game_data");
+    }
+
+    // Rebuild the item with every game object view replaced by the mapper
+    static CallbackItem mapViews(CallbackItem item, UnaryOperator<CallbackItem> mapper) {
+        return switch (item) {
+            case EntityView<?> view -> mapper.apply(view);
+            case WorldView<?> view -> mapper.apply(view);
+            case BlockStateView<?> view -> mapper.apply(view);
+            case ItemStackView<?> view -> mapper.apply(view);
+            case CallbackItem.Optional<?> o -> o.value() == null ? o : new CallbackItem.Optional<>(mapViews(o.value(), mapper));
+            case CallbackItem.Tuple2<?, ?> t -> new CallbackItem.Tuple2<>(mapViews(t.a(), mapper), mapViews(t.b(), mapper));
+            case CallbackItem.Tuple3<?, ?, ?> t -> new CallbackItem.Tuple3<>(mapViews(t.a(), mapper), mapViews(t.b(), mapper), mapViews(t.c(), mapper));
+            case CallbackItem.Tuple4<?, ?, ?, ?> t -> new CallbackItem.Tuple4<>(mapViews(t.a(), mapper), mapViews(t.b(), mapper), mapViews(t.c(), mapper), mapViews(t.d(), mapper));
+            case CallbackItem.Tuple5<?, ?, ?, ?, ?> t -> new CallbackItem.Tuple5<>(mapViews(t.a(), mapper), mapViews(t.b(), mapper), mapViews(t.c(), mapper), mapViews(t.d(), mapper), mapViews(t.e(), mapper));
+            case CallbackItem.Tuple6<?, ?, ?, ?, ?, ?> t -> new CallbackItem.Tuple6<>(mapViews(t.a(), mapper), mapViews(t.b(), mapper), mapViews(t.c(), mapper), mapViews(t.d(), mapper), mapViews(t.e(), mapper), mapViews(t.f(), mapper));
+            case CallbackItem.Tuple7<?, ?, ?, ?, ?, ?, ?> t -> new CallbackItem.Tuple7<>(mapViews(t.a(), mapper), mapViews(t.b(), mapper), mapViews(t.c(), mapper), mapViews(t.d(), mapper), mapViews(t.e(), mapper), mapViews(t.f(), mapper), mapViews(t.g(), mapper));
+            case CallbackItem.Tuple8<?, ?, ?, ?, ?, ?, ?, ?> t -> new CallbackItem.Tuple8<>(mapViews(t.a(), mapper), mapViews(t.b(), mapper), mapViews(t.c(), mapper), mapViews(t.d(), mapper), mapViews(t.e(), mapper), mapViews(t.f(), mapper), mapViews(t.g(), mapper), mapViews(t.h(), mapper));
+            default -> item;
+        };
+    }
+
+    // Copy of a mutable value passed to a game object, or null if it's not one we know to be mutable
+    static Object snapshot(Object value) {
+        return switch (value) {
+            case Vector3d v -> new Vector3d(v);
+            case Vector3f v -> new Vector3f(v);
+            case Vector2f v -> new Vector2f(v);
+            case Vector3i v -> new Vector3i(v);
+            case null, default -> null;
+        };
+    }
+
+    // Write a snapshot back into the mutable value it was taken from
+    static void restore(Object target, Object snapshot) {
+        switch (target) {
+            case Vector3d v -> v.set((Vector3d) snapshot);
+            case Vector3f v -> v.set((Vector3f) snapshot);
+            case Vector2f v -> v.set((Vector2f) snapshot);
+            case Vector3i v -> v.set((Vector3i) snapshot);
+            default -> {}
+        }
+    }
+
+}
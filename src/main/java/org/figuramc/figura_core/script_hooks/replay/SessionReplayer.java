@@ -0,0 +1,209 @@
+package org.figuramc.figura_core.script_hooks.replay;
+
+import org.figuramc.figura_core.avatars.Avatar;
+import org.figuramc.figura_core.avatars.components.AvatarEvents;
+import org.figuramc.figura_core.avatars.errors.AvatarError;
+import org.figuramc.figura_core.minecraft_interop.game_data.block.MinecraftBlockState;
+import org.figuramc.figura_core.minecraft_interop.game_data.entity.MinecraftEntity;
+import org.figuramc.figura_core.minecraft_interop.game_data.item.MinecraftItemStack;
+import org.figuramc.figura_core.minecraft_interop.game_data.world.MinecraftWorld;
+import org.figuramc.figura_core.script_hooks.Event;
+import org.figuramc.figura_core.script_hooks.EventListener;
+import org.figuramc.figura_core.script_hooks.callback.items.*;
+import org.figuramc.figura_core.script_hooks.timing.AvatarTimeTracker;
+import org.figuramc.figura_core.script_hooks.timing.ProfilingCategory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Replays a SessionRecording on an avatar, with no game running. Each recorded event is dispatched to the avatar's
+ * built-in listener in order, and reads from game objects are answered from the recording instead of the game.
+ *
+ * The avatar must make the same reads in the same order as when it was recorded, so the script should be
+ * deterministic (no wall clock time, no randomness without a fixed seed). If it isn't, the replay throws
+ * IllegalStateException at the first read that doesn't match.
+ *
+ * Replaying waits for the avatar's init script to finish first, and throws IllegalStateException if the avatar
+ * has errored or has no events to dispatch to.
+ *
+ * Dispatches are timed by AvatarTimeTracker like regular events, so they show up in the avatar's profiling,
+ * but they're never throttled.
+ */
+public final class SessionReplayer {
+
+    private final SessionRecording recording;
+    private final HashMap<Integer, Object> proxies = new HashMap<>(); // Replay proxies by recorded ID
+    private int nextStep, nextRead;
+    private long budgetNanos = 50_000_000L; // Per dispatch
+    private long activationTimeoutNanos = 10_000_000_000L; // How long to wait for the avatar's init script
+
+    public SessionReplayer(SessionRecording recording) {
+        this.recording = recording;
+    }
+
+    public void setBudget(long budgetNanos) {
+        this.budgetNanos = budgetNanos;
+    }
+
+    public void setActivationTimeout(long timeoutNanos) {
+        this.activationTimeoutNanos = timeoutNanos;
+    }
+
+    public boolean isFinished() {
+        return nextStep >= recording.steps.size();
+    }
+
+    /**
+     * Replay every remaining event on the avatar. Returns the number of events dispatched.
+     */
+    public int replayAll(Avatar<?> avatar) throws AvatarError {
+        int count = 0;
+        while (replayNext(avatar)) count++;
+        return count;
+    }
+
+    /**
+     * Dispatch the next recorded event to the avatar. Returns false if there are no events left.
+     */
+    public boolean replayNext(Avatar<?> avatar) throws AvatarError {
+        if (isFinished()) return false;
+        awaitActive(avatar);
+        AvatarEvents events = avatar.getComponent(AvatarEvents.TYPE);
+        if (events == null) throw new IllegalStateException("Can't replay on avatar " + avatar.key + ": " + (avatar.isErrored() ? "it has errored" : "it has no events"));
+        SessionRecording.EventStep step = recording.steps.get(nextStep++);
+        EventListener<CallbackItem, CallbackItem> listener = listener(events, step.event());
+
+        // Swap the references back out for views of replay proxies, closed once the event is done
+        List<AbstractView> views = new ArrayList<>();
+        CallbackItem args = replaceRefs(step.args(), views);
+        try {
+            // Never throttled, or the replay would skip events and diverge
+            AvatarTimeTracker.getInstance().runTimedUnthrottled(avatar, categoryOf(step.event()), budgetNanos, () -> {
+                switch (step.kind()) {
+                    case INVOKE -> listener.invoke(args);
+                    case CANCELING -> listener.invokeCanceling(args, ret -> ret instanceof CallbackItem.Bool b && b.value());
+                    case TO_LIST -> listener.invokeToList(args);
+                    case CHAINED -> listener.invokeChained(args, ret -> ret);
+                }
+            });
+        } finally {
+            for (AbstractView view : views) view.close();
+        }
+        return true;
+    }
+
+    // Events are hidden until the init script is done, so wait for it (bounded, since whenActive() never completes if the avatar is destroyed)
+    private void awaitActive(Avatar<?> avatar) {
+        if (avatar.getStage() == Avatar.Stage.ACTIVE) return;
+        try {
+            avatar.whenActive().get(activationTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Avatar " + avatar.key + " didn't finish initializing, can't replay on it");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for avatar " + avatar.key + " to initialize");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Avatar " + avatar.key + " failed to initialize", e.getCause());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static EventListener<CallbackItem, CallbackItem> listener(AvatarEvents events, Event<?, ?> event) {
+        return (EventListener<CallbackItem, CallbackItem>) (EventListener<?, ?>) events.eventListeners.get(event);
+    }
+
+    private static ProfilingCategory categoryOf(Event<?, ?> event) {
+        if (event == Event.CLIENT_TICK) return ProfilingCategory.CLIENT_TICK_EVENT;
+        if (event == Event.WORLD_TICK) return ProfilingCategory.WORLD_TICK_EVENT;
+        if (event == Event.ENTITY_TICK) return ProfilingCategory.ENTITY_TICK_EVENT;
+        if (event == Event.CLIENT_RENDER) return ProfilingCategory.CLIENT_RENDER_EVENT;
+        if (event == Event.WORLD_RENDER) return ProfilingCategory.WORLD_RENDER_EVENT;
+        if (event == Event.ENTITY_RENDER) return ProfilingCategory.ENTITY_RENDER_EVENT;
+        return ProfilingCategory.TICKING_SCRIPTS;
+    }
+
+    // Replace every Opaque(Ref) in the args with a view of the matching replay proxy
+    private CallbackItem replaceRefs(CallbackItem item, List<AbstractView> views) {
+        return switch (item) {
+            case CallbackItem.Opaque(SessionRecording.Ref ref) -> {
+                Object proxy = proxy(ref);
+                SimpleView<?> view = switch (proxy) {
+                    case MinecraftEntity e -> new EntityView<>(e);
+                    case MinecraftWorld w -> new WorldView<>(w);
+                    case MinecraftBlockState b -> new BlockStateView<>(b);
+                    case MinecraftItemStack i -> new ItemStackView<>(i);
+                    default -> throw new IllegalStateException("Unexpected recorded type " + ref.type());
+                };
+                views.add(view);
+                yield (CallbackItem) view;
+            }
+            case CallbackItem.Optional<?> o -> o.value() == null ? o : new CallbackItem.Optional<>(replaceRefs(o.value(), views));
+            case CallbackItem.Tuple2<?, ?> t -> new CallbackItem.Tuple2<>(replaceRefs(t.a(), views), replaceRefs(t.b(), views));
+            case CallbackItem.Tuple3<?, ?, ?> t -> new CallbackItem.Tuple3<>(replaceRefs(t.a(), views), replaceRefs(t.b(), views), replaceRefs(t.c(), views));
+            case CallbackItem.Tuple4<?, ?, ?, ?> t -> new CallbackItem.Tuple4<>(replaceRefs(t.a(), views), replaceRefs(t.b(), views), replaceRefs(t.c(), views), replaceRefs(t.d(), views));
+            case CallbackItem.Tuple5<?, ?, ?, ?, ?> t -> new CallbackItem.Tuple5<>(replaceRefs(t.a(), views), replaceRefs(t.b(), views), replaceRefs(t.c(), views), replaceRefs(t.d(), views), replaceRefs(t.e(), views));
+            case CallbackItem.Tuple6<?, ?, ?, ?, ?, ?> t -> new CallbackItem.Tuple6<>(replaceRefs(t.a(), views), replaceRefs(t.b(), views), replaceRefs(t.c(), views), replaceRefs(t.d(), views), replaceRefs(t.e(), views), replaceRefs(t.f(), views));
+            case CallbackItem.Tuple7<?, ?, ?, ?, ?, ?, ?> t -> new CallbackItem.Tuple7<>(replaceRefs(t.a(), views), replaceRefs(t.b(), views), replaceRefs(t.c(), views), replaceRefs(t.d(), views), replaceRefs(t.e(), views), replaceRefs(t.f(), views), replaceRefs(t.g(), views));
+            case CallbackItem.Tuple8<?, ?, ?, ?, ?, ?, ?, ?> t -> new CallbackItem.Tuple8<>(replaceRefs(t.a(), views), replaceRefs(t.b(), views), replaceRefs(t.c(), views), replaceRefs(t.d(), views), replaceRefs(t.e(), views), replaceRefs(t.f(), views), replaceRefs(t.g(), views), replaceRefs(t.h(), views));
+            default -> item;
+        };
+    }
+
+    // The replay proxy for a recorded game object, created the first time it's seen
+    private Object proxy(SessionRecording.Ref ref) {
+        return proxies.computeIfAbsent(ref.id(), id -> Proxy.newProxyInstance(ref.type().getClassLoader(), new Class<?>[] { ref.type() }, new Handler(id)));
+    }
+
+    // Turn a recorded result back into what the avatar should see
+    private Object decode(Object result, Object[] args) {
+        return switch (result) {
+            case SessionRecording.Ref ref -> proxy(ref);
+            case SessionRecording.ArgResult(int index) -> args[index];
+            case List<?> list when !list.isEmpty() && list.getFirst() instanceof SessionRecording.Ref -> {
+                List<Object> decoded = new ArrayList<>(list.size());
+                for (Object o : list) decoded.add(proxy((SessionRecording.Ref) o));
+                yield decoded;
+            }
+            case null, default -> result;
+        };
+    }
+
+    // Answers calls from the next recorded read, after checking that it's the call the avatar made back then
+    private final class Handler implements InvocationHandler {
+        private final int id;
+
+        private Handler(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            if (method.getDeclaringClass() == Object.class) {
+                return switch (method.getName()) {
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    default -> "Replayed[" + id + "]";
+                };
+            }
+            if (nextRead >= recording.reads.size())
+                throw new IllegalStateException("Replay diverged: " + method.getName() + " called on object " + id + " after the end of the recording");
+            SessionRecording.Read read = recording.reads.get(nextRead);
+            if (read.objectId() != id || !read.method().equals(method))
+                throw new IllegalStateException("Replay diverged at read " + nextRead + ": expected " + read.method().getName() + " on object " + read.objectId() + ", got " + method.getName() + " on object " + id);
+            nextRead++;
+            if (read.argsAfter() != null)
+                for (int i = 0; i < args.length; i++)
+                    if (read.argsAfter()[i] != null) SessionRecording.restore(args[i], read.argsAfter()[i]);
+            return decode(read.result(), args);
+        }
+    }
+
+}
@@ -3,11 +3,13 @@ package org.figuramc.figura_core.script_hooks.timing;
 import org.figuramc.figura_core.avatars.Avatar;
 import org.figuramc.figura_core.avatars.components.AvatarProfiling;
 import org.figuramc.figura_core.avatars.errors.AvatarError;
-import org.figuramc.figura_core.util.exception.FiguraException;
 import org.figuramc.figura_core.util.functional.ThrowingRunnable;
 import org.figuramc.figura_core.util.functional.ThrowingSupplier;
+import org.figuramc.figura_core.util.jfr.FiguraEvents;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Arrays;
+
 /**
  * Helper methods for tracking time used by Avatars.
  * Uses ScriptKillerDaemon for implementation
@@ -20,48 +22,87 @@ public class AvatarTimeTracker {
         return INSTANCE;
     }
 
-    // Return a runnable to kill an avatar with a time budget error if the budget runs out
-    private static Runnable killAvatar(Avatar<?> avatar, long budgetNanos) {
-        return () -> avatar.error(new AvatarError(FiguraException.LITERAL, "Overran budget of " + (budgetNanos / 1_000_000) + " ms (TODO translate)"));
+    // Per-event instruction quotas, indexed by ProfilingCategory.index. 0 means no quota.
+    // Only applies to avatars with instruction metering enabled; see InstructionMeter.
+    private volatile long[] instructionQuotas = new long[0];
+
+    public synchronized void setInstructionQuota(ProfilingCategory category, long quota) {
+        if (category.index >= instructionQuotas.length)
+            instructionQuotas = Arrays.copyOf(instructionQuotas, ProfilingCategory.count());
+        instructionQuotas[category.index] = quota;
+    }
+
+    public long getInstructionQuota(ProfilingCategory category) {
+        long[] quotas = instructionQuotas;
+        return category.index < quotas.length ? quotas[category.index] : 0;
     }
 
     // Run the given runnable, with the given Avatar, with the given budget.
     // If the runnable throws an AvatarError, the Avatar will be errored.
     // If the timer exceeds the budget in nanoseconds, the Avatar will be errored. (Note that the timing is approximate)
+    // If the avatar is being throttled in this category, the runnable may be skipped entirely; see AvatarProfiling.
+    // If the avatar is metered, it's also errored when it exceeds the category's instruction quota.
     public void runTimed(Avatar<?> avatar, ProfilingCategory category, long budgetNanos, ThrowingRunnable<AvatarError> runnable) {
-        ScriptKillerDaemon.Task task = new ScriptKillerDaemon.Task(killAvatar(avatar, budgetNanos), budgetNanos);
-        long start = System.nanoTime();
-        ScriptKillerDaemon.INSTANCE.startTask(task);
-        try {
-            runnable.run();
-        } catch (AvatarError error) {
-            avatar.error(error);
-        } finally {
-            ScriptKillerDaemon.INSTANCE.endTask(task);
-            // If the avatar has a profiler component, notify it of the elapsed time
-            AvatarProfiling profiling = avatar.getComponent(AvatarProfiling.TYPE);
-            if (profiling != null) profiling.recordTime(category, System.nanoTime() - start);
-        }
+        AvatarProfiling profiling = avatar.getComponent(AvatarProfiling.TYPE);
+        if (profiling != null && !profiling.shouldRun(category)) return;
+        runTimed(avatar, profiling, category, budgetNanos, runnable);
+    }
+
+    // Variant of runTimed which is never throttled, for callers that must run the runnable every time (e.g. SessionReplayer).
+    // Budget, quota and profiling still apply as usual.
+    public void runTimedUnthrottled(Avatar<?> avatar, ProfilingCategory category, long budgetNanos, ThrowingRunnable<AvatarError> runnable) {
+        runTimed(avatar, avatar.getComponent(AvatarProfiling.TYPE), category, budgetNanos, runnable);
     }
 
-    // Variant of runTimed returning a value, or null if an error is thrown/avatar runs out of time
+    // Variant of runTimed returning a value, or null if an error is thrown/avatar runs out of time/the call was throttled
     public <R> @Nullable R runTimedFor(Avatar<?> avatar, ProfilingCategory category, long budgetNanos, ThrowingSupplier<R, AvatarError> supplier) {
-        ScriptKillerDaemon.Task task = new ScriptKillerDaemon.Task(killAvatar(avatar, budgetNanos), budgetNanos);
+        AvatarProfiling profiling = avatar.getComponent(AvatarProfiling.TYPE);
+        if (profiling != null && !profiling.shouldRun(category)) return null;
+        return runTimedFor(avatar, profiling, category, budgetNanos, supplier);
+    }
+
+    private void runTimed(Avatar<?> avatar, @Nullable AvatarProfiling profiling, ProfilingCategory category, long budgetNanos, ThrowingRunnable<AvatarError> runnable) {
+        runTimedFor(avatar, profiling, category, budgetNanos, () -> {
+            runnable.run();
+            return null;
+        });
+    }
+
+    // Shared by every runTimed variant: quota, JFR event, kill daemon and profiling.
+    private <R> @Nullable R runTimedFor(Avatar<?> avatar, @Nullable AvatarProfiling profiling, ProfilingCategory category, long budgetNanos, ThrowingSupplier<R, AvatarError> supplier) {
+        InstructionMeter meter = avatar.instructionMeter;
+        long instructionsBefore = meter.executed();
+        long previousLimit = meter.pushQuota(getInstructionQuota(category));
+        FiguraEvents.ScriptSection event = new FiguraEvents.ScriptSection();
+        event.begin();
         long start = System.nanoTime();
-        ScriptKillerDaemon.INSTANCE.startTask(task);
+        ScriptKillerDaemon.Frame task = ScriptKillerDaemon.INSTANCE.startTask(avatar, budgetNanos);
         R result = null;
         try {
             result = supplier.get();
         } catch (AvatarError error) {
             avatar.error(error);
         } finally {
-            if (!ScriptKillerDaemon.INSTANCE.endTask(task))
+            boolean finished = ScriptKillerDaemon.INSTANCE.endTask(task);
+            if (!finished)
                 result = null;
-            // If the avatar has a profiler component, notify it of the elapsed time
-            AvatarProfiling profiling = avatar.getComponent(AvatarProfiling.TYPE);
-            if (profiling != null) profiling.recordTime(category, System.nanoTime() - start);
+            meter.popQuota(previousLimit);
+            commit(event, avatar, category, finished);
+            // If the avatar has a profiler component, notify it of the elapsed time and metered interrupt checks
+            if (profiling != null) {
+                profiling.recordTime(category, System.nanoTime() - start);
+                if (meter.enabled) profiling.recordInterruptChecks(category, meter.executed() - instructionsBefore);
+            }
         }
         return result;
     }
 
+    private static void commit(FiguraEvents.ScriptSection event, Avatar<?> avatar, ProfilingCategory category, boolean finished) {
+        if (!event.shouldCommit()) return;
+        event.avatar = String.valueOf(avatar.key);
+        event.category = category.fullName;
+        event.killed = !finished;
+        event.commit();
+    }
+
 }
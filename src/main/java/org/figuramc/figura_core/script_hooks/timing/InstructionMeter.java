@@ -0,0 +1,52 @@
+package org.figuramc.figura_core.script_hooks.timing;
+
+/**
+ * Counts the script instructions executed by one avatar, as a hardware-independent measure of its cost.
+ * Wall-clock limits depend on the machine and are noisy under GC pauses; instruction counts are reproducible.
+ *
+ * Script runtimes which support metering report to the meter as they run, each in its own unit. Lua, the only one so
+ * far, reports the interpreter's interrupt checks rather than VM instructions (see LuaRuntime.LuaRuntimeInterruptHandler),
+ * so quotas and AvatarProfiling.interruptCheckMeasurers are in interrupt checks. AvatarTimeTracker sets a quota for
+ * each timed event, and a runtime which goes past the limit errors the avatar, just like overrunning a time budget.
+ *
+ * Metering is decided per avatar when it's created, since runtimes only set it up if it's enabled.
+ * Only touched by whichever thread is running the avatar's scripts.
+ */
+public final class InstructionMeter {
+
+    // Whether avatars created from now on are metered
+    public static volatile boolean meterNewAvatars = false;
+
+    public final boolean enabled;
+    private long executed; // Total instructions executed so far
+    private long limit = Long.MAX_VALUE; // Value of "executed" past which the script must stop
+
+    public InstructionMeter(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    // Called by runtimes to report executed instructions.
+    // Returns false if the limit was passed, in which case the runtime should error the avatar.
+    public boolean report(long instructions) {
+        executed += instructions;
+        return executed <= limit;
+    }
+
+    public long executed() {
+        return executed;
+    }
+
+    // Limit the script to the given number of further instructions, unless the current limit is tighter.
+    // A quota of 0 or less means no quota. Returns the previous limit, to pass to popQuota() afterwards.
+    public long pushQuota(long quota) {
+        long previous = limit;
+        if (enabled && quota > 0 && quota < previous - executed)
+            limit = executed + quota;
+        return previous;
+    }
+
+    public void popQuota(long previousLimit) {
+        limit = previousLimit;
+    }
+
+}
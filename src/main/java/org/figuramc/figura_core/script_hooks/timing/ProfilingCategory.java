@@ -5,17 +5,22 @@ import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class ProfilingCategory {
 
     // Roots
     public static final List<ProfilingCategory> ROOTS = new ArrayList<>();
+    // Number of categories created so far; each gets the next index
+    private static final AtomicInteger COUNT = new AtomicInteger();
 
     // Each element in the hierarchy has a name
     public final String name;
     public final String fullName;
     public final @Nullable ProfilingCategory parent;
     public final List<ProfilingCategory> children = new ArrayList<>();
+    // Unique index of this category, for array-based lookups
+    public final int index = COUNT.getAndIncrement();
 
     // Constants
 
@@ -29,6 +34,8 @@ public class ProfilingCategory {
             public static final ProfilingCategory CLIENT_TICK_EVENT = new ProfilingCategory("client_tick", TICKING_SCRIPTS);
             public static final ProfilingCategory WORLD_TICK_EVENT = new ProfilingCategory("world_tick", TICKING_SCRIPTS);
             public static final ProfilingCategory ENTITY_TICK_EVENT = new ProfilingCategory("entity_tick", TICKING_SCRIPTS);
+        // Each AvatarComponent.Type adds its own child category here, for time spent in its tick()
+        public static final ProfilingCategory TICKING_COMPONENTS = new ProfilingCategory("components", TICKING);
 
     // Rendering
     public static final ProfilingCategory RENDERING = new ProfilingCategory("rendering");
@@ -39,6 +46,10 @@ public class ProfilingCategory {
             public static final ProfilingCategory WORLD_RENDER_EVENT = new ProfilingCategory("world_render", RENDERING_SCRIPTS);
             public static final ProfilingCategory ENTITY_RENDER_EVENT = new ProfilingCategory("entity_render", RENDERING_SCRIPTS);
 
+    public static int count() {
+        return COUNT.get();
+    }
+
     public ProfilingCategory(String name) {
         this.name = this.fullName = name;
         this.parent = null;
@@ -1,63 +1,183 @@
 package org.figuramc.figura_core.script_hooks.timing;
 
-import java.util.concurrent.ConcurrentHashMap;
+import org.figuramc.figura_core.avatars.Avatar;
+import org.figuramc.figura_core.avatars.errors.AvatarError;
+import org.figuramc.figura_core.util.exception.FiguraException;
+import org.figuramc.figura_core.util.metrics.FiguraMetrics;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Maintains a background thread that kills tasks when they go on too long.
+ *
+ * Every thread running timed tasks gets its own preallocated stack of Frames (timed tasks can nest), so starting
+ * and ending a task allocates nothing and costs a couple of volatile writes. The daemon sleeps until the earliest
+ * deadline of any running task, instead of waking up at a fixed interval, so tasks are killed promptly.
  */
 public class ScriptKillerDaemon extends Thread {
 
-    // The number of millis to Thread.sleep() for between checks.
-    // A value of 100 means that a task might possibly go un-killed for about 100ms longer than it should.
-    private static final long RESOLUTION_MILLIS = 50;
+    // The longest the daemon sleeps without re-checking, in case a wakeup was missed somehow.
+    private static final long MAX_SLEEP_NANOS = 50_000_000L;
+
+    // Every live thread's frame stack. Threads only register once, and the daemon drops the stacks of threads
+    // which died, so iteration is cheap and almost never copies.
+    private final CopyOnWriteArrayList<FrameStack> stacks = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<FrameStack> currentStack = ThreadLocal.withInitial(() -> {
+        FrameStack stack = new FrameStack(Thread.currentThread());
+        stacks.add(stack);
+        return stack;
+    });
 
-    // The set of currently-running tasks.
-    private final ConcurrentHashMap<Task, Boolean> currentlyRunning = new ConcurrentHashMap<>();
+    // When the daemon plans to wake up next. Tasks with an earlier deadline wake it early.
+    private volatile long nextWakeup = Long.MAX_VALUE;
 
     // Singleton
     public static final ScriptKillerDaemon INSTANCE = new ScriptKillerDaemon();
     private ScriptKillerDaemon() {
+        super("Figura Script Killer");
         this.setDaemon(true);
         this.start();
     }
 
-    // Begin a task
-    public void startTask(Task task) {
-        currentlyRunning.put(task, Boolean.TRUE);
+    // Begin a task for the given avatar. Pass the returned frame to endTask() once the task is done.
+    public Frame startTask(Avatar<?> avatar, long budgetNanos) {
+        FrameStack stack = currentStack.get();
+        Frame frame = stack.push();
+        long deadline = System.nanoTime() + budgetNanos;
+        frame.start(avatar, budgetNanos, deadline);
+        // Wake the daemon if it'd otherwise sleep past our deadline
+        if (deadline - nextWakeup < 0) LockSupport.unpark(this);
+        return frame;
     }
 
     // Return true if the task was successfully finished.
     // False if it was already finished because the budget timed out.
-    public boolean endTask(Task task) {
-        return currentlyRunning.remove(task) != null;
+    public boolean endTask(Frame frame) {
+        boolean finished = frame.end();
+        frame.owner.pop();
+        return finished;
     }
 
     @Override
     public void run() {
         // Infinite loop
         while (true) {
-            // Wait some amount of time to not waste CPU
-            try { Thread.sleep(RESOLUTION_MILLIS); } catch (InterruptedException ignored) {}
-            // Check each task in the currently-running set, removing ones which are killed
-            currentlyRunning.keySet().removeIf(Task::check);
+            long now = System.nanoTime();
+            long earliest = now + MAX_SLEEP_NANOS;
+            // Kill each expired task, and find the earliest deadline among the rest
+            ArrayList<FrameStack> dead = null;
+            for (FrameStack stack : stacks) {
+                if (!stack.isAlive()) {
+                    if (dead == null) dead = new ArrayList<>();
+                    dead.add(stack);
+                    continue;
+                }
+                for (Frame frame : stack.frames) {
+                    long stamp = frame.stamp;
+                    if ((stamp & 1) == 0) continue; // Not running
+                    long deadline = frame.deadline;
+                    if (deadline - now <= 0) frame.kill(stamp);
+                    else if (deadline - earliest < 0) earliest = deadline;
+                }
+            }
+            if (dead != null) stacks.removeAll(dead);
+            nextWakeup = earliest;
+            // A task started between the scan and here may have a deadline before "earliest", and unparked us
+            // while nextWakeup was still stale. In that case parkNanos returns immediately and we scan again.
+            long sleep = earliest - System.nanoTime();
+            if (sleep > 0) LockSupport.parkNanos(this, sleep);
+        }
+    }
+
+    // Number of threads with a registered frame stack, for tests
+    int stackCount() {
+        return stacks.size();
+    }
+
+    // A thread's stack of timed tasks. Only the owning thread pushes and pops; the daemon only reads.
+    private static final class FrameStack {
+        private final WeakReference<Thread> thread; // Weak, so a registered stack doesn't keep its thread around
+        private volatile Frame[] frames = { new Frame(this), new Frame(this) };
+        private int depth;
+
+        private FrameStack(Thread thread) {
+            this.thread = new WeakReference<>(thread);
+        }
+
+        private boolean isAlive() {
+            Thread thread = this.thread.get();
+            return thread != null && thread.isAlive();
+        }
+
+        private Frame push() {
+            Frame[] frames = this.frames;
+            if (depth == frames.length) {
+                Frame[] grown = Arrays.copyOf(frames, frames.length * 2);
+                for (int i = frames.length; i < grown.length; i++) grown[i] = new Frame(this);
+                this.frames = frames = grown;
+            }
+            return frames[depth++];
+        }
+
+        private void pop() {
+            depth--;
         }
     }
 
-    // Contains:
-    // - A callback to kill something if time expires
-    // - Start time of the task in nanos
-    // - Time budget in nanos, after which the callback should be killed
-    // Many of these are inserted and removed from the set of currently running tasks constantly.
-    public record Task(Runnable killer, long start, long budget) {
+    /**
+     * A reusable slot for one running task.
+     * The stamp is odd while a task is running and even otherwise. Ending and killing the task both race
+     * to advance it with a CAS, so exactly one of them wins, and a stale kill can never hit a later task.
+     */
+    public static final class Frame {
+        private static final VarHandle STAMP;
+        static {
+            try {
+                STAMP = MethodHandles.lookup().findVarHandle(Frame.class, "stamp", long.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        private final FrameStack owner;
+        private volatile long stamp;
+        // Written by the owner before the stamp is published, read by the daemon after
+        private long deadline, budget;
+        private @Nullable Avatar<?> avatar;
+
+        private Frame(FrameStack owner) {
+            this.owner = owner;
+        }
+
+        private void start(Avatar<?> avatar, long budget, long deadline) {
+            this.avatar = avatar;
+            this.budget = budget;
+            this.deadline = deadline;
+            this.stamp = stamp + 1;
+        }
 
-        public Task(Runnable killer, long budget) { this(killer, System.nanoTime(), budget); }
+        private boolean end() {
+            long stamp = this.stamp;
+            boolean finished = (stamp & 1) == 1 && STAMP.compareAndSet(this, stamp, stamp + 1);
+            this.avatar = null;
+            return finished;
+        }
 
-        public boolean check() {
-            if (System.nanoTime() - start > budget) {
-                killer.run();
-                return true;
+        private void kill(long stamp) {
+            // Read the fields before the CAS; if it succeeds, the task hasn't changed since we read the stamp
+            Avatar<?> avatar = this.avatar;
+            long budget = this.budget;
+            if (avatar != null && STAMP.compareAndSet(this, stamp, stamp + 1)) {
+                FiguraMetrics.SCRIPTS_KILLED.increment();
+                avatar.error(new AvatarError(FiguraException.LITERAL, "Overran budget of " + (budget / 1_000_000) + " ms (TODO translate)"));
             }
-            return false;
         }
     }
 
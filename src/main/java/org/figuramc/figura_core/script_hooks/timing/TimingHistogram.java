@@ -0,0 +1,112 @@
+package org.figuramc.figura_core.script_hooks.timing;
+
+import org.figuramc.memory_tracker.AllocationTracker;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size, log-bucketed histogram of elapsed times in nanoseconds.
+ * Each power of two is split into SUB_BUCKETS buckets, so percentiles are accurate to within about 25%,
+ * from 1 microsecond up to about a minute. Recording is thread-safe and never allocates.
+ *
+ * Each avatar has one histogram per ProfilingCategory it recorded time in (see AvatarProfiling), plus there's one per category
+ * across all avatars, here. Times are rolled up the category tree, so a category's histogram
+ * also contains the times recorded in all its descendants.
+ */
+public final class TimingHistogram {
+
+    private static final int MIN_EXPONENT = 10; // Everything below 2^10 ns (~1 us) shares the first bucket
+    private static final int MAX_EXPONENT = 36; // Everything above 2^36 ns (~69 s) shares the last bucket
+    private static final int SUB_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (MAX_EXPONENT - MIN_EXPONENT) * SUB_BUCKETS + 2;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    // Histograms across all avatars, indexed by ProfilingCategory.index
+    private static volatile TimingHistogram[] GLOBAL = new TimingHistogram[0];
+
+    public static final int SIZE_ESTIMATE =
+            AllocationTracker.OBJECT_SIZE
+            + AllocationTracker.REFERENCE_SIZE * 3
+            + AllocationTracker.OBJECT_SIZE * 2 + BUCKETS * AllocationTracker.LONG_SIZE // counts
+            + (AllocationTracker.OBJECT_SIZE + AllocationTracker.LONG_SIZE) * 2; // count, max
+
+    public void record(long nanos) {
+        counts.incrementAndGet(bucketOf(nanos));
+        count.incrementAndGet();
+        long prevMax;
+        while (nanos > (prevMax = max.get()) && !max.compareAndSet(prevMax, nanos)) {}
+    }
+
+    // The histogram for the category, across all avatars
+    public static TimingHistogram global(ProfilingCategory category) {
+        TimingHistogram[] global = GLOBAL;
+        if (category.index < global.length) return global[category.index];
+        synchronized (TimingHistogram.class) {
+            GLOBAL = global = fill(GLOBAL, ProfilingCategory.count());
+            return global[category.index];
+        }
+    }
+
+    // Return the array, grown to the given length and with every slot filled
+    public static TimingHistogram[] fill(TimingHistogram[] histograms, int length) {
+        if (histograms.length >= length) return histograms;
+        TimingHistogram[] grown = new TimingHistogram[length];
+        System.arraycopy(histograms, 0, grown, 0, histograms.length);
+        for (int i = histograms.length; i < length; i++) grown[i] = new TimingHistogram();
+        return grown;
+    }
+
+    public long count() {
+        return count.get();
+    }
+
+    public long max() {
+        return max.get();
+    }
+
+    public long p50() { return percentile(0.50); }
+    public long p95() { return percentile(0.95); }
+    public long p99() { return percentile(0.99); }
+
+    // Approximate time at or below which the given fraction of samples fall. Returns 0 if there are no samples.
+    public long percentile(double fraction) {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) total += counts.get(i);
+        if (total == 0) return 0;
+        long target = Math.max(1, (long) Math.ceil(fraction * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= target) return Math.min(upperBound(i), max());
+        }
+        return max();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) counts.set(i, 0);
+        count.set(0);
+        max.set(0);
+    }
+
+    private static int bucketOf(long nanos) {
+        if (nanos < (1L << MIN_EXPONENT)) return 0;
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        if (exponent >= MAX_EXPONENT) return BUCKETS - 1;
+        int sub = (int) (nanos >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return 1 + (exponent - MIN_EXPONENT) * SUB_BUCKETS + sub;
+    }
+
+    private static long upperBound(int bucket) {
+        if (bucket == 0) return 1L << MIN_EXPONENT;
+        if (bucket == BUCKETS - 1) return Long.MAX_VALUE;
+        int exponent = MIN_EXPONENT + (bucket - 1) / SUB_BUCKETS;
+        int sub = (bucket - 1) % SUB_BUCKETS;
+        return (1L << exponent) + ((long) (sub + 1) << (exponent - SUB_BITS));
+    }
+
+}
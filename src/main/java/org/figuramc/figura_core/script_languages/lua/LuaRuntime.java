@@ -5,12 +5,16 @@ import org.figuramc.figura_cobalt.LuaUncatchableError;
 import org.figuramc.figura_cobalt.org.squiddev.cobalt.*;
 import org.figuramc.figura_cobalt.org.squiddev.cobalt.compiler.CompileException;
 import org.figuramc.figura_cobalt.org.squiddev.cobalt.compiler.LoadState;
+import org.figuramc.figura_cobalt.org.squiddev.cobalt.debug.DebugFrame;
+import org.figuramc.figura_cobalt.org.squiddev.cobalt.debug.DebugHook;
+import org.figuramc.figura_cobalt.org.squiddev.cobalt.debug.DebugState;
 import org.figuramc.figura_cobalt.org.squiddev.cobalt.function.LuaClosure;
 import org.figuramc.figura_cobalt.org.squiddev.cobalt.function.LuaFunction;
 import org.figuramc.figura_cobalt.org.squiddev.cobalt.interrupt.InterruptAction;
 import org.figuramc.figura_cobalt.org.squiddev.cobalt.interrupt.InterruptHandler;
 import org.figuramc.figura_cobalt.org.squiddev.cobalt.lib.Bit32Lib;
 import org.figuramc.figura_cobalt.org.squiddev.cobalt.lib.CoreLibraries;
+import org.figuramc.figura_core.avatars.AllocationLedger;
 import org.figuramc.figura_core.avatars.Avatar;
 import org.figuramc.figura_core.avatars.AvatarModules;
 import org.figuramc.figura_core.avatars.components.*;
@@ -19,6 +23,7 @@ import org.figuramc.figura_core.avatars.errors.AvatarInitError;
 import org.figuramc.figura_core.avatars.errors.AvatarOutOfMemoryError;
 import org.figuramc.figura_core.model.texture.AvatarTexture;
 import org.figuramc.figura_core.script_hooks.callback.CallbackType;
+import org.figuramc.figura_core.script_hooks.timing.InstructionMeter;
 import org.figuramc.figura_core.script_languages.lua.callback_types.LuaCallback;
 import org.figuramc.figura_core.script_languages.lua.callback_types.convert.CallbackItemToLua;
 import org.figuramc.figura_core.script_languages.lua.callback_types.convert.LuaToCallbackItem;
@@ -30,7 +35,9 @@ import org.figuramc.figura_core.script_languages.lua.type_apis.rendering.Texture
 import org.figuramc.figura_core.util.enumlike.EnumLike;
 import org.figuramc.figura_core.util.exception.FiguraException;
 import org.figuramc.figura_core.util.functional.BiThrowingBiFunction;
+import org.figuramc.figura_core.util.metrics.FiguraMetrics;
 import org.figuramc.figura_translations.TranslatableItems;
+import org.figuramc.memory_tracker.AllocationTracker;
 import org.figuramc.memory_tracker.DelegateAllocationTracker;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -39,9 +46,11 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class LuaRuntime extends LuaState implements ScriptRuntimeComponent<LuaRuntime> {
 
@@ -56,6 +65,8 @@ public class LuaRuntime extends LuaState implements ScriptRuntimeComponent<LuaRu
     public final CallbackItemToLua callbackItemToLua;
     // The avatar this runtime is attached to. If an error occurs, this is who to blame.
     public final Avatar<?> avatar; // Can also fetch its allocation tracker if needed!
+    // Tracks vector userdata separately from the rest of the Lua heap, for the allocation ledger
+    public final @Nullable AllocationTracker<LuaOOM> vectorAllocationTracker;
 
     // Use this for the factory since it throws AvatarError
     public static LuaRuntime create(Avatar<?> avatar, AvatarModules modules) throws AvatarInitError, AvatarOutOfMemoryError {
@@ -70,13 +81,29 @@ public class LuaRuntime extends LuaState implements ScriptRuntimeComponent<LuaRu
 
     // Implementation of interruption handler that simply errors out when the avatar errors for another reason.
     // For example, if we overran a time limit.
+    // If the avatar is metered, this is also what meters it (see InstructionMeter): the handler keeps the state
+    // interrupted, so Cobalt calls it at every interrupt check, and each call is reported as one unit. The unit is
+    // an interrupt check, not a VM instruction, and every check of a metered avatar pays for a call into here.
+    // Once the meter's limit is passed, the avatar is errored and the handler escapes Lua as usual.
     public static class LuaRuntimeInterruptHandler implements InterruptHandler {
         // Keep a reference to the state to prevent any accidental funny business
         private LuaState state;
+        // The avatar whose meter to report to, or null if it isn't metered
+        private @Nullable Avatar<?> meteredAvatar;
 
         @Override
         public InterruptAction interrupted() throws LuaUncatchableError {
-            // This is only called at all when the state has been interrupted by an external thread.
+            // If metered, this is called at every interrupt check. Otherwise, it's only called at all when the state
+            // has been interrupted by an external thread.
+            Avatar<?> avatar = meteredAvatar;
+            if (avatar != null && !avatar.isErrored()) {
+                if (avatar.instructionMeter.report(1)) {
+                    state.interrupt(); // Re-interrupt so the next check is counted too
+                    return InterruptAction.CONTINUE;
+                }
+                FiguraMetrics.SCRIPTS_OVER_QUOTA.increment();
+                avatar.error(new AvatarError(FiguraException.LITERAL, "Overran instruction quota (TODO translate)"));
+            }
             // Unlike CC:Tweaked, we're not interested in suspending this state to continue later.
             // We'll simply hard-abort the avatar at this point.
             state.interrupt(); // Re-interrupt so we can't somehow get back in here again
@@ -84,6 +111,53 @@ public class LuaRuntime extends LuaState implements ScriptRuntimeComponent<LuaRu
         }
     }
 
+    // Cobalt debug hook, called every INTERVAL instructions, which drives the LuaSampler.
+    // Only installed once sampling starts.
+    public static class LuaDebugHook implements DebugHook {
+        // Instructions between each count hook call. Samples are only taken at this granularity.
+        public static final int INTERVAL = 1000;
+
+        private volatile @Nullable LuaSampler sampler;
+        // Scratch space for the frames of a sample. Only one coroutine of a state runs at a time.
+        private final ArrayList<String> frames = new ArrayList<>();
+
+        @Override
+        public boolean inheritHook() {
+            return true; // Coroutines count too
+        }
+
+        @Override
+        public void onCount(LuaState state, DebugState ds, DebugFrame frame) {
+            LuaSampler sampler = this.sampler;
+            if (sampler == null || !sampler.due()) return;
+            // Level 0 is the innermost frame, and getFrame() gives null past the outermost one
+            for (int level = 0; ; level++) {
+                DebugFrame f = ds.getFrame(level);
+                if (f == null) break;
+                frames.add(describe(f));
+            }
+            sampler.record(frames);
+            frames.clear();
+        }
+
+        // Name a frame after its chunk and current line, like "main:12", or "[Java]" for functions implemented in Java
+        private static String describe(DebugFrame frame) {
+            if (frame.closure == null) return "[Java]";
+            LuaString source = frame.closure.getPrototype().source;
+            String chunk = source == null ? "?" : source.toString();
+            // FiguraRequire names chunks "@" + script name
+            if (chunk.startsWith("@") || chunk.startsWith("=")) chunk = chunk.substring(1);
+            return chunk + ":" + frame.currentLine();
+        }
+
+        @Override public void onCall(LuaState state, DebugState ds, DebugFrame frame) {}
+        @Override public void onReturn(LuaState state, DebugState ds, DebugFrame frame) {}
+        @Override public void onLine(LuaState state, DebugState ds, DebugFrame frame, int newLine) {}
+    }
+
+    private final LuaDebugHook debugHook;
+    private boolean debugHookInstalled;
+
     /**
      * Create a Lua runtime, but do not run any user code yet!
      */
@@ -91,11 +165,18 @@ public class LuaRuntime extends LuaState implements ScriptRuntimeComponent<LuaRu
         // Initialize as LuaState
         super(LuaState.builder()
                 .interruptHandler(new LuaRuntimeInterruptHandler())
-                .allocationTracker(avatar.allocationTracker == null ? null : new DelegateAllocationTracker<>(avatar.allocationTracker, AvatarOutOfMemoryError.class, LuaOOM::new))
+                .allocationTracker(avatar.allocationTracker == null ? null : new DelegateAllocationTracker<>(avatar.allocationTracker(AllocationLedger.Source.LUA_HEAP), AvatarOutOfMemoryError.class, LuaOOM::new))
         );
         // We know which avatar is associated with this runtime
         this.avatar = avatar;
+        this.vectorAllocationTracker = avatar.allocationTracker == null ? null : new DelegateAllocationTracker<>(avatar.allocationTracker(AllocationLedger.Source.VECTORS), AvatarOutOfMemoryError.class, LuaOOM::new);
         ((LuaRuntimeInterruptHandler) this.interruptHandler).state = this;
+        // Count instructions if this avatar is metered, by starting out interrupted
+        if (avatar.instructionMeter.enabled) {
+            ((LuaRuntimeInterruptHandler) this.interruptHandler).meteredAvatar = avatar;
+            this.interrupt();
+        }
+        this.debugHook = new LuaDebugHook();
 
         // Fetch other components we depend on
         @Nullable Textures texturesComponent = avatar.getComponent(Textures.TYPE);
@@ -170,6 +251,28 @@ public class LuaRuntime extends LuaState implements ScriptRuntimeComponent<LuaRu
         }
     }
 
+    private void installDebugHook() {
+        if (debugHookInstalled) return;
+        getCurrentThread().getDebugState().setHook(debugHook, false, false, false, LuaDebugHook.INTERVAL);
+        debugHookInstalled = true;
+    }
+
+    // Start sampling this runtime's call stacks into the given sampler, replacing any previous one.
+    // Should be called while no script is running, with the avatar in use. Coroutines which already exist aren't sampled.
+    public void startSampling(LuaSampler sampler) {
+        debugHook.sampler = sampler;
+        installDebugHook();
+    }
+
+    public void stopSampling() {
+        debugHook.sampler = null;
+    }
+
+    @Override
+    public Set<Phase> phases() {
+        return Set.of(Phase.ERROR);
+    }
+
     // When the avatar errors, even when called from another thread,
     // we interrupt the script so it will throw and escape Lua
     @Override
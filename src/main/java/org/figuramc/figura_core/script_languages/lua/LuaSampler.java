@@ -0,0 +1,92 @@
+package org.figuramc.figura_core.script_languages.lua;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sampling profiler for a LuaRuntime. Attach it with LuaRuntime.startSampling().
+ *
+ * Every so many instructions, the runtime's debug hook captures the current Lua call stack. Each frame is named
+ * after its chunk (the script name given by FiguraRequire) and current line, like "main:12". Functions implemented
+ * in Java show up as "[Java]". Identical stacks are merged and counted.
+ *
+ * Sampling by instruction count rather than by time keeps the profiler deterministic and cheap: the stack is only
+ * ever walked on the thread running the script, at a point where it's safe to do so.
+ *
+ * The results can be exported as collapsed stacks ("main:3;main:12;util:40 17", one stack per line), which
+ * flamegraph.pl, speedscope, and similar tools accept. Nothing here depends on the game, so it works headless.
+ */
+public class LuaSampler {
+
+    private final int period; // Sample once every <period> debug hook calls
+    private int countdown;
+
+    // Guarded by "this". Collapsed stack -> number of samples
+    private final Map<String, long[]> stacks = new HashMap<>();
+    private long samples;
+
+    // Scratch space, only used by the sampling thread
+    private final StringBuilder builder = new StringBuilder();
+
+    public LuaSampler(int instructionsPerSample) {
+        this.period = Math.max(1, instructionsPerSample / LuaRuntime.LuaDebugHook.INTERVAL);
+        this.countdown = period;
+    }
+
+    // Called by the debug hook every LuaDebugHook.INTERVAL instructions. True if a sample should be taken now.
+    boolean due() {
+        if (--countdown > 0) return false;
+        countdown = period;
+        return true;
+    }
+
+    // Record one sample, given the names of its frames from the innermost outwards
+    void record(List<String> frames) {
+        if (frames.isEmpty()) return;
+        // Write them out root first
+        for (int i = frames.size() - 1; i >= 0; i--) {
+            builder.append(frames.get(i));
+            if (i > 0) builder.append(';');
+        }
+        String stack = builder.toString();
+        builder.setLength(0);
+        synchronized (this) {
+            stacks.computeIfAbsent(stack, x -> new long[1])[0]++;
+            samples++;
+        }
+    }
+
+    public synchronized long getSampleCount() {
+        return samples;
+    }
+
+    // Number of samples with the given collapsed stack
+    public synchronized long getCount(String stack) {
+        long[] count = stacks.get(stack);
+        return count == null ? 0 : count[0];
+    }
+
+    public synchronized void reset() {
+        stacks.clear();
+        samples = 0;
+    }
+
+    // Write the samples in collapsed-stack format, one "stack count" line per distinct stack
+    public synchronized void writeCollapsed(Appendable out) throws IOException {
+        for (var entry : stacks.entrySet())
+            out.append(entry.getKey()).append(' ').append(Long.toString(entry.getValue()[0])).append('\n');
+    }
+
+    public String toCollapsed() {
+        StringBuilder out = new StringBuilder();
+        try {
+            writeCollapsed(out);
+        } catch (IOException impossible) {
+            throw new IllegalStateException(impossible);
+        }
+        return out.toString();
+    }
+
+}
@@ -4,14 +4,17 @@ import org.figuramc.figura_cobalt.LuaOOM;
 import org.figuramc.figura_cobalt.LuaUncatchableError;
 import org.figuramc.figura_cobalt.org.squiddev.cobalt.Constants;
 import org.figuramc.figura_cobalt.org.squiddev.cobalt.LuaError;
+import org.figuramc.figura_cobalt.org.squiddev.cobalt.LuaString;
 import org.figuramc.figura_cobalt.org.squiddev.cobalt.LuaTable;
 import org.figuramc.figura_cobalt.org.squiddev.cobalt.function.LibFunction;
+import org.figuramc.figura_core.avatars.AllocationLedger;
 import org.figuramc.figura_core.avatars.AvatarModules;
 import org.figuramc.figura_core.avatars.AvatarTemplates;
 import org.figuramc.figura_core.avatars.components.ManagerAccess;
 import org.figuramc.figura_core.data.importer.v1.ModuleImporter;
 import org.figuramc.figura_core.data.materials.ModuleMaterials;
 import org.figuramc.figura_core.manage.AvatarManagers;
+import org.figuramc.figura_core.manage.LoadPriority;
 import org.figuramc.figura_core.minecraft_interop.FiguraConnectionPoint;
 import org.figuramc.figura_core.minecraft_interop.vanilla_parts.VanillaModel;
 import org.figuramc.figura_core.script_languages.lua.LuaRuntime;
@@ -48,7 +51,7 @@ public class ManagerTable {
             } else {
                 File file = entry.file();
                 VanillaModel vanillaModel = FiguraConnectionPoint.GAME_DATA_PROVIDER.getEntity(uuid).getModel();
-                AvatarManagers.ENTITIES.load(uuid, () -> {
+                AvatarManagers.ENTITIES.load(uuid, LoadPriority.LOCAL_PLAYER, () -> {
                     ModuleMaterials materials = ModuleImporter.importFromFile(file);
                     AvatarModules modules = AvatarModules.loadModules(materials);
                     return AvatarTemplates.localPlayer(modules, vanillaModel);
@@ -57,6 +60,9 @@ public class ManagerTable {
             return Constants.NIL;
         }));
 
+        // Memory tracked for each loaded avatar, broken down by source and labelled cumulative or live, as text
+        manager.rawset("memoryReport", LibFunction.create(s -> LuaString.valueOf(s.allocationTracker, AllocationLedger.format(AvatarManagers.memoryReport()))));
+
         return manager;
     }
 
@@ -20,8 +20,8 @@ import static org.figuramc.figura_cobalt.org.squiddev.cobalt.Constants.TNUMBER;
 public class Vec2API {
 
     public static LuaUserdata wrap(Vector2d vec, LuaRuntime state) throws LuaOOM {
-        if (state.allocationTracker != null)
-            state.allocationTracker.track(vec, AllocationTracker.OBJECT_SIZE + AllocationTracker.DOUBLE_SIZE * 2);
+        if (state.vectorAllocationTracker != null)
+            state.vectorAllocationTracker.track(vec, AllocationTracker.OBJECT_SIZE + AllocationTracker.DOUBLE_SIZE * 2);
         return new LuaUserdata(vec, state.figuraMetatables.vec2);
     }
 
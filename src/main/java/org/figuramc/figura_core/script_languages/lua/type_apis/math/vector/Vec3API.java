@@ -20,8 +20,8 @@ import static org.figuramc.figura_cobalt.org.squiddev.cobalt.Constants.TNUMBER;
 public class Vec3API {
 
     public static LuaUserdata wrap(Vector3d vec, LuaRuntime state) throws LuaOOM {
-        if (state.allocationTracker != null)
-            state.allocationTracker.track(vec, AllocationTracker.OBJECT_SIZE + AllocationTracker.DOUBLE_SIZE * 3);
+        if (state.vectorAllocationTracker != null)
+            state.vectorAllocationTracker.track(vec, AllocationTracker.OBJECT_SIZE + AllocationTracker.DOUBLE_SIZE * 3);
         return new LuaUserdata(vec, state.figuraMetatables.vec3);
     }
 
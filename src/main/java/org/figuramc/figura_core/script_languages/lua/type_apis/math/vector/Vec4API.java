@@ -19,8 +19,8 @@ import static org.figuramc.figura_cobalt.org.squiddev.cobalt.Constants.TNUMBER;
 public class Vec4API {
 
     public static LuaUserdata wrap(Vector4d vec, LuaRuntime state) throws LuaOOM {
-        if (state.allocationTracker != null)
-            state.allocationTracker.track(vec, AllocationTracker.OBJECT_SIZE + AllocationTracker.DOUBLE_SIZE * 4);
+        if (state.vectorAllocationTracker != null)
+            state.vectorAllocationTracker.track(vec, AllocationTracker.OBJECT_SIZE + AllocationTracker.DOUBLE_SIZE * 4);
         return new LuaUserdata(vec, state.figuraMetatables.vec4);
     }
 
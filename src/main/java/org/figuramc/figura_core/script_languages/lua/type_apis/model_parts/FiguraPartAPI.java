@@ -81,26 +81,28 @@ public class FiguraPartAPI {
     public static @Nullable FiguraRenderType material(FiguraModelPart self) {
         // Might be null if materials were merged to the parent!
         // This getter is very rarely what you want... TODO consider should we even have it?
-        return self.renderType;
+        return self.renderTypeForWriting();
     }
     // TODO add a way to remove material/set to null
     @LuaExpose @LuaReturnSelf
     public static void material(FiguraModelPart self, FiguraRenderType material, int priority) {
-        QueuedSetters.handle(() -> { self.renderType = material; self.renderTypePriority = priority; });
+        QueuedSetters.handle(self.isPublished(), () -> { self.renderType = material; self.renderTypePriority = priority; });
     }
     @LuaExpose @LuaReturnSelf
     public static void material(FiguraModelPart self, FiguraRenderType material) {
-        QueuedSetters.handle(() -> { self.renderType = material; });
+        QueuedSetters.handle(self.isPublished(), () -> { self.renderType = material; });
     }
 
     // Rebuild/build vertex data! Could be expensive. Be careful when using this.
+    // If the part already has rendering data, only the parts which changed are rewritten, when possible.
+    // While setters are queued (during the init script), the rebuild is queued after them too.
     // TODO: Could we add some more safety to this somehow? So you can't forget to adhere to the rules:
     //       - IF you changed the model part tree structure, remember to rebuild() any ancestor parts which already had rendering data
     //       - Is that really it?
     @LuaExpose @LuaReturnSelf
     public static void rebuild(FiguraModelPart self) throws LuaAvatarError, LuaOOM {
         try {
-            self.buildRenderingData();
+            self.queueRenderingDataUpdate();
         } catch (AvatarError err) {
             throw new LuaAvatarError(err);
         } catch (AvatarOutOfMemoryError err) {
@@ -30,6 +30,16 @@ public class ByteArrayBuilder {
         buffer.put(arr, 0, size);
     }
 
+    // Write the contents at the given index, without moving the buffer's position
+    public void writeTo(ByteBuffer buffer, int index) {
+        buffer.put(index, arr, 0, size);
+    }
+
+    // Empty the builder, keeping its capacity
+    public void clear() {
+        size = 0;
+    }
+
     protected void resizeToFit(int neededIndex) {
         if (neededIndex >= arr.length) {
             arr = Arrays.copyOf(arr, Math.max(10, neededIndex * 2));
@@ -2,13 +2,20 @@ package org.figuramc.figura_core.util.data_structures;
 
 import org.jetbrains.annotations.Nullable;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.Arrays;
 
 public class ByteBufferBuilder extends ByteArrayBuilder {
 
     private static final byte[] EMPTY = new byte[0];
     private static final boolean LITTLE_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+    // Native-order views of the byte array, for writing whole values at once
+    private static final VarHandle FLOATS = MethodHandles.byteArrayViewVarHandle(float[].class, ByteOrder.nativeOrder());
+    private static final VarHandle SHORTS = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.nativeOrder());
+    private static final VarHandle INTS = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.nativeOrder());
 
     public ByteBufferBuilder() { this(10); }
     public ByteBufferBuilder(int initialSize) {
@@ -60,6 +67,33 @@ public class ByteBufferBuilder extends ByteArrayBuilder {
         return this;
     }
 
+    // Reserve the given number of zeroed bytes at the end, and return the index of the first one.
+    // Fill them in afterwards with the put methods.
+    public int reserve(int length) {
+        int start = size;
+        resizeToFit(start + length - 1);
+        Arrays.fill(arr, start, start + length, (byte) 0);
+        size += length;
+        return start;
+    }
+
+    // Overwrite values at the given index, in native order. Indices must be within the size.
+    public void put(int index, byte value) {
+        arr[index] = value;
+    }
+    public void putUnsignedShort(int index, char value) {
+        SHORTS.set(arr, index, (short) value);
+    }
+    public void putInt(int index, int value) {
+        INTS.set(arr, index, value);
+    }
+    public void putFloat(int index, float value) {
+        FLOATS.set(arr, index, value);
+    }
+    public void putArr(int index, byte[] src, int start, int length) {
+        System.arraycopy(src, start, arr, index, length);
+    }
+
     // Convert to a byte buffer with native byte order.
     // If the existing buffer has enough capacity, overwrite that one instead.
     // Otherwise, create a new buffer.
@@ -113,6 +113,25 @@ public class FiguraTransformStack {
         }
     }
 
+    // Push, replacing the new top with the given values instead of copying the old top
+    public void push(Matrix4fc position, Matrix3fc normal, Vector4fc color, Vector2fc light) {
+        curIndex++;
+        if (curIndex == maxSize) {
+            positionMatrices.add(new Matrix4f(position));
+            normalMatrices.add(new Matrix3f(normal));
+            colorMultipliers.add(new Vector4f(color));
+            lightOverrides.add(new Vector2f(light));
+            maxSize++;
+        } else if (curIndex > maxSize) {
+            throw new IllegalStateException("Current index should never be above max size - this is a bug in FiguraMatrixStack!");
+        } else {
+            positionMatrices.get(curIndex).set(position);
+            normalMatrices.get(curIndex).set(normal);
+            colorMultipliers.get(curIndex).set(color);
+            lightOverrides.get(curIndex).set(light);
+        }
+    }
+
     public void pop() {
         curIndex--;
     }
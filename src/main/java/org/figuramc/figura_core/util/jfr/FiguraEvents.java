@@ -0,0 +1,78 @@
+package org.figuramc.figura_core.util.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * Java Flight Recorder events for figura-core's phases, so Figura's cost can be lined up with GC and other JVM
+ * activity in a recording. They're all in the "Figura" category.
+ *
+ * Usage follows the usual JFR pattern: create the event and begin() it, do the work, then fill in the fields and
+ * commit() only if shouldCommit(). When JFR isn't recording, shouldCommit() is false and the event objects are
+ * optimized away, so this costs next to nothing.
+ */
+public final class FiguraEvents {
+
+    private FiguraEvents() {}
+
+    @Name("org.figuramc.AvatarImport")
+    @Label("Avatar Import")
+    @Category({"Figura", "Avatar Loading"})
+    @Description("Reading a module and its files from disk")
+    public static final class AvatarImport extends Event {
+        @Label("Path") public String path;
+    }
+
+    @Name("org.figuramc.AvatarConstruction")
+    @Label("Avatar Component Construction")
+    @Category({"Figura", "Avatar Loading"})
+    @Description("Building an avatar's components")
+    public static final class AvatarConstruction extends Event {
+        @Label("Avatar") public String avatar;
+        @Label("Components") public int components;
+    }
+
+    @Name("org.figuramc.AvatarReadiness")
+    @Label("Avatar Readiness")
+    @Category({"Figura", "Avatar Loading"})
+    @Description("Waiting, after construction, for an avatar's components to become ready (texture uploads and such)")
+    public static final class AvatarReadiness extends Event {
+        @Label("Avatar") public String avatar;
+        @Label("Succeeded") public boolean succeeded;
+    }
+
+    @Name("org.figuramc.AvatarTick")
+    @Label("Avatar Tick")
+    @Category({"Figura", "Ticking"})
+    public static final class AvatarTick extends Event {
+        @Label("Avatar") public String avatar;
+    }
+
+    @Name("org.figuramc.RenderDataBuild")
+    @Label("Render Data Build")
+    @Category({"Figura", "Rendering"})
+    @Description("Rebuilding the vertex data of a model part")
+    public static final class RenderDataBuild extends Event {
+        @Label("Avatar") public String avatar;
+        @Label("Part") public String part;
+    }
+
+    @Name("org.figuramc.TextureAtlasBuild")
+    @Label("Texture Atlas Build")
+    @Category({"Figura", "Rendering"})
+    public static final class TextureAtlasBuild extends Event {
+        @Label("Textures") public int textures;
+        @Label("Width") public int width;
+        @Label("Height") public int height;
+    }
+
+    @Name("org.figuramc.ScriptSection")
+    @Label("Script Section")
+    @Category({"Figura", "Scripts"})
+    @Description("A timed section of script code, see AvatarTimeTracker")
+    public static final class ScriptSection extends Event {
+        @Label("Avatar") public String avatar;
+        @Label("Category") public String category;
+        @Label("Killed") @Description("Whether the section overran its budget") public boolean killed;
+    }
+
+}
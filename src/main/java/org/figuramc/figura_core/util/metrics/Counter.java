@@ -0,0 +1,30 @@
+package org.figuramc.figura_core.util.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free counter. Cheap to update from many threads at once; reading it sums the per-thread cells.
+ * Counters normally only go up, but add() accepts negative values for counts which go both ways.
+ */
+public final class Counter {
+
+    public final String name;
+    private final LongAdder value = new LongAdder();
+
+    Counter(String name) {
+        this.name = name;
+    }
+
+    public void increment() {
+        value.increment();
+    }
+
+    public void add(long delta) {
+        value.add(delta);
+    }
+
+    public long get() {
+        return value.sum();
+    }
+
+}
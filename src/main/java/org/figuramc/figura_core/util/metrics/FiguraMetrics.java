@@ -0,0 +1,84 @@
+package org.figuramc.figura_core.util.metrics;
+
+import org.figuramc.figura_core.avatars.AllocationLedger;
+import org.figuramc.figura_core.avatars.Avatar;
+import org.figuramc.figura_core.avatars.components.AvatarEvents;
+import org.figuramc.figura_core.manage.AvatarLoadScheduler;
+import org.figuramc.figura_core.manage.AvatarManagers;
+import org.figuramc.figura_core.manage.AvatarReaper;
+import org.figuramc.figura_core.manage.CemManager;
+import org.figuramc.figura_core.manage.CemResidency;
+import org.figuramc.figura_core.model.rendering.DirectBufferPool;
+import org.figuramc.figura_core.script_hooks.EventListener;
+import org.figuramc.figura_core.script_hooks.timing.TimingHistogram;
+
+import java.util.ArrayList;
+import java.util.function.ToLongFunction;
+
+/**
+ * The metrics figura-core reports into. Add a MetricsSink to REGISTRY to receive them; they're published from
+ * AvatarManagers.pollAll(), once per publish interval.
+ *
+ * Counters and histograms are updated by the subsystems as things happen. Gauges read the current state of the
+ * managers when publishing, on the main thread.
+ */
+public final class FiguraMetrics {
+
+    private FiguraMetrics() {}
+
+    public static final MetricsRegistry REGISTRY = new MetricsRegistry();
+
+    // Avatars
+    public static final Counter AVATAR_LOAD_ERRORS = REGISTRY.counter("avatars.load_errors");
+    // From the start of loading until the avatar is ready and takes its place in the manager
+    public static final TimingHistogram AVATAR_LOAD_LATENCY = REGISTRY.histogram("avatars.load_latency");
+
+    // Scripts
+    public static final Counter SCRIPTS_KILLED = REGISTRY.counter("scripts.killed"); // Overran their time budget
+    public static final Counter SCRIPTS_OVER_QUOTA = REGISTRY.counter("scripts.over_instruction_quota");
+
+    // Events queued from one avatar to another
+    public static final Counter EVENTS_QUEUED = REGISTRY.counter("events.queued");
+
+    static {
+        REGISTRY.gauge("avatars.loaded", () -> AvatarManagers.ENTITIES.loadedCount() + AvatarManagers.GUIS.loadedCount());
+        REGISTRY.gauge("avatars.in_progress", () -> AvatarManagers.ENTITIES.inProgressCount() + AvatarManagers.GUIS.inProgressCount());
+        REGISTRY.gauge("avatars.reaper_pending", AvatarReaper.INSTANCE::getPendingCount);
+        REGISTRY.gauge("loader.queue_depth", AvatarLoadScheduler.INSTANCE::getQueueDepth);
+        REGISTRY.gauge("loader.running", AvatarLoadScheduler.INSTANCE::getRunningCount);
+        REGISTRY.gauge("cem.imports_in_progress", CemManager::importsInProgress);
+        REGISTRY.gauge("cem.residents", CemResidency.INSTANCE::getResidentCount);
+        REGISTRY.gauge("events.queue_depth", () -> sumOverAvatars(FiguraMetrics::queuedEvents));
+        REGISTRY.gauge("memory.texture_bytes", () -> sumOverAvatars(a -> a.allocationLedger.get(AllocationLedger.Source.TEXTURES)));
+        // Render buffers are live, while vertex data is cumulative (see AllocationLedger.Source.live), so they're kept apart
+        REGISTRY.gauge("memory.render_data_bytes", () -> sumOverAvatars(a -> a.allocationLedger.get(AllocationLedger.Source.RENDER_BUFFERS)));
+        REGISTRY.gauge("memory.vertex_data_bytes_cumulative", () -> sumOverAvatars(a -> a.allocationLedger.get(AllocationLedger.Source.VERTEX_DATA)));
+        REGISTRY.gauge("memory.native_bytes_pending_destruction", AvatarReaper.INSTANCE::getPendingBytes);
+        REGISTRY.gauge("memory.pooled_buffer_bytes", DirectBufferPool.INSTANCE::getPooledBytes);
+    }
+
+    // Reused between publishes, which all happen on the main thread
+    private static final ArrayList<Avatar<?>> AVATARS = new ArrayList<>();
+
+    private static long sumOverAvatars(ToLongFunction<Avatar<?>> function) {
+        AvatarManagers.ENTITIES.collectLoaded(AVATARS);
+        AvatarManagers.GUIS.collectLoaded(AVATARS);
+        try {
+            long sum = 0;
+            for (Avatar<?> avatar : AVATARS) sum += function.applyAsLong(avatar);
+            return sum;
+        } finally {
+            AVATARS.clear();
+        }
+    }
+
+    private static long queuedEvents(Avatar<?> avatar) {
+        AvatarEvents events = avatar.getComponent(AvatarEvents.TYPE);
+        if (events == null) return 0;
+        long count = 0;
+        for (EventListener<?, ?> listener : events.eventListeners.values())
+            if (listener != null) count += listener.queueSize();
+        return count;
+    }
+
+}
@@ -0,0 +1,117 @@
+package org.figuramc.figura_core.util.metrics;
+
+import org.figuramc.figura_core.minecraft_interop.FiguraConnectionPoint;
+import org.figuramc.figura_core.script_hooks.timing.TimingHistogram;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongSupplier;
+
+/**
+ * A set of named metrics, and the sinks they're published to.
+ * - Counters are lock-free, and are updated by the code being measured.
+ * - Gauges are callbacks, only evaluated when publishing, so they cost nothing in between.
+ * - Histograms are TimingHistograms, for distributions of durations.
+ *
+ * Registering is idempotent: asking for a counter or histogram that already exists returns the existing one.
+ * See FiguraMetrics for the registry figura-core reports into.
+ */
+public final class MetricsRegistry {
+
+    private sealed interface Metric permits CounterMetric, GaugeMetric, HistogramMetric {}
+    private record CounterMetric(Counter counter) implements Metric {}
+    private record GaugeMetric(LongSupplier supplier) implements Metric {}
+    private record HistogramMetric(TimingHistogram histogram) implements Metric {}
+
+    // ConcurrentHashMap doesn't keep insertion order, so keep the names in order separately
+    private final ConcurrentHashMap<String, Metric> metrics = new ConcurrentHashMap<>();
+    private final CopyOnWriteArrayList<String> order = new CopyOnWriteArrayList<>();
+    private final CopyOnWriteArrayList<MetricsSink> sinks = new CopyOnWriteArrayList<>();
+
+    private volatile long publishIntervalNanos = 1_000_000_000L;
+    private long lastPublish = System.nanoTime(); // Only touched by publishIfDue()
+
+    public Counter counter(String name) {
+        return ((CounterMetric) register(name, new CounterMetric(new Counter(name)), CounterMetric.class)).counter;
+    }
+
+    public TimingHistogram histogram(String name) {
+        return ((HistogramMetric) register(name, new HistogramMetric(new TimingHistogram()), HistogramMetric.class)).histogram;
+    }
+
+    // Register a gauge, replacing any previous gauge of the same name.
+    // The supplier is called on the publishing thread, so it must be thread-safe, and should be cheap.
+    public void gauge(String name, LongSupplier supplier) {
+        Metric existing = metrics.get(name);
+        if (existing != null && !(existing instanceof GaugeMetric)) throw new IllegalArgumentException("Metric " + name + " is already registered as a different kind");
+        if (metrics.put(name, new GaugeMetric(supplier)) == null) order.add(name);
+    }
+
+    private Metric register(String name, Metric metric, Class<? extends Metric> kind) {
+        Metric existing = metrics.putIfAbsent(name, metric);
+        if (existing == null) {
+            order.add(name);
+            return metric;
+        }
+        if (!kind.isInstance(existing)) throw new IllegalArgumentException("Metric " + name + " is already registered as a different kind");
+        return existing;
+    }
+
+    public void addSink(MetricsSink sink) {
+        sinks.add(sink);
+    }
+
+    public void removeSink(MetricsSink sink) {
+        sinks.remove(sink);
+    }
+
+    public void setPublishInterval(long nanos) {
+        this.publishIntervalNanos = nanos;
+    }
+
+    /**
+     * Publish to every sink if the publish interval has passed since last time.
+     * Meant to be called regularly from one thread, like the main thread once per frame. Does nothing without sinks.
+     */
+    public void publishIfDue() {
+        if (sinks.isEmpty()) return;
+        long now = System.nanoTime();
+        if (now - lastPublish < publishIntervalNanos) return;
+        lastPublish = now;
+        publish();
+    }
+
+    /**
+     * Publish the current value of every metric to every sink.
+     * A sink which throws is reported, and doesn't stop the others from receiving the values.
+     */
+    public void publish() {
+        for (MetricsSink sink : sinks) {
+            try {
+                report(sink);
+            } catch (Throwable unexpected) {
+                FiguraConnectionPoint.CONSOLE_OUTPUT.reportUnexpectedError(unexpected);
+            }
+        }
+    }
+
+    /**
+     * Send the current value of every metric to the given sink, whether or not it's registered.
+     */
+    public void report(MetricsSink sink) {
+        sink.begin();
+        try {
+            for (String name : order) {
+                switch (metrics.get(name)) {
+                    case CounterMetric(Counter counter) -> sink.counter(name, counter.get());
+                    case GaugeMetric(LongSupplier supplier) -> sink.gauge(name, supplier.getAsLong());
+                    case HistogramMetric(TimingHistogram histogram) -> sink.histogram(name, histogram);
+                    case null -> {}
+                }
+            }
+        } finally {
+            sink.end();
+        }
+    }
+
+}
@@ -0,0 +1,24 @@
+package org.figuramc.figura_core.util.metrics;
+
+import org.figuramc.figura_core.script_hooks.timing.TimingHistogram;
+
+/**
+ * Receives the values of every metric in a MetricsRegistry, each time it's published.
+ * Implement this to export figura-core's metrics somewhere: a log, a debug screen, a monitoring system...
+ *
+ * Calls for one publish happen on one thread, between begin() and end(), with metrics in registration order.
+ */
+public interface MetricsSink {
+
+    default void begin() {}
+
+    void counter(String name, long value);
+
+    void gauge(String name, long value);
+
+    // The histogram is live and may change while being read; read what's needed before returning.
+    void histogram(String name, TimingHistogram histogram);
+
+    default void end() {}
+
+}
@@ -0,0 +1,72 @@
+package org.figuramc.figura_core.util.metrics;
+
+import org.figuramc.figura_core.script_hooks.timing.TimingHistogram;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A MetricsSink which keeps the values from the latest publish in memory, for tests and debug screens.
+ * Each publish replaces the previous values entirely.
+ */
+public final class MetricsSnapshot implements MetricsSink {
+
+    public record Distribution(long count, long p50, long p95, long p99, long max) {}
+
+    private Map<String, Long> counters = Map.of(), gauges = Map.of();
+    private Map<String, Distribution> histograms = Map.of();
+    // Filled during a publish, then swapped in by end()
+    private LinkedHashMap<String, Long> nextCounters, nextGauges;
+    private LinkedHashMap<String, Distribution> nextHistograms;
+
+    @Override
+    public synchronized void begin() {
+        nextCounters = new LinkedHashMap<>();
+        nextGauges = new LinkedHashMap<>();
+        nextHistograms = new LinkedHashMap<>();
+    }
+
+    @Override
+    public synchronized void counter(String name, long value) {
+        nextCounters.put(name, value);
+    }
+
+    @Override
+    public synchronized void gauge(String name, long value) {
+        nextGauges.put(name, value);
+    }
+
+    @Override
+    public synchronized void histogram(String name, TimingHistogram histogram) {
+        nextHistograms.put(name, new Distribution(histogram.count(), histogram.p50(), histogram.p95(), histogram.p99(), histogram.max()));
+    }
+
+    @Override
+    public synchronized void end() {
+        counters = Collections.unmodifiableMap(nextCounters);
+        gauges = Collections.unmodifiableMap(nextGauges);
+        histograms = Collections.unmodifiableMap(nextHistograms);
+        nextCounters = nextGauges = null;
+        nextHistograms = null;
+    }
+
+    // Value of the counter in the latest publish, or 0 if it wasn't there
+    public synchronized long getCounter(String name) {
+        return counters.getOrDefault(name, 0L);
+    }
+
+    // Value of the gauge in the latest publish, or 0 if it wasn't there
+    public synchronized long getGauge(String name) {
+        return gauges.getOrDefault(name, 0L);
+    }
+
+    public synchronized Distribution getHistogram(String name) {
+        return histograms.getOrDefault(name, new Distribution(0, 0, 0, 0, 0));
+    }
+
+    public synchronized Map<String, Long> getCounters() { return counters; }
+    public synchronized Map<String, Long> getGauges() { return gauges; }
+    public synchronized Map<String, Distribution> getHistograms() { return histograms; }
+
+}
@@ -0,0 +1,29 @@
+package org.figuramc.figura_core;
+
+import org.figuramc.figura_core.minecraft_interop.ConsoleOutput;
+import org.figuramc.figura_core.minecraft_interop.FiguraConnectionPoint;
+
+import java.lang.reflect.Proxy;
+
+/**
+ * Sets up figura-core for tests, without a client behind it.
+ */
+public final class TestCore {
+
+    private static boolean initialized;
+
+    private TestCore() {}
+
+    // Safe to call from every test class; only the first call does anything
+    public static synchronized void init() {
+        if (initialized) return;
+        initialized = true;
+        // Errors and verbose logs go to the console; discard them
+        FiguraConnectionPoint.CONSOLE_OUTPUT = (ConsoleOutput) Proxy.newProxyInstance(ConsoleOutput.class.getClassLoader(), new Class<?>[] { ConsoleOutput.class }, (proxy, method, args) -> null);
+        // Test component types have to exist before finishInit() freezes them
+        TestTicker.TYPE.getClass();
+        TestFailure.TYPE.getClass();
+        FiguraConnectionPoint.finishInit();
+    }
+
+}
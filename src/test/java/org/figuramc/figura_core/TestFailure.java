@@ -0,0 +1,20 @@
+package org.figuramc.figura_core;
+
+import org.figuramc.figura_core.avatars.AvatarComponent;
+import org.figuramc.figura_core.avatars.errors.AvatarInitError;
+import org.figuramc.figura_core.util.exception.FiguraException;
+import org.figuramc.figura_translations.TranslatableItems;
+
+/**
+ * A component which always fails to build. It depends on TestTicker, so an avatar with both builds TestTicker first.
+ * Registered by TestCore.init(), since component types can't be created once they're frozen.
+ */
+public final class TestFailure implements AvatarComponent<TestFailure> {
+
+    public static final Type<TestFailure> TYPE = new Type<>("TEST_FAILURE", (avatar, modules) -> {
+        throw new AvatarInitError(FiguraException.INTERNAL_ERROR, new TranslatableItems.Items1<>("Test failure"));
+    }, TestTicker.TYPE);
+
+    private TestFailure() {}
+
+}
@@ -0,0 +1,43 @@
+package org.figuramc.figura_core;
+
+import org.figuramc.figura_core.avatars.Avatar;
+import org.figuramc.figura_core.avatars.AvatarComponent;
+
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * A component which hands its avatar to a callback each tick and on destruction, so tests can run code inside them.
+ * Registered by TestCore.init(), since component types can't be created once they're frozen.
+ */
+public final class TestTicker implements AvatarComponent<TestTicker> {
+
+    public static final Type<TestTicker> TYPE = new Type<>("TEST_TICKER", (avatar, modules) -> new TestTicker(avatar));
+
+    // What to run on each tick, set by the test using this
+    public static volatile Consumer<Avatar<?>> onTick = avatar -> {};
+    // What to run when destroyed
+    public static volatile Consumer<Avatar<?>> onDestroy = avatar -> {};
+
+    private final Avatar<?> avatar;
+
+    private TestTicker(Avatar<?> avatar) {
+        this.avatar = avatar;
+    }
+
+    @Override
+    public Set<Phase> phases() {
+        return Set.of(Phase.TICK, Phase.DESTROY);
+    }
+
+    @Override
+    public void tick() {
+        onTick.accept(avatar);
+    }
+
+    @Override
+    public void destroy() {
+        onDestroy.accept(avatar);
+    }
+
+}
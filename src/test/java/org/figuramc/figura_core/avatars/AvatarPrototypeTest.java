@@ -0,0 +1,63 @@
+package org.figuramc.figura_core.avatars;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks how a prototype counts its users, and how it handles builders failing while others wait on them.
+ */
+public class AvatarPrototypeTest {
+
+    private static final Object KEY = new Object();
+
+    @Test
+    public void retiresWhenLastUserReleases() {
+        AvatarPrototype prototype = new AvatarPrototype(null);
+        assertTrue(prototype.acquire());
+        assertTrue(prototype.acquire());
+        prototype.release();
+        assertFalse(prototype.isRetired());
+        prototype.release();
+        assertTrue(prototype.isRetired());
+        assertFalse(prototype.acquire());
+    }
+
+    @Test
+    public void builderErrorsGoToTheirOwnCaller() throws Exception {
+        AvatarPrototype prototype = new AvatarPrototype(null);
+        CountDownLatch building = new CountDownLatch(1);
+        CountDownLatch fail = new CountDownLatch(1);
+        AtomicReference<Throwable> firstError = new AtomicReference<>();
+        Thread first = new Thread(() -> {
+            try {
+                prototype.<String, IOException, InterruptedException>share(KEY, () -> {
+                    building.countDown();
+                    fail.await();
+                    throw new IOException("first builder failed");
+                });
+            } catch (Throwable t) {
+                firstError.set(t);
+            }
+        });
+        first.start();
+        building.await();
+        // Waits on the first builder (unless it already failed), then builds the value itself
+        Thread release = new Thread(() -> {
+            try { Thread.sleep(20); } catch (InterruptedException ignored) {}
+            fail.countDown();
+        });
+        release.start();
+        String value = prototype.share(KEY, () -> "second");
+        first.join();
+        release.join();
+        assertInstanceOf(IOException.class, firstError.get());
+        assertEquals("second", value);
+        assertTrue(prototype.isShared(value));
+    }
+
+}
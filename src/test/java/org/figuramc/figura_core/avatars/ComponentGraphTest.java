@@ -0,0 +1,47 @@
+package org.figuramc.figura_core.avatars;
+
+import org.figuramc.figura_core.TestCore;
+import org.figuramc.figura_core.TestFailure;
+import org.figuramc.figura_core.TestTicker;
+import org.figuramc.figura_core.avatars.errors.AvatarInitError;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Builds avatars where a component fails, and checks the components built before it are cleaned up.
+ */
+public class ComponentGraphTest {
+
+    @BeforeAll
+    static void setUp() {
+        TestCore.init();
+    }
+
+    @AfterEach
+    void resetHooks() {
+        TestTicker.onDestroy = avatar -> {};
+    }
+
+    @Test
+    public void builtComponentsAreDestroyedOnFailure() {
+        AtomicInteger destroyed = new AtomicInteger();
+        TestTicker.onDestroy = avatar -> destroyed.incrementAndGet();
+        assertThrows(AvatarInitError.class, () -> new Avatar<>(null, "failing", new AvatarModules(List.of(), List.of()), null, List.of(TestTicker.TYPE, TestFailure.TYPE)));
+        assertEquals(1, destroyed.get());
+    }
+
+    @Test
+    public void destroyErrorsDontHideTheFailure() {
+        TestTicker.onDestroy = avatar -> { throw new IllegalStateException("destroy failed"); };
+        AvatarInitError error = assertThrows(AvatarInitError.class, () -> new Avatar<>(null, "failing", new AvatarModules(List.of(), List.of()), null, List.of(TestTicker.TYPE, TestFailure.TYPE)));
+        assertEquals(1, error.getSuppressed().length);
+        assertInstanceOf(IllegalStateException.class, error.getSuppressed()[0]);
+    }
+
+}
@@ -0,0 +1,56 @@
+package org.figuramc.figura_core.manage;
+
+import org.figuramc.figura_core.TestCore;
+import org.figuramc.figura_core.avatars.Avatar;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks which changes to a manager's keys affect each other: cancelling loads, and per-key generations.
+ */
+public class AvatarManagerTest {
+
+    @BeforeAll
+    static void setUp() {
+        TestCore.init();
+    }
+
+    @Test
+    public void staleCancelKeepsNewerLoad() {
+        AvatarManager<String> manager = new AvatarManager<>(LoadPriority.ENTITY);
+        AvatarLoadScheduler.Task<@Nullable Avatar<String>> first = manager.load("key", () -> null);
+        AvatarLoadScheduler.Task<@Nullable Avatar<String>> second = manager.load("key", () -> null);
+        manager.cancelInProgress("key", first);
+        assertSame(second, manager.getLoadTask("key"));
+        manager.cancelInProgress("key", second);
+        assertFalse(manager.isInProgress("key"));
+    }
+
+    @Test
+    public void keyGenerationIgnoresOtherKeys() {
+        AvatarManager<String> manager = new AvatarManager<>(LoadPriority.ENTITY);
+        manager.load("mine", () -> null);
+        int mine = manager.generation("mine");
+        manager.load("other", () -> null);
+        manager.cancelInProgress("other");
+        assertEquals(mine, manager.generation("mine"));
+        manager.cancelInProgress("mine");
+        assertNotEquals(mine, manager.generation("mine"));
+    }
+
+    @Test
+    public void absentKeyGenerationChangesAfterComingAndGoing() {
+        AvatarManager<String> manager = new AvatarManager<>(LoadPriority.ENTITY);
+        int absent = manager.generation("key");
+        manager.load("other", () -> null);
+        assertEquals(absent, manager.generation("key"));
+        manager.load("key", () -> null);
+        assertNotEquals(absent, manager.generation("key"));
+        manager.cancelInProgress("key");
+        assertNotEquals(absent, manager.generation("key"));
+    }
+
+}
@@ -0,0 +1,154 @@
+package org.figuramc.figura_core.manage;
+
+import org.figuramc.figura_core.TestCore;
+import org.figuramc.figura_core.TestTicker;
+import org.figuramc.figura_core.avatars.Avatar;
+import org.figuramc.figura_core.avatars.AvatarModules;
+import org.figuramc.figura_core.script_hooks.EventListener;
+import org.figuramc.figura_core.script_hooks.callback.CallbackType;
+import org.figuramc.figura_core.script_hooks.callback.items.CallbackItem;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Ticks avatars which each queue an invocation on a shared listener, and checks where they ran
+ * and the order the invocations arrived in.
+ */
+public class AvatarTickSchedulerTest {
+
+    private static final int AVATARS = 6;
+
+    // Shared by all the test avatars
+    private static volatile EventListener<CallbackItem.I32, CallbackItem.Unit> target;
+    private static final Map<Avatar<?>, Integer> INDICES = new ConcurrentHashMap<>();
+    private static final Map<Avatar<?>, Thread> TICKED_ON = new ConcurrentHashMap<>();
+    private static volatile CountDownLatch @Nullable [] queued; // Counted down by each avatar once it queued, if reversing
+
+    @BeforeAll
+    static void setUp() {
+        TestCore.init();
+        // Each avatar queues its index on the target listener every tick.
+        TestTicker.onTick = avatar -> {
+            int index = INDICES.get(avatar);
+            TICKED_ON.put(avatar, Thread.currentThread());
+            CountDownLatch[] latches = queued;
+            // When reversed, wait for the next avatar to queue first, so the invocations are queued last to first.
+            // managedBlock() lets the pool add a thread to make up for this one, even if it only has one worker.
+            if (latches != null && index + 1 < AVATARS) {
+                try {
+                    ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+                        @Override public boolean block() throws InterruptedException { return latches[index + 1].await(5, TimeUnit.SECONDS); }
+                        @Override public boolean isReleasable() { return latches[index + 1].getCount() == 0; }
+                    });
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            target.queueInvocation(new CallbackItem.I32(index), new AvatarView<>(avatar));
+            if (latches != null) latches[index].countDown();
+        };
+    }
+
+    @AfterAll
+    static void tearDown() {
+        TestTicker.onTick = avatar -> {};
+    }
+
+    @BeforeEach
+    void resetTarget() throws Exception {
+        INDICES.clear();
+        TICKED_ON.clear();
+        queued = null;
+        Avatar<String> owner = new Avatar<>(null, "owner", new AvatarModules(List.of(), List.of()), null, List.of());
+        target = new EventListener<>(owner, new CallbackType.Func<>(CallbackType.I32.INSTANCE, CallbackType.Unit.INSTANCE));
+    }
+
+    @Test
+    public void threadSafeAvatarsTickInParallel() throws Exception {
+        List<Avatar<String>> avatars = messengers(true);
+        AvatarTickScheduler.tick(avatars);
+        for (Avatar<String> avatar : avatars) {
+            Thread thread = TICKED_ON.get(avatar);
+            assertNotNull(thread, avatar.key + " wasn't ticked");
+            assertTrue(thread.getName().startsWith("Figura Avatar Ticker"), avatar.key + " ticked on " + thread.getName());
+        }
+    }
+
+    @Test
+    public void outboxesFlushInAvatarOrder() throws Exception {
+        List<Avatar<String>> avatars = messengers(true);
+        for (int tick = 0; tick < 3; tick++) {
+            reverse();
+            AvatarTickScheduler.tick(avatars);
+            assertEquals(expectedOrder(), drain());
+        }
+    }
+
+    @Test
+    public void threadUnsafeAvatarsTickOnCaller() throws Exception {
+        List<Avatar<String>> avatars = messengers(false);
+        AvatarTickScheduler.tick(avatars);
+        for (Avatar<String> avatar : avatars)
+            assertSame(Thread.currentThread(), TICKED_ON.get(avatar));
+        assertEquals(expectedOrder(), drain());
+    }
+
+    @Test
+    public void markingTakesEffectNextTick() throws Exception {
+        List<Avatar<String>> avatars = messengers(false);
+        AvatarTickScheduler.tick(avatars);
+        assertSame(Thread.currentThread(), TICKED_ON.get(avatars.getFirst()));
+        for (Avatar<String> avatar : avatars) {
+            assertFalse(new AvatarView<>(avatar).isThreadSafe());
+            avatar.markThreadSafe();
+            assertTrue(new AvatarView<>(avatar).isThreadSafe());
+        }
+        AvatarTickScheduler.tick(avatars);
+        assertNotSame(Thread.currentThread(), TICKED_ON.get(avatars.getFirst()));
+    }
+
+    private static List<Avatar<String>> messengers(boolean threadSafe) throws Exception {
+        List<Avatar<String>> avatars = new ArrayList<>();
+        for (int i = 0; i < AVATARS; i++) {
+            Avatar<String> avatar = new Avatar<>(null, "messenger " + i, new AvatarModules(List.of(), List.of()), null, List.of(TestTicker.TYPE));
+            if (threadSafe) avatar.markThreadSafe();
+            INDICES.put(avatar, i);
+            avatars.add(avatar);
+        }
+        return avatars;
+    }
+
+    // Make the avatars queue their invocations in reverse order during the next tick
+    private static void reverse() {
+        CountDownLatch[] latches = new CountDownLatch[AVATARS];
+        for (int i = 0; i < AVATARS; i++) latches[i] = new CountDownLatch(1);
+        queued = latches;
+    }
+
+    private static List<Integer> expectedOrder() {
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < AVATARS; i++) order.add(i);
+        return order;
+    }
+
+    private static List<Integer> drain() {
+        List<Integer> received = new ArrayList<>();
+        EventListener.QueuedInvocation<CallbackItem.I32> queued;
+        while ((queued = target.pollInvocation()) != null) received.add(queued.args().value());
+        return received;
+    }
+
+}
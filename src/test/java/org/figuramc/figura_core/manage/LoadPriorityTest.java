@@ -0,0 +1,64 @@
+package org.figuramc.figura_core.manage;
+
+import org.figuramc.figura_core.minecraft_interop.FiguraConnectionPoint;
+import org.figuramc.figura_core.minecraft_interop.game_data.GameDataProvider;
+import org.figuramc.figura_core.minecraft_interop.game_data.entity.MinecraftEntity;
+import org.jetbrains.annotations.Nullable;
+import org.joml.Vector3d;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Prioritizes entities against a fake game, with and without a local player.
+ */
+public class LoadPriorityTest {
+
+    private static final UUID LOCAL = new UUID(0, 1);
+
+    private final GameDataProvider previous = FiguraConnectionPoint.GAME_DATA_PROVIDER;
+
+    @AfterEach
+    void restoreGame() {
+        FiguraConnectionPoint.GAME_DATA_PROVIDER = previous;
+    }
+
+    @Test
+    public void noLocalPlayerGivesTheTierDefault() {
+        FiguraConnectionPoint.GAME_DATA_PROVIDER = fakeGame(null, Map.of());
+        assertEquals(new LoadPriority(LoadPriority.Tier.CEM_ENTITY, 0), LoadPriority.forEntity(LoadPriority.Tier.CEM_ENTITY, fakeEntity(3, 4, 0)));
+    }
+
+    @Test
+    public void unloadedLocalPlayerGivesTheTierDefault() {
+        FiguraConnectionPoint.GAME_DATA_PROVIDER = fakeGame(LOCAL, Map.of());
+        assertEquals(new LoadPriority(LoadPriority.Tier.ENTITY, 0), LoadPriority.forEntity(LoadPriority.Tier.ENTITY, fakeEntity(3, 4, 0)));
+    }
+
+    @Test
+    public void distanceIsToTheLocalPlayer() {
+        FiguraConnectionPoint.GAME_DATA_PROVIDER = fakeGame(LOCAL, Map.of(LOCAL, fakeEntity(1, 0, 0)));
+        assertEquals(new LoadPriority(LoadPriority.Tier.ENTITY, 25), LoadPriority.forEntity(LoadPriority.Tier.ENTITY, fakeEntity(4, 4, 0)));
+    }
+
+    private static GameDataProvider fakeGame(@Nullable UUID localUUID, Map<UUID, MinecraftEntity> entities) {
+        return (GameDataProvider) Proxy.newProxyInstance(GameDataProvider.class.getClassLoader(), new Class<?>[] { GameDataProvider.class }, (proxy, method, args) -> switch (method.getName()) {
+            case "getLocalUUID" -> localUUID;
+            case "getEntity" -> entities.get((UUID) args[0]);
+            default -> throw new UnsupportedOperationException(method.getName());
+        });
+    }
+
+    private static MinecraftEntity fakeEntity(double x, double y, double z) {
+        return (MinecraftEntity) Proxy.newProxyInstance(MinecraftEntity.class.getClassLoader(), new Class<?>[] { MinecraftEntity.class }, (proxy, method, args) -> switch (method.getName()) {
+            case "getPosition" -> ((Vector3d) args[1]).set(x, y, z);
+            default -> throw new UnsupportedOperationException(method.getName());
+        });
+    }
+
+}
@@ -0,0 +1,95 @@
+package org.figuramc.figura_core.model.part.parts;
+
+import org.figuramc.figura_core.TestCore;
+import org.figuramc.figura_core.avatars.Avatar;
+import org.figuramc.figura_core.avatars.AvatarModules;
+import org.figuramc.figura_core.avatars.components.EntityRoot;
+import org.figuramc.figura_core.avatars.components.RenderDataHolder;
+import org.figuramc.figura_core.script_hooks.flags.QueuedSetters;
+import org.joml.Vector3f;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Sets part state with queued setters enabled, like the init script does, and checks which changes are queued
+ * and which read back right away.
+ */
+public class PartPublishingTest {
+
+    private Avatar<String> avatar;
+    private FiguraModelPart root;
+
+    @BeforeAll
+    static void setUp() {
+        TestCore.init();
+    }
+
+    @BeforeEach
+    void buildAvatar() throws Exception {
+        avatar = new Avatar<>(null, "publishing", new AvatarModules(List.of(), List.of()), null, List.of(RenderDataHolder.TYPE, EntityRoot.TYPE));
+        root = avatar.assertComponent(EntityRoot.TYPE).root;
+        QueuedSetters.getTasks(); // Start from an empty queue
+    }
+
+    @Test
+    public void partsBuiltWithTheAvatarArePublished() {
+        assertTrue(root.isPublished());
+    }
+
+    @Test
+    public void publishedSettersAreQueued() {
+        QueuedSetters.FLAG.use(() -> QueuedSetters.handle(root.isPublished(), () -> root.transform.setPosition(1, 2, 3)));
+        assertEquals(new Vector3f(), root.transform.getPosition());
+        flush();
+        assertEquals(new Vector3f(1, 2, 3), root.transform.getPosition());
+    }
+
+    @Test
+    public void newPartsReadBackImmediately() throws Exception {
+        FiguraModelPart part = new FiguraModelPart(avatar, "part", List.of());
+        FiguraModelPart child = new FiguraModelPart(avatar, "child", List.of());
+        assertFalse(part.isPublished());
+        QueuedSetters.FLAG.use(() -> {
+            QueuedSetters.handle(part.isPublished(), () -> part.transform.setPosition(1, 2, 3));
+            part.addChild(child);
+        });
+        assertEquals(new Vector3f(1, 2, 3), part.transform.getPosition());
+        assertSame(child, part.getChildByName("child"));
+        assertTrue(QueuedSetters.getTasks().isEmpty());
+    }
+
+    @Test
+    public void attachingPublishesTheSubtree() throws Exception {
+        FiguraModelPart part = new FiguraModelPart(avatar, "part", List.of());
+        FiguraModelPart child = new FiguraModelPart(avatar, "child", List.of());
+        QueuedSetters.FLAG.use(() -> {
+            part.addChild(child);
+            root.addChild(part);
+            QueuedSetters.handle(child.isPublished(), () -> child.transform.setPosition(1, 2, 3));
+        });
+        assertTrue(part.isPublished());
+        assertTrue(child.isPublished());
+        // Nothing the main thread reads has changed until it flushes the queue
+        assertNull(root.getChildByName("part"));
+        assertEquals(new Vector3f(), child.transform.getPosition());
+        flush();
+        assertSame(part, root.getChildByName("part"));
+        assertEquals(new Vector3f(1, 2, 3), child.transform.getPosition());
+    }
+
+    @Test
+    public void settersRunImmediatelyWithoutTheFlag() {
+        QueuedSetters.handle(root.isPublished(), () -> root.transform.setPosition(1, 2, 3));
+        assertEquals(new Vector3f(1, 2, 3), root.transform.getPosition());
+    }
+
+    private static void flush() {
+        for (Runnable task : QueuedSetters.getTasks()) task.run();
+    }
+
+}
@@ -0,0 +1,137 @@
+package org.figuramc.figura_core.model.part.parts;
+
+import org.figuramc.figura_core.TestCore;
+import org.figuramc.figura_core.avatars.Avatar;
+import org.figuramc.figura_core.avatars.AvatarModules;
+import org.figuramc.figura_core.avatars.components.RenderDataHolder;
+import org.figuramc.figura_core.minecraft_interop.FiguraConnectionPoint;
+import org.figuramc.figura_core.minecraft_interop.render.ClientPartRenderer;
+import org.figuramc.figura_core.model.rendering.FiguraRenderType;
+import org.figuramc.figura_core.model.rendering.PartDataBuffer;
+import org.figuramc.figura_core.model.rendering.RenderData;
+import org.figuramc.figura_core.model.rendering.shader.BuiltinShader;
+import org.figuramc.figura_core.model.rendering.vertex.FiguraVertexFormat;
+import org.figuramc.figura_core.model.rendering.vertex.PartVertexData;
+import org.figuramc.figura_core.util.data_structures.FiguraTransformStack;
+import org.joml.Matrix4f;
+import org.joml.Vector4f;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Changes the order of parts in a tree, patches its rendering data instead of rebuilding it, and checks every vertex
+ * is still rigged to the transform of the part it belongs to.
+ */
+public class RenderDataPatchTest {
+
+    private static final FiguraVertexFormat FORMAT = BuiltinShader.ALBEDO.vertexFormat();
+    private static final float EPSILON = 1e-5f;
+
+    private Avatar<String> avatar;
+    private final List<FiguraModelPart> drawn = new ArrayList<>(); // Parts with vertices; each vertex's x is its index here
+
+    // root
+    //  ├ a
+    //  ├ b
+    //  └ c
+    //     └ d
+    private FiguraModelPart root, a, b, c, d;
+
+    @BeforeAll
+    static void setUp() {
+        TestCore.init();
+        // A renderer which takes patches, and does nothing else
+        FiguraConnectionPoint.PART_RENDERER_FACTORY = (renderData, tracker) -> (ClientPartRenderer) Proxy.newProxyInstance(
+                ClientPartRenderer.class.getClassLoader(), new Class<?>[] { ClientPartRenderer.class }, (proxy, method, args) -> method.getReturnType() == boolean.class ? true : null);
+    }
+
+    @BeforeEach
+    void buildTree() throws Exception {
+        avatar = new Avatar<>(null, "parts", new AvatarModules(List.of(), List.of()), null, List.of(RenderDataHolder.TYPE));
+        drawn.clear();
+        a = part("a", 1, 2, 3);
+        b = part("b", -4, 0, 1);
+        d = part("d", 0, 5, 0);
+        c = part("c", 2, 2, -2, d);
+        root = new FiguraModelPart(avatar, "root", List.of(a, b, c));
+        c.transform.setEulerDeg(0, 90, 0);
+        root.buildRenderingData();
+        renderAndCheck();
+    }
+
+    @Test
+    public void reparentedPartKeepsItsTransform() throws Exception {
+        RenderData renderData = root.renderData;
+        // a goes from first to last in depth-first order
+        root.removeChild(a);
+        d.addChild(a);
+        root.updateRenderingData();
+        assertSame(renderData, root.renderData, "Expected a patch, not a rebuild");
+        renderAndCheck();
+    }
+
+    @Test
+    public void reorderedSiblingsKeepTheirTransforms() throws Exception {
+        RenderData renderData = root.renderData;
+        root.removeChild(b);
+        root.addChild(b);
+        root.removeChild(a);
+        root.addChild(a);
+        root.updateRenderingData();
+        assertSame(renderData, root.renderData, "Expected a patch, not a rebuild");
+        renderAndCheck();
+        // Moved again, after already being patched
+        a.transform.setPosition(0, 3, 0);
+        root.removeChild(c);
+        b.addChild(c);
+        root.updateRenderingData();
+        assertSame(renderData, root.renderData, "Expected a patch, not a rebuild");
+        renderAndCheck();
+    }
+
+    // -------- HELPERS -------- //
+
+    private FiguraModelPart part(String name, float x, float y, float z, FiguraModelPart... children) throws Exception {
+        FiguraModelPart part = new FiguraModelPart(avatar, name, List.of(children));
+        part.transform.setOrigin(x, y, z);
+        PartVertexData.Builder vertices = PartVertexData.builder();
+        for (int i = 0; i < 3; i++)
+            vertices.position(drawn.size(), i, 0).riggingWeights(1, 0, 0, 0).riggingOffsets((byte) 0, (byte) -1, (byte) -1, (byte) -1)
+                    .uv(0, 0).normal(0, 1, 0).tangent(1, 0, 0).endVertex();
+        part.vertices = vertices.build(null);
+        FiguraRenderType.TextureBinding binding = new FiguraRenderType.TextureBinding(null, new Vector4f(0, 0, 1, 1));
+        part.renderType = new FiguraRenderType(0, BuiltinShader.ALBEDO, List.of(binding, binding), new FiguraRenderType.ScissorState());
+        drawn.add(part);
+        return part;
+    }
+
+    // Render, then follow each drawn vertex's rigging index to the transform written for it
+    private void renderAndCheck() throws Exception {
+        root.render(new FiguraTransformStack(), new Object());
+        RenderData renderData = root.renderData;
+        ByteBuffer vertices = renderData.builtData.get(FORMAT);
+        ByteBuffer partData = renderData.partData.buffer();
+        int positionOffset = FORMAT.offsets[0], riggingOffset = FORMAT.offsets[2];
+        int checked = 0;
+        for (RenderData.DrawCall drawCall : renderData.drawCalls) {
+            for (int v = drawCall.start(); v < drawCall.start() + drawCall.length(); v += FORMAT.vertexSize) {
+                FiguraModelPart part = drawn.get((int) vertices.getFloat(v + positionOffset));
+                int id = Short.toUnsignedInt(vertices.getShort(v + riggingOffset));
+                assertTrue(id < renderData.partData.count(), part.name + " is rigged to part " + id + ", past the end of the part data");
+                Matrix4f written = new Matrix4f().set(id * PartDataBuffer.GPU_SIZE, partData);
+                assertTrue(written.equals(part.cachedWorld().position, EPSILON), () -> part.name + " is rigged to part " + id + ", whose transform is\n" + written + "instead of\n" + part.cachedWorld().position);
+                checked++;
+            }
+        }
+        assertEquals(drawn.size() * 3, checked);
+    }
+
+}
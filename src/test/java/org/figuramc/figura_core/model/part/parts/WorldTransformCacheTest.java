@@ -0,0 +1,226 @@
+package org.figuramc.figura_core.model.part.parts;
+
+import org.figuramc.figura_core.TestCore;
+import org.figuramc.figura_core.avatars.Avatar;
+import org.figuramc.figura_core.avatars.AvatarModules;
+import org.figuramc.figura_core.avatars.components.VanillaRendering;
+import org.figuramc.figura_core.minecraft_interop.FiguraConnectionPoint;
+import org.figuramc.figura_core.minecraft_interop.render.ClientPartRenderer;
+import org.figuramc.figura_core.model.part.WorldTransform;
+import org.figuramc.figura_core.model.rendering.FiguraRenderType;
+import org.figuramc.figura_core.model.rendering.shader.BuiltinShader;
+import org.figuramc.figura_core.model.rendering.vertex.PartVertexData;
+import org.figuramc.figura_core.util.data_structures.FiguraTransformStack;
+import org.joml.Matrix4f;
+import org.joml.Vector4f;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Renders a small headless model part tree, mutates it between renders, and checks every part's cached world
+ * transform against a full recompute with the transform stack, the way rendering worked before it was cached.
+ */
+public class WorldTransformCacheTest {
+
+    private static final float EPSILON = 1e-5f;
+
+    private Avatar<String> avatar;
+    private final Matrix4f entity = new Matrix4f(); // Where the avatar is drawn, as the stack it's rendered with
+
+    // root
+    //  ├ body
+    //  │  ├ arm
+    //  │  │  └ hand
+    //  │  ├ head (mimics a vanilla part)
+    //  │  │  └ hat
+    //  │  └ cape (separate render root)
+    //  │     └ capeTip
+    //  └ spare
+    private FiguraModelPart root, body, arm, hand, head, hat, cape, capeTip, spare;
+    private VanillaRendering.ScriptVanillaPart vanillaHead;
+
+    @BeforeAll
+    static void setUp() {
+        TestCore.init();
+        // Renderers do nothing here; rendering still computes and writes every part's transforms
+        FiguraConnectionPoint.PART_RENDERER_FACTORY = (renderData, tracker) -> (ClientPartRenderer) Proxy.newProxyInstance(
+                ClientPartRenderer.class.getClassLoader(), new Class<?>[] { ClientPartRenderer.class }, (proxy, method, args) -> method.getReturnType() == boolean.class ? false : null);
+    }
+
+    @BeforeEach
+    void buildTree() throws Exception {
+        avatar = new Avatar<>(null, "parts", new AvatarModules(List.of(), List.of()), null, List.of());
+        hand = part("hand", 0, -6, 0);
+        arm = part("arm", 4, 10, 0, hand);
+        hat = part("hat", 0, 8, 0);
+        head = part("head", 0, 12, 0, hat);
+        capeTip = part("capeTip", 0, -8, 1);
+        cape = part("cape", 0, 12, 2, capeTip);
+        body = part("body", 0, 12, 0, arm, head, cape);
+        spare = part("spare", -3, 1, 4);
+        root = part("root", 0, 0, 0, body, spare);
+        arm.transform.setEulerDeg(-30, 0, 10);
+        head.transform.setColor(1, 0.5f, 0.25f, 1);
+
+        vanillaHead = new VanillaRendering.ScriptVanillaPart(null, null);
+        head.transform.setMimicPart(vanillaHead);
+
+        cape.buildRenderingData();
+        root.buildRenderingData();
+        assertNotNull(cape.renderData);
+        assertNotNull(root.renderData);
+        entity.translation(100, 64, -20).rotateY(0.3f);
+        renderAndCheck();
+    }
+
+    @Test
+    public void unchangedTreeStaysCorrect() throws Exception {
+        renderAndCheck();
+        renderAndCheck();
+    }
+
+    @Test
+    public void localTransformChanges() throws Exception {
+        body.transform.setEulerDeg(0, 45, 0);
+        renderAndCheck();
+        hand.transform.setScale(2, 0.5f, 1);
+        renderAndCheck();
+        arm.transform.setPosition(1, 2, 3);
+        renderAndCheck();
+        body.transform.setColor(0.5f, 0.5f, 1, 0.75f);
+        renderAndCheck();
+    }
+
+    @Test
+    public void entityMoves() throws Exception {
+        entity.translate(5, 0, 3).rotateX(0.2f);
+        renderAndCheck();
+        entity.scale(0.9375f);
+        renderAndCheck();
+    }
+
+    @Test
+    public void visibilityFlips() throws Exception {
+        arm.transform.setVisible(false);
+        renderAndCheck();
+        // Moved while hidden
+        arm.transform.setEulerDeg(10, 20, 30);
+        hand.transform.setPosition(0, 1, 0);
+        renderAndCheck();
+        arm.transform.setVisible(true);
+        renderAndCheck();
+        hat.transform.setVisible(false);
+        renderAndCheck();
+        hat.transform.setVisible(true);
+        renderAndCheck();
+    }
+
+    @Test
+    public void reparenting() throws Exception {
+        body.removeChild(arm);
+        spare.addChild(arm);
+        renderAndCheck();
+        spare.transform.setEulerDeg(0, 0, 90);
+        renderAndCheck();
+        spare.removeChild(arm);
+        body.addChild(arm);
+        renderAndCheck();
+    }
+
+    @Test
+    public void mimicPartsFollowVanilla() throws Exception {
+        // Vanilla parts move without touching the Figura transform
+        vanillaHead.fullStoredRotation.set(0.4f, -0.2f, 0);
+        renderAndCheck();
+        vanillaHead.fullStoredOrigin.set(0, 1, 0);
+        vanillaHead.fullStoredScale.set(1.5f);
+        renderAndCheck();
+        head.transform.setMimicPart(null);
+        renderAndCheck();
+        head.transform.setEulerDeg(0, 90, 0);
+        renderAndCheck();
+    }
+
+    @Test
+    public void forcedMatrices() throws Exception {
+        arm.transform.forceMatrix(new Matrix4f().translation(1, 2, 3).rotateZ(1).scale(2));
+        renderAndCheck();
+        // Ignored while forced
+        arm.transform.setEulerDeg(90, 0, 0);
+        renderAndCheck();
+        arm.transform.forceMatrix(new Matrix4f().rotateY(-1));
+        renderAndCheck();
+        arm.transform.unforceMatrix();
+        renderAndCheck();
+    }
+
+    @Test
+    public void separateRootsUnderCachedParents() throws Exception {
+        // The cape's parent changes; the cape's own tree has to notice through its render input
+        body.transform.setEulerDeg(20, 0, 0);
+        renderAndCheck();
+        // The cape changes under an unchanged parent
+        cape.transform.setEulerDeg(-15, 0, 0);
+        renderAndCheck();
+        capeTip.transform.setScale(1, 2, 1);
+        renderAndCheck();
+        // Only the entity moves
+        entity.translate(0, 1, 0);
+        renderAndCheck();
+        // Color flows down into the separate root
+        body.transform.setColor(1, 0, 0, 1);
+        renderAndCheck();
+    }
+
+    // -------- HELPERS -------- //
+
+    private FiguraModelPart part(String name, float x, float y, float z, FiguraModelPart... children) throws Exception {
+        FiguraModelPart part = new FiguraModelPart(avatar, name, List.of(children));
+        part.transform.setOrigin(x, y, z);
+        // Every part but the root draws something, so render roots have rendering data
+        if (!name.equals("root")) {
+            PartVertexData.Builder vertices = PartVertexData.builder();
+            vertices.position(0, 0, 0).riggingWeights(1, 0, 0, 0).riggingOffsets((byte) 0, (byte) -1, (byte) -1, (byte) -1)
+                    .uv(0, 0).normal(0, 1, 0).tangent(1, 0, 0).endVertex();
+            part.vertices = vertices.build(null);
+            FiguraRenderType.TextureBinding binding = new FiguraRenderType.TextureBinding(null, new Vector4f(0, 0, 1, 1));
+            part.renderType = new FiguraRenderType(0, BuiltinShader.ALBEDO, List.of(binding, binding), new FiguraRenderType.ScissorState());
+        }
+        return part;
+    }
+
+    private void renderAndCheck() throws Exception {
+        FiguraTransformStack stack = new FiguraTransformStack();
+        stack.multiply(new Matrix4f(entity));
+        root.render(stack, new Object());
+        assertTrue(stack.isEmpty(), "Render left the stack unbalanced");
+
+        FiguraTransformStack reference = new FiguraTransformStack();
+        reference.multiply(new Matrix4f(entity));
+        check(root, reference, true);
+    }
+
+    // Recompute the part's world transform from scratch, and compare it with the cached one, then recurse
+    private static void check(FiguraModelPart part, FiguraTransformStack stack, boolean visible) {
+        visible = visible && part.transform.getVisible();
+        WorldTransform cached = part.cachedWorld();
+        assertEquals(visible, cached.visible, part.name + " visibility");
+        stack.push();
+        if (visible) {
+            part.transform.affect(stack);
+            assertTrue(stack.peekPosition().equals(cached.position, EPSILON), () -> part.name + " position: expected\n" + stack.peekPosition() + "but was\n" + cached.position);
+            assertTrue(stack.peekNormal().equals(cached.normal, EPSILON), () -> part.name + " normal: expected\n" + stack.peekNormal() + "but was\n" + cached.normal);
+            assertTrue(stack.peekColor().equals(cached.color, EPSILON), () -> part.name + " color: expected " + stack.peekColor() + " but was " + cached.color);
+            assertEquals(stack.peekLight(), cached.light, part.name + " light");
+        }
+        for (FiguraModelPart child : part.children) check(child, stack, visible);
+        stack.pop();
+    }
+
+}
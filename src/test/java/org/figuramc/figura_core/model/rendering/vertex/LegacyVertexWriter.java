@@ -0,0 +1,102 @@
+package org.figuramc.figura_core.model.rendering.vertex;
+
+import org.figuramc.figura_core.model.rendering.FiguraRenderType;
+import org.figuramc.figura_core.util.data_structures.ByteBufferBuilder;
+import org.jetbrains.annotations.Nullable;
+import org.joml.Vector4f;
+
+import java.util.List;
+
+/**
+ * The vertex-by-vertex writing RenderData.Builder.addModelPart did before VertexWriter, kept as the reference
+ * VertexWriter's output is checked against.
+ */
+final class LegacyVertexWriter {
+
+    private LegacyVertexWriter() {}
+
+    static void write(ByteBufferBuilder buffer, FiguraVertexFormat vertexFormat, PartVertexData vertexData, int partID, List<FiguraRenderType.TextureBinding> textureBindings) {
+        final var vertexCount = vertexData.vertexCount;
+        final var positions = vertexData.positions;
+        final var riggingWeights = vertexData.riggingWeights;
+        final var riggingOffsets = vertexData.riggingOffsets;
+        final var uvs = vertexData.uvs;
+        final var normals = vertexData.normals;
+        final var tangents = vertexData.tangents;
+        final var elements = vertexFormat.elements;
+        final var offsets = vertexFormat.offsets;
+        // Iterate vertices:
+        for (int i = 0; i < vertexCount; i++) {
+            int start = buffer.size();
+            // Iterate vertex elements
+            for (int j = 0; j < elements.length; j++) {
+                // Align by padding with 0s:
+                while (buffer.size() < start + offsets[j])
+                    buffer.push((byte) 0);
+                // Insert data
+                FiguraVertexElem elem = elements[j];
+                switch (elem.id) {
+                    case POSITION -> {
+                        int k = i * 3;
+                        buffer.pushFloat(positions[k]);
+                        buffer.pushFloat(positions[k + 1]);
+                        buffer.pushFloat(positions[k + 2]);
+                    }
+                    case RIGGING_WEIGHTS -> {
+                        int k = i * 4;
+                        buffer.push(riggingWeights[k]);
+                        buffer.push(riggingWeights[k + 1]);
+                        buffer.push(riggingWeights[k + 2]);
+                        buffer.push(riggingWeights[k + 3]);
+                    }
+                    case RIGGING_INDICES -> {
+                        int k = i * 4;
+                        buffer.pushUnsignedShort((char) (partID + Byte.toUnsignedInt(riggingOffsets[k])));
+                        buffer.pushUnsignedShort((char) (partID + Byte.toUnsignedInt(riggingOffsets[k + 1])));
+                        buffer.pushUnsignedShort((char) (partID + Byte.toUnsignedInt(riggingOffsets[k + 2])));
+                        buffer.pushUnsignedShort((char) (partID + Byte.toUnsignedInt(riggingOffsets[k + 3])));
+                    }
+                    case UV0, UV1, UV2, UV3 -> {
+                        int k = i * 2;
+                        float u = uvs[k];
+                        float v = uvs[k + 1];
+                        int uvIndex = elem.id.ordinal() - FiguraVertexElem.ID.UV0.ordinal(); // Offset from UV0
+                        Vector4f uvModifier = textureBindings.get(uvIndex).uvModifier();
+                        u = u * uvModifier.z + uvModifier.x;
+                        v = v * uvModifier.w + uvModifier.y;
+                        buffer.pushFloat(u).pushFloat(v);
+                    }
+                    case NORMAL -> {
+                        int k = i * 3;
+                        buffer.push(normals[k]);
+                        buffer.push(normals[k + 1]);
+                        buffer.push(normals[k + 2]);
+                    }
+                    case TANGENT -> {
+                        int k = i * 3;
+                        buffer.push(tangents[k]);
+                        buffer.push(tangents[k + 1]);
+                        buffer.push(tangents[k + 2]);
+                    }
+                    // Vertex color is just always 255 for regular model parts, it's unused in most shaders
+                    case COLOR -> buffer.push((byte) -1).push((byte) -1).push((byte) -1).push((byte) -1);
+                    case OTHER -> {
+                        // Custom data
+                        byte @Nullable [] data = vertexData.dataByElement.get(elem);
+                        if (data == null) {
+                            // Zeroes by default.
+                            for (int k = 0; k < elem.type.size; k++)
+                                buffer.push((byte) 0);
+                        } else {
+                            buffer.pushArr(data, i * elem.type.size, elem.type.size);
+                        }
+                    }
+                }
+            }
+            // Align whole vertex by padding with zeros
+            while (buffer.size() < start + vertexFormat.vertexSize)
+                buffer.push((byte) 0);
+        }
+    }
+
+}
@@ -0,0 +1,71 @@
+package org.figuramc.figura_core.model.rendering.vertex;
+
+import org.figuramc.figura_core.model.rendering.FiguraRenderType;
+import org.figuramc.figura_core.util.data_structures.ByteBufferBuilder;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmark for VertexWriter against the old vertex-by-vertex path (LegacyVertexWriter): writes a batch of cube-sized
+ * and larger parts in each format, as RenderData.Builder does when building an avatar, and prints the time per vertex.
+ * Checks both produce the same bytes before timing them.
+ *
+ * Not a unit test, since it runs for a while. Run main(), optionally with the number of rounds.
+ */
+public class VertexWriterBenchmark {
+
+    private static final int WARMUP_ROUNDS = 20;
+
+    public static void main(String[] args) {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        Random random = new Random(42);
+        List<FiguraRenderType.TextureBinding> bindings = VertexWriterTest.textureBindings(random);
+        // Mostly cubes (24 vertices), with some bigger meshes
+        PartVertexData[] parts = new PartVertexData[512];
+        int vertices = 0;
+        for (int i = 0; i < parts.length; i++) {
+            parts[i] = VertexWriterTest.randomPart(random, i % 16 == 0 ? 600 : 24);
+            vertices += parts[i].vertexCount;
+        }
+
+        for (FiguraVertexFormat format : VertexWriterTest.FORMATS) {
+            ByteBufferBuilder legacy = new ByteBufferBuilder();
+            ByteBufferBuilder bulk = new ByteBufferBuilder();
+            for (int i = 0; i < parts.length; i++) {
+                LegacyVertexWriter.write(legacy, format, parts[i], i, bindings);
+                format.writer().write(bulk, parts[i], i, bindings);
+            }
+            if (!Arrays.equals(legacy.toArray(), bulk.toArray()))
+                throw new IllegalStateException("VertexWriter output differs from the legacy path for a format with elements " + Arrays.toString(format.names));
+
+            long legacyNanos = time(rounds, legacy, () -> {
+                for (int i = 0; i < parts.length; i++) LegacyVertexWriter.write(legacy, format, parts[i], i, bindings);
+            });
+            long bulkNanos = time(rounds, bulk, () -> {
+                for (int i = 0; i < parts.length; i++) format.writer().write(bulk, parts[i], i, bindings);
+            });
+            double perRound = (double) vertices * rounds;
+            System.out.printf("%3d B/vertex: legacy %7.2f ns/vertex, writer %7.2f ns/vertex (%4.1fx) - %s%n",
+                    format.vertexSize, legacyNanos / perRound, bulkNanos / perRound, (double) legacyNanos / bulkNanos, String.join(", ", format.names));
+        }
+    }
+
+    // Run the rounds after warming up, clearing the builder first each time, and return the total time
+    private static long time(int rounds, ByteBufferBuilder buffer, Runnable round) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            buffer.clear();
+            round.run();
+        }
+        long total = 0;
+        for (int i = 0; i < rounds; i++) {
+            buffer.clear();
+            long start = System.nanoTime();
+            round.run();
+            total += System.nanoTime() - start;
+        }
+        return total;
+    }
+
+}
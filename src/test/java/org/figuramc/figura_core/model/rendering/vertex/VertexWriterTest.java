@@ -0,0 +1,101 @@
+package org.figuramc.figura_core.model.rendering.vertex;
+
+import org.figuramc.figura_core.model.rendering.FiguraRenderType;
+import org.figuramc.figura_core.util.data_structures.ByteBufferBuilder;
+import org.figuramc.figura_core.util.data_structures.Pair;
+import org.joml.Vector4f;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks VertexWriter writes exactly the bytes the old vertex-by-vertex path (LegacyVertexWriter) did.
+ */
+public class VertexWriterTest {
+
+    // A custom element with data, a custom element without, and one whose alignment needs padding
+    static final FiguraVertexElem CUSTOM_FILLED = new FiguraVertexElem(VertexElementType.UINT16_3);
+    static final FiguraVertexElem CUSTOM_EMPTY = new FiguraVertexElem(VertexElementType.SFLOAT8_2);
+    static final FiguraVertexElem CUSTOM_ALIGNED = new FiguraVertexElem(VertexElementType.FLOAT32_3);
+
+    static final List<FiguraVertexFormat> FORMATS = List.of(
+            FiguraVertexFormat.POSITION,
+            FiguraVertexFormat.ALBEDO,
+            FiguraVertexFormat.ALBEDO_NORMAL,
+            FiguraVertexFormat.ALBEDO_NORMAL_SPECULAR,
+            FiguraVertexFormat.ALBEDO_COLOR,
+            FiguraVertexFormat.create(4, true, true, true, List.of()),
+            FiguraVertexFormat.extend(FiguraVertexFormat.ALBEDO_NORMAL, List.of(
+                    Pair.of("Filled", CUSTOM_FILLED), Pair.of("Empty", CUSTOM_EMPTY), Pair.of("Aligned", CUSTOM_ALIGNED)))
+    );
+
+    @Test
+    public void matchesLegacyWriter() {
+        Random random = new Random(1234);
+        List<FiguraRenderType.TextureBinding> bindings = textureBindings(random);
+        for (FiguraVertexFormat format : FORMATS) {
+            for (int vertexCount : new int[] { 0, 1, 3, 4, 37, 1000 }) {
+                PartVertexData data = randomPart(random, vertexCount);
+                int partID = random.nextInt(0xFF00);
+                ByteBufferBuilder expected = new ByteBufferBuilder();
+                LegacyVertexWriter.write(expected, format, data, partID, bindings);
+                ByteBufferBuilder actual = new ByteBufferBuilder();
+                format.writer().write(actual, data, partID, bindings);
+                assertArrayEquals(expected.toArray(), actual.toArray(), () -> format.names.length + " elements, " + vertexCount + " vertices");
+            }
+        }
+    }
+
+    @Test
+    public void appendsAfterExistingParts() {
+        // Several parts in a row into the same builder, as RenderData.Builder does per draw call
+        Random random = new Random(5678);
+        List<FiguraRenderType.TextureBinding> bindings = textureBindings(random);
+        FiguraVertexFormat format = FORMATS.getLast();
+        ByteBufferBuilder expected = new ByteBufferBuilder();
+        ByteBufferBuilder actual = new ByteBufferBuilder();
+        for (int partID = 0; partID < 20; partID++) {
+            PartVertexData data = randomPart(random, random.nextInt(50));
+            LegacyVertexWriter.write(expected, format, data, partID, bindings);
+            format.writer().write(actual, data, partID, bindings);
+        }
+        assertArrayEquals(expected.toArray(), actual.toArray());
+    }
+
+    // -------- HELPERS -------- //
+
+    static PartVertexData randomPart(Random random, int vertexCount) {
+        PartVertexData.Builder builder = PartVertexData.builder();
+        for (int i = 0; i < vertexCount; i++) {
+            builder.position(random.nextFloat() * 32 - 16, random.nextFloat() * 32 - 16, random.nextFloat() * 32 - 16)
+                    .riggingWeights(random.nextFloat(), random.nextFloat(), random.nextFloat(), random.nextFloat())
+                    .riggingOffsets((byte) random.nextInt(256), (byte) random.nextInt(256), (byte) random.nextInt(256), (byte) random.nextInt(256))
+                    .uv(random.nextFloat(), random.nextFloat())
+                    .normal(random.nextFloat() * 2 - 1, random.nextFloat() * 2 - 1, random.nextFloat() * 2 - 1)
+                    .tangent(random.nextFloat() * 2 - 1, random.nextFloat() * 2 - 1, random.nextFloat() * 2 - 1)
+                    .endVertex();
+        }
+        PartVertexData data = builder.build(null);
+        data.dataByElement.put(CUSTOM_FILLED, randomBytes(random, vertexCount * CUSTOM_FILLED.type.size));
+        data.dataByElement.put(CUSTOM_ALIGNED, randomBytes(random, vertexCount * CUSTOM_ALIGNED.type.size));
+        return data;
+    }
+
+    static List<FiguraRenderType.TextureBinding> textureBindings(Random random) {
+        List<FiguraRenderType.TextureBinding> bindings = new ArrayList<>();
+        for (int i = 0; i < 4; i++)
+            bindings.add(new FiguraRenderType.TextureBinding(null, new Vector4f(random.nextFloat(), random.nextFloat(), random.nextFloat() + 0.5f, random.nextFloat() + 0.5f)));
+        return bindings;
+    }
+
+    private static byte[] randomBytes(Random random, int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+}
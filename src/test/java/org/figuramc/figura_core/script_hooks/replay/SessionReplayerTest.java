@@ -0,0 +1,165 @@
+package org.figuramc.figura_core.script_hooks.replay;
+
+import org.figuramc.figura_core.TestCore;
+import org.figuramc.figura_core.avatars.Avatar;
+import org.figuramc.figura_core.avatars.AvatarModules;
+import org.figuramc.figura_core.avatars.components.AvatarEvents;
+import org.figuramc.figura_core.avatars.components.AvatarProfiling;
+import org.figuramc.figura_core.avatars.errors.AvatarError;
+import org.figuramc.figura_core.minecraft_interop.game_data.entity.MinecraftEntity;
+import org.figuramc.figura_core.minecraft_interop.game_data.world.MinecraftWorld;
+import org.figuramc.figura_core.script_hooks.Event;
+import org.figuramc.figura_core.script_hooks.EventListener;
+import org.figuramc.figura_core.script_hooks.callback.CallbackType;
+import org.figuramc.figura_core.script_hooks.callback.ScriptCallback;
+import org.figuramc.figura_core.script_hooks.callback.items.CallbackItem;
+import org.figuramc.figura_core.script_hooks.callback.items.EntityView;
+import org.figuramc.figura_core.script_hooks.callback.items.WorldView;
+import org.figuramc.figura_core.script_hooks.timing.ProfilingCategory;
+import org.figuramc.figura_core.util.exception.FiguraException;
+import org.jetbrains.annotations.NotNull;
+import org.joml.Vector3d;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Records events dispatched to a headless avatar, replays them on a fresh one, and checks the callbacks saw the same game state.
+ */
+public class SessionReplayerTest {
+
+    private static final int EVENTS = 5;
+
+    @BeforeAll
+    static void setUp() {
+        TestCore.init();
+    }
+
+    @Test
+    public void roundTrip() throws Exception {
+        List<String> live = new ArrayList<>();
+        Avatar<String> recorded = activeAvatar("recorded");
+        listen(recorded, Event.ENTITY_TICK, args -> live.add(describe(args)));
+
+        // Record a few ticks of an entity whose state changes every read
+        MinecraftWorld world = fakeWorld();
+        MinecraftEntity entity = fakeEntity(world);
+        SessionRecorder recorder = SessionRecorder.attach(recorded);
+        for (int i = 0; i < EVENTS; i++)
+            recorded.assertComponent(AvatarEvents.TYPE).getEventListener(Event.ENTITY_TICK).invoke(new CallbackItem.Tuple2<>(new EntityView<>(entity), new WorldView<>(world)));
+        SessionRecording recording = recorder.detach();
+        assertEquals(EVENTS, recording.getSteps().size());
+
+        // Replay on a fresh avatar, with no game behind it
+        List<String> replayed = new ArrayList<>();
+        Avatar<String> replay = activeAvatar("replay");
+        listen(replay, Event.ENTITY_TICK, args -> replayed.add(describe(args)));
+        SessionReplayer replayer = new SessionReplayer(recording);
+        assertEquals(EVENTS, replayer.replayAll(replay));
+        assertTrue(replayer.isFinished());
+        assertEquals(live, replayed);
+    }
+
+    @Test
+    public void divergingReadThrows() throws Exception {
+        Avatar<String> recorded = activeAvatar("recorded");
+        listen(recorded, Event.ENTITY_TICK, args -> args.a().getValue().getHealth());
+        MinecraftWorld world = fakeWorld();
+        SessionRecorder recorder = SessionRecorder.attach(recorded);
+        recorded.assertComponent(AvatarEvents.TYPE).getEventListener(Event.ENTITY_TICK).invoke(new CallbackItem.Tuple2<>(new EntityView<>(fakeEntity(world)), new WorldView<>(world)));
+        SessionRecording recording = recorder.detach();
+
+        Avatar<String> replay = activeAvatar("replay");
+        listen(replay, Event.ENTITY_TICK, args -> args.a().getValue().getName());
+        assertThrows(IllegalStateException.class, () -> new SessionReplayer(recording).replayAll(replay));
+    }
+
+    @Test
+    public void replayIsNeverThrottled() throws Exception {
+        Avatar<String> recorded = activeAvatar("recorded");
+        SessionRecorder recorder = SessionRecorder.attach(recorded);
+        for (int i = 0; i < EVENTS; i++)
+            recorded.assertComponent(AvatarEvents.TYPE).getEventListener(Event.CLIENT_RENDER).invoke(new CallbackItem.F32(i));
+        SessionRecording recording = recorder.detach();
+
+        // Make the replay avatar look far too expensive, so its render events are throttled
+        Avatar<String> replay = activeAvatar("replay");
+        AvatarProfiling profiling = replay.assertComponent(AvatarProfiling.TYPE);
+        for (int i = 0; i < 8; i++) profiling.recordTime(ProfilingCategory.CLIENT_RENDER_EVENT, 1_000_000_000L);
+        assertTrue(profiling.getThrottle(ProfilingCategory.CLIENT_RENDER_EVENT).isThrottled());
+
+        List<Float> seen = new ArrayList<>();
+        listen(replay, Event.CLIENT_RENDER, args -> seen.add(args.value()));
+        assertEquals(EVENTS, new SessionReplayer(recording).replayAll(replay));
+        assertEquals(List.of(0f, 1f, 2f, 3f, 4f), seen);
+    }
+
+    @Test
+    public void erroredAvatarThrows() throws Exception {
+        Avatar<String> recorded = activeAvatar("recorded");
+        SessionRecorder recorder = SessionRecorder.attach(recorded);
+        recorded.assertComponent(AvatarEvents.TYPE).getEventListener(Event.CLIENT_TICK).invoke(CallbackItem.Unit.INSTANCE);
+        SessionRecording recording = recorder.detach();
+
+        Avatar<String> replay = activeAvatar("replay");
+        replay.error(new AvatarError(FiguraException.LITERAL, "Errored for the test"));
+        assertThrows(IllegalStateException.class, () -> new SessionReplayer(recording).replayNext(replay));
+    }
+
+    // -------- HELPERS -------- //
+
+    // An avatar with no modules and no manager, which goes straight to ACTIVE
+    private static Avatar<String> activeAvatar(String key) throws Exception {
+        Avatar<String> avatar = new Avatar<>(null, key, new AvatarModules(List.of(), List.of()), null, List.of(AvatarEvents.TYPE, AvatarProfiling.TYPE));
+        avatar.whenActive().get(5, TimeUnit.SECONDS);
+        return avatar;
+    }
+
+    // Register a Java callback on one of the avatar's built-in events, standing in for a script
+    private static <A extends CallbackItem, R extends CallbackItem> void listen(Avatar<?> avatar, Event<A, R> event, Consumer<A> body) {
+        EventListener<A, R> listener = avatar.assertComponent(AvatarEvents.TYPE).getEventListener(event);
+        listener.registerCallback(new ScriptCallback<>() {
+            @Override public CallbackType.Func<A, R> type() { return listener.funcType; }
+            @Override public Avatar<?> getOwningAvatar() { return avatar; }
+            @SuppressWarnings("unchecked")
+            @Override public @NotNull R call(A arg) {
+                body.accept(arg);
+                return (R) CallbackItem.Unit.INSTANCE;
+            }
+        });
+    }
+
+    // Read a bit of everything: plain values, mutable out-params, and game objects returned from reads
+    private static String describe(CallbackItem.Tuple2<EntityView<?>, WorldView<?>> args) {
+        MinecraftEntity entity = args.a().getValue();
+        Vector3d pos = entity.getPosition(0.5f, new Vector3d());
+        return entity.getName() + " " + entity.getHealth() + " " + pos + " " + entity.getWorld().getHeight() + " " + args.b().getValue().getHeight();
+    }
+
+    private static MinecraftEntity fakeEntity(MinecraftWorld world) {
+        int[] reads = new int[1];
+        return (MinecraftEntity) Proxy.newProxyInstance(MinecraftEntity.class.getClassLoader(), new Class<?>[] { MinecraftEntity.class }, (proxy, method, args) -> switch (method.getName()) {
+            case "getName" -> "Steve";
+            case "getHealth" -> (float) ++reads[0];
+            case "getPosition" -> ((Vector3d) args[1]).set(++reads[0], 64, -reads[0]);
+            case "getWorld" -> world;
+            default -> throw new UnsupportedOperationException(method.getName());
+        });
+    }
+
+    private static MinecraftWorld fakeWorld() {
+        int[] reads = new int[1];
+        return (MinecraftWorld) Proxy.newProxyInstance(MinecraftWorld.class.getClassLoader(), new Class<?>[] { MinecraftWorld.class }, (proxy, method, args) -> switch (method.getName()) {
+            case "getHeight" -> 256 + ++reads[0];
+            default -> throw new UnsupportedOperationException(method.getName());
+        });
+    }
+
+}
@@ -0,0 +1,88 @@
+package org.figuramc.figura_core.script_hooks.timing;
+
+import org.figuramc.figura_core.TestCore;
+import org.figuramc.figura_core.avatars.Avatar;
+import org.figuramc.figura_core.avatars.AvatarModules;
+import org.figuramc.figura_core.avatars.components.AvatarProfiling;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Reports to a metered avatar's meter from inside timed sections, the way a script runtime does, and checks the
+ * quotas AvatarTimeTracker sets and what ends up in AvatarProfiling.
+ */
+public class InstructionMeterTest {
+
+    private static final long BUDGET = 1_000_000_000L;
+
+    @BeforeAll
+    static void setUp() {
+        TestCore.init();
+    }
+
+    @AfterEach
+    void clearQuotas() {
+        AvatarTimeTracker.getInstance().setInstructionQuota(ProfilingCategory.INITIALIZATION, 0);
+        AvatarTimeTracker.getInstance().setInstructionQuota(ProfilingCategory.CLIENT_TICK_EVENT, 0);
+    }
+
+    @Test
+    public void quotaAppliesOnlyInsideTheSection() throws Exception {
+        Avatar<String> avatar = meteredAvatar();
+        InstructionMeter meter = avatar.instructionMeter;
+        AvatarTimeTracker.getInstance().setInstructionQuota(ProfilingCategory.CLIENT_TICK_EVENT, 100);
+        boolean[] withinQuota = new boolean[2];
+        AvatarTimeTracker.getInstance().runTimed(avatar, ProfilingCategory.CLIENT_TICK_EVENT, BUDGET, () -> {
+            withinQuota[0] = meter.report(100);
+            withinQuota[1] = meter.report(1);
+        });
+        assertTrue(withinQuota[0]);
+        assertFalse(withinQuota[1]);
+        assertTrue(meter.report(1_000_000));
+    }
+
+    @Test
+    public void tighterOuterQuotaWins() throws Exception {
+        Avatar<String> avatar = meteredAvatar();
+        InstructionMeter meter = avatar.instructionMeter;
+        long outer = meter.pushQuota(10);
+        long inner = meter.pushQuota(1000);
+        assertFalse(meter.report(11));
+        meter.popQuota(inner);
+        meter.popQuota(outer);
+        assertTrue(meter.report(1000));
+    }
+
+    @Test
+    public void unmeteredAvatarsIgnoreQuotas() throws Exception {
+        Avatar<String> avatar = new Avatar<>(null, "unmetered", new AvatarModules(List.of(), List.of()), null, List.of());
+        assertFalse(avatar.instructionMeter.enabled);
+        avatar.instructionMeter.pushQuota(1);
+        assertTrue(avatar.instructionMeter.report(1000));
+    }
+
+    @Test
+    public void checksAreRecordedPerSection() throws Exception {
+        Avatar<String> avatar = meteredAvatar();
+        AvatarTimeTracker.getInstance().runTimed(avatar, ProfilingCategory.INITIALIZATION, BUDGET, () -> avatar.instructionMeter.report(42));
+        AvatarProfiling profiling = avatar.assertComponent(AvatarProfiling.TYPE);
+        assertEquals(42, profiling.interruptCheckMeasurers.get(ProfilingCategory.INITIALIZATION).runningAverage());
+    }
+
+    private static Avatar<String> meteredAvatar() throws Exception {
+        InstructionMeter.meterNewAvatars = true;
+        try {
+            Avatar<String> avatar = new Avatar<>(null, "metered", new AvatarModules(List.of(), List.of()), null, List.of(AvatarProfiling.TYPE));
+            assertTrue(avatar.instructionMeter.enabled);
+            return avatar;
+        } finally {
+            InstructionMeter.meterNewAvatars = false;
+        }
+    }
+
+}
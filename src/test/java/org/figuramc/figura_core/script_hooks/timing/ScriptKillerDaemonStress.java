@@ -0,0 +1,69 @@
+package org.figuramc.figura_core.script_hooks.timing;
+
+import org.figuramc.figura_core.TestCore;
+import org.figuramc.figura_core.avatars.Avatar;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stress harness for AvatarTimeTracker and ScriptKillerDaemon: several threads run empty timed sections as fast
+ * as they can, some of them nested, while short-lived threads keep registering and dying.
+ * Prints the throughput and the number of registered frame stacks, which should stay flat.
+ *
+ * Not a unit test, since it runs for a while. Run main(), optionally with the duration in seconds and the thread count.
+ */
+public class ScriptKillerDaemonStress {
+
+    public static void main(String[] args) throws Exception {
+        TestCore.init();
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int threadCount = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        Avatar<String> avatar = ScriptKillerDaemonTest.headlessAvatar();
+        AvatarTimeTracker tracker = AvatarTimeTracker.getInstance();
+
+        LongAdder sections = new LongAdder();
+        AtomicLong churned = new AtomicLong();
+        long end = System.nanoTime() + seconds * 1_000_000_000L;
+
+        // Long-lived workers
+        Thread[] workers = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            workers[i] = new Thread(() -> {
+                long count = 0;
+                while (System.nanoTime() < end) {
+                    for (int j = 0; j < 1024; j++) {
+                        tracker.runTimed(avatar, ProfilingCategory.TICKING_SCRIPTS, 1_000_000_000L,
+                                () -> tracker.runTimed(avatar, ProfilingCategory.TICKING_SCRIPTS, 1_000_000_000L, () -> {}));
+                    }
+                    count += 2048;
+                }
+                sections.add(count);
+            }, "Stress worker " + i);
+            workers[i].start();
+        }
+        // Churning threads, which each register a frame stack then die
+        Thread churner = new Thread(() -> {
+            while (System.nanoTime() < end) {
+                Thread t = new Thread(() -> tracker.runTimed(avatar, ProfilingCategory.TICKING_SCRIPTS, 1_000_000_000L, () -> {}));
+                t.start();
+                try { t.join(); } catch (InterruptedException e) { return; }
+                churned.incrementAndGet();
+            }
+        }, "Stress churner");
+        churner.start();
+
+        long start = System.nanoTime();
+        while (System.nanoTime() < end) {
+            Thread.sleep(1000);
+            System.out.printf("%,d threads churned, %d frame stacks registered%n", churned.get(), ScriptKillerDaemon.INSTANCE.stackCount());
+        }
+        for (Thread worker : workers) worker.join();
+        churner.join();
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%,d timed sections in %.1f s on %d threads: %,.0f sections/s%n", sections.sum(), elapsed, threadCount, sections.sum() / elapsed);
+        Thread.sleep(200); // Let the daemon drop the last churned stacks
+        System.out.printf("%d frame stacks registered at the end, avatar errored: %b%n", ScriptKillerDaemon.INSTANCE.stackCount(), avatar.isErrored());
+    }
+
+}
@@ -0,0 +1,58 @@
+package org.figuramc.figura_core.script_hooks.timing;
+
+import org.figuramc.figura_core.TestCore;
+import org.figuramc.figura_core.avatars.Avatar;
+import org.figuramc.figura_core.avatars.AvatarModules;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScriptKillerDaemonTest {
+
+    @BeforeAll
+    static void setUp() {
+        TestCore.init();
+    }
+
+    @Test
+    public void finishedTaskIsNotKilled() throws Exception {
+        Avatar<String> avatar = headlessAvatar();
+        ScriptKillerDaemon.Frame frame = ScriptKillerDaemon.INSTANCE.startTask(avatar, 1_000_000_000L);
+        assertTrue(ScriptKillerDaemon.INSTANCE.endTask(frame));
+        assertFalse(avatar.isErrored());
+    }
+
+    @Test
+    public void overrunningTaskIsKilled() throws Exception {
+        Avatar<String> avatar = headlessAvatar();
+        ScriptKillerDaemon.Frame frame = ScriptKillerDaemon.INSTANCE.startTask(avatar, 5_000_000L);
+        long deadline = System.nanoTime() + 2_000_000_000L;
+        while (!avatar.isErrored() && System.nanoTime() < deadline) Thread.sleep(5);
+        assertFalse(ScriptKillerDaemon.INSTANCE.endTask(frame));
+        assertTrue(avatar.isErrored());
+    }
+
+    @Test
+    public void deadThreadsAreUnregistered() throws Exception {
+        Avatar<String> avatar = headlessAvatar();
+        int before = ScriptKillerDaemon.INSTANCE.stackCount();
+        Thread[] threads = new Thread[16];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> ScriptKillerDaemon.INSTANCE.endTask(ScriptKillerDaemon.INSTANCE.startTask(avatar, 1_000_000_000L)));
+            threads[i].start();
+        }
+        for (Thread thread : threads) thread.join();
+        // The daemon drops them on its next scan, which happens at least every 50 ms
+        long deadline = System.nanoTime() + 2_000_000_000L;
+        while (ScriptKillerDaemon.INSTANCE.stackCount() > before && System.nanoTime() < deadline) Thread.sleep(10);
+        assertTrue(ScriptKillerDaemon.INSTANCE.stackCount() <= before, "Stacks of dead threads weren't unregistered");
+    }
+
+    static Avatar<String> headlessAvatar() throws Exception {
+        return new Avatar<>(null, "timed", new AvatarModules(List.of(), List.of()), null, List.of());
+    }
+
+}
@@ -0,0 +1,86 @@
+package org.figuramc.figura_core.script_languages.lua;
+
+import org.figuramc.figura_cobalt.org.squiddev.cobalt.Constants;
+import org.figuramc.figura_cobalt.org.squiddev.cobalt.compiler.LoadState;
+import org.figuramc.figura_cobalt.org.squiddev.cobalt.function.LuaClosure;
+import org.figuramc.figura_core.TestCore;
+import org.figuramc.figura_core.avatars.Avatar;
+import org.figuramc.figura_core.avatars.AvatarModules;
+import org.figuramc.figura_core.script_hooks.timing.AvatarTimeTracker;
+import org.figuramc.figura_core.script_hooks.timing.InstructionMeter;
+import org.figuramc.figura_core.script_hooks.timing.ProfilingCategory;
+import org.figuramc.figura_core.script_languages.lua.errors.LuaEscaper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs scripts on a metered headless avatar's LuaRuntime, and checks that passing the instruction quota kills them.
+ */
+public class LuaInstructionQuotaTest {
+
+    // Long enough that only the quota can stop the script
+    private static final long BUDGET = 60_000_000_000L;
+
+    @BeforeAll
+    static void setUp() {
+        TestCore.init();
+    }
+
+    @AfterEach
+    void clearQuota() {
+        AvatarTimeTracker.getInstance().setInstructionQuota(ProfilingCategory.CLIENT_TICK_EVENT, 0);
+    }
+
+    @Test
+    public void overrunningTheQuotaKillsTheScript() throws Exception {
+        Avatar<String> avatar = meteredAvatar();
+        AvatarTimeTracker.getInstance().setInstructionQuota(ProfilingCategory.CLIENT_TICK_EVENT, 10_000);
+        Throwable[] thrown = new Throwable[1];
+        long start = System.nanoTime();
+        AvatarTimeTracker.getInstance().runTimed(avatar, ProfilingCategory.CLIENT_TICK_EVENT, BUDGET, () -> thrown[0] = run(avatar, "while true do end"));
+        assertTrue(System.nanoTime() - start < BUDGET / 2, "killed by the time budget instead");
+        assertSame(LuaEscaper.INSTANCE, thrown[0]);
+        assertTrue(avatar.isErrored());
+        assertTrue(avatar.instructionMeter.executed() > 10_000);
+    }
+
+    @Test
+    public void scriptsWithinTheQuotaFinish() throws Exception {
+        Avatar<String> avatar = meteredAvatar();
+        AvatarTimeTracker.getInstance().setInstructionQuota(ProfilingCategory.CLIENT_TICK_EVENT, 1_000_000);
+        Throwable[] thrown = new Throwable[1];
+        AvatarTimeTracker.getInstance().runTimed(avatar, ProfilingCategory.CLIENT_TICK_EVENT, BUDGET, () -> thrown[0] = run(avatar, "for i = 1, 100 do end"));
+        assertNull(thrown[0]);
+        assertFalse(avatar.isErrored());
+        assertTrue(avatar.instructionMeter.executed() > 0);
+    }
+
+    // Run the script on the avatar's runtime, returning whatever it threw
+    private static Throwable run(Avatar<String> avatar, String script) {
+        LuaRuntime runtime = avatar.assertComponent(LuaRuntime.TYPE);
+        try {
+            LuaClosure chunk = LoadState.load(runtime, new ByteArrayInputStream(script.getBytes(StandardCharsets.UTF_8)), "=quota", runtime.globals());
+            runtime.runNoYield(chunk, Constants.NONE);
+            return null;
+        } catch (Throwable t) {
+            return t;
+        }
+    }
+
+    private static Avatar<String> meteredAvatar() throws Exception {
+        InstructionMeter.meterNewAvatars = true;
+        try {
+            return new Avatar<>(null, "metered", new AvatarModules(List.of(), List.of()), null, List.of(LuaRuntime.TYPE));
+        } finally {
+            InstructionMeter.meterNewAvatars = false;
+        }
+    }
+
+}
@@ -0,0 +1,61 @@
+package org.figuramc.figura_core.script_languages.lua;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Feeds stacks to a sampler the way LuaRuntime's debug hook does, and checks how often it samples and what it exports.
+ */
+public class LuaSamplerTest {
+
+    @Test
+    public void samplesOncePerPeriod() {
+        LuaSampler sampler = new LuaSampler(LuaRuntime.LuaDebugHook.INTERVAL * 3);
+        int taken = 0;
+        for (int call = 1; call <= 9; call++) {
+            boolean due = sampler.due();
+            assertEquals(call % 3 == 0, due, "hook call " + call);
+            if (due) taken++;
+        }
+        assertEquals(3, taken);
+    }
+
+    @Test
+    public void shortPeriodsSampleEveryCall() {
+        LuaSampler sampler = new LuaSampler(1);
+        for (int call = 0; call < 5; call++) assertTrue(sampler.due());
+    }
+
+    @Test
+    public void stacksAreWrittenRootFirst() {
+        LuaSampler sampler = new LuaSampler(1);
+        sampler.record(List.of("util:40", "main:12", "main:3"));
+        assertEquals("main:3;main:12;util:40 1\n", sampler.toCollapsed());
+    }
+
+    @Test
+    public void identicalStacksAreMerged() {
+        LuaSampler sampler = new LuaSampler(1);
+        for (int i = 0; i < 17; i++) sampler.record(List.of("util:40", "main:3"));
+        sampler.record(List.of("[Java]", "main:5"));
+        sampler.record(List.of());
+        assertEquals(18, sampler.getSampleCount());
+        assertEquals(17, sampler.getCount("main:3;util:40"));
+        assertEquals(1, sampler.getCount("main:5;[Java]"));
+        List<String> lines = sampler.toCollapsed().lines().sorted().toList();
+        assertEquals(List.of("main:3;util:40 17", "main:5;[Java] 1"), lines);
+    }
+
+    @Test
+    public void resetForgetsSamples() {
+        LuaSampler sampler = new LuaSampler(1);
+        sampler.record(List.of("main:3"));
+        sampler.reset();
+        assertEquals(0, sampler.getSampleCount());
+        assertEquals("", sampler.toCollapsed());
+    }
+
+}
@@ -0,0 +1,59 @@
+package org.figuramc.figura_core.script_languages.lua;
+
+import org.figuramc.figura_cobalt.org.squiddev.cobalt.Constants;
+import org.figuramc.figura_cobalt.org.squiddev.cobalt.function.LuaClosure;
+import org.figuramc.figura_cobalt.org.squiddev.cobalt.compiler.LoadState;
+import org.figuramc.figura_core.TestCore;
+import org.figuramc.figura_core.avatars.Avatar;
+import org.figuramc.figura_core.avatars.AvatarModules;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs a script on a headless avatar's LuaRuntime while sampling it, and checks the collapsed stacks it exports.
+ */
+public class LuaSamplingScriptTest {
+
+    // Nearly all of its instructions are spent in the loop on line 2, two calls deep
+    private static final String SCRIPT = """
+            local function leaf()
+              local x = 0 for i = 1, 200000 do x = x + i end return x
+            end
+            local function outer() local x = leaf() return x end
+            outer()
+            """;
+
+    @BeforeAll
+    static void setUp() {
+        TestCore.init();
+    }
+
+    @Test
+    public void samplesTheRunningScript() throws Exception {
+        Avatar<String> avatar = new Avatar<>(null, "sampled", new AvatarModules(List.of(), List.of()), null, List.of(LuaRuntime.TYPE));
+        LuaRuntime runtime = avatar.assertComponent(LuaRuntime.TYPE);
+        LuaSampler sampler = new LuaSampler(LuaRuntime.LuaDebugHook.INTERVAL);
+        runtime.startSampling(sampler);
+
+        LuaClosure chunk = LoadState.load(runtime, new ByteArrayInputStream(SCRIPT.getBytes(StandardCharsets.UTF_8)), "@prof", runtime.globals());
+        runtime.runNoYield(chunk, Constants.NONE);
+        runtime.stopSampling();
+
+        assertTrue(sampler.getSampleCount() > 100, "only " + sampler.getSampleCount() + " samples");
+        assertTrue(sampler.getCount("prof:5;prof:4;prof:2") > sampler.getSampleCount() / 2, sampler.toCollapsed());
+        long total = 0;
+        for (String line : sampler.toCollapsed().lines().toList()) {
+            int space = line.lastIndexOf(' ');
+            assertTrue(line.substring(0, space).startsWith("prof:5"), line);
+            total += Long.parseLong(line.substring(space + 1));
+        }
+        assertEquals(sampler.getSampleCount(), total);
+    }
+
+}